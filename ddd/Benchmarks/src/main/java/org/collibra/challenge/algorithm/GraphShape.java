@@ -0,0 +1,110 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Random;
+
+/**
+ * Shapes of generated benchmark graphs. Every graph is built through the public mutation methods of
+ * {@link DirectedGraph}, nodes are named {@code n0 .. n(size-1)} and weights are between 1 and 100.
+ */
+public enum GraphShape {
+
+    /**
+     * Uniformly random edges, 4 outgoing edges per node on average, like a road or dependency network
+     */
+    SPARSE {
+        @Override
+        void addEdges(DirectedGraph graph, int size, Random random) {
+            addRandomEdges(graph, size, size * 4L, random);
+        }
+    },
+
+    /**
+     * Uniformly random edges, 64 outgoing edges per node on average (or complete graph if it has fewer nodes)
+     */
+    DENSE {
+        @Override
+        void addEdges(DirectedGraph graph, int size, Random random) {
+            addRandomEdges(graph, size, size * (long) Math.min(64, size - 1), random);
+        }
+    },
+
+    /**
+     * Square grid with edges in both directions between horizontal and vertical neighbours, long shortest paths
+     */
+    GRID {
+        @Override
+        void addEdges(DirectedGraph graph, int size, Random random) {
+            int width = (int) Math.ceil(Math.sqrt(size));
+            for (int node = 0; node < size; node++) {
+                if ((node + 1) % width != 0 && node + 1 < size) {
+                    addBothWays(graph, node, node + 1, random);
+                }
+                if (node + width < size) {
+                    addBothWays(graph, node, node + width, random);
+                }
+            }
+        }
+    },
+
+    /**
+     * Preferential attachment (Barabási–Albert): every new node links both ways to 3 existing nodes chosen with
+     * probability proportional to their degree, few hubs with huge degree and many nodes with small one
+     */
+    POWER_LAW {
+        @Override
+        void addEdges(DirectedGraph graph, int size, Random random) {
+            //every endpoint of every edge, picking a random element picks a node proportionally to its degree
+            int[] endpoints = new int[Math.max(2, size * 6)];
+            int endpointCount = 0;
+            for (int node = 1; node < size; node++) {
+                int links = Math.min(3, node);
+                for (int link = 0; link < links; link++) {
+                    int target = endpointCount == 0 ? 0 : endpoints[random.nextInt(endpointCount)];
+                    addBothWays(graph, node, target, random);
+                    endpoints[endpointCount++] = node;
+                    endpoints[endpointCount++] = target;
+                }
+            }
+        }
+    };
+
+    /**
+     * @param size   number of nodes
+     * @param seed   seed of the random generator, same seed gives same graph
+     * @return new graph of this shape
+     */
+    public DirectedGraph generate(int size, long seed) {
+        DirectedGraph graph = new DirectedGraph();
+        graph.batch(() -> {
+            for (int node = 0; node < size; node++) {
+                graph.addNode(name(node));
+            }
+            addEdges(graph, size, new Random(seed));
+        });
+        return graph;
+    }
+
+    /**
+     * @return name of the node with given index
+     */
+    public static String name(int node) {
+        return "n" + node;
+    }
+
+    abstract void addEdges(DirectedGraph graph, int size, Random random);
+
+    private static void addRandomEdges(DirectedGraph graph, int size, long edges, Random random) {
+        for (long edge = 0; edge < edges; edge++) {
+            graph.addEdge(name(random.nextInt(size)), name(random.nextInt(size)), weight(random));
+        }
+    }
+
+    private static void addBothWays(DirectedGraph graph, int node, int other, Random random) {
+        graph.addEdge(name(node), name(other), weight(random));
+        graph.addEdge(name(other), name(node), weight(random));
+    }
+
+    private static int weight(Random random) {
+        return 1 + random.nextInt(100);
+    }
+}
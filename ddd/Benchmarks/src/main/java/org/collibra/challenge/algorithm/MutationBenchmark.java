@@ -0,0 +1,83 @@
+package org.collibra.challenge.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of graph mutations from several threads at once, all of them contending for the graph monitor.
+ * Graph is rebuilt before every iteration so that added edges dont pile up from one iteration to the next.
+ * The {@code readWrite} group runs one writer next to three SHORTEST PATH readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationBenchmark {
+
+    @Param({"10000"})
+    private int size;
+
+    private DirectedGraph graph;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        graph = GraphShape.SPARSE.generate(size, 42);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addEdge() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return graph.addEdge(GraphShape.name(random.nextInt(size)), GraphShape.name(random.nextInt(size)),
+                1 + random.nextInt(100));
+    }
+
+    /**
+     * Removing a random node and adding it back with 4 outgoing edges, so the graph keeps its size
+     */
+    @Benchmark
+    @Threads(4)
+    public boolean removeNode() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String node = GraphShape.name(random.nextInt(size));
+        boolean removed = graph.removeNode(node);
+        graph.addNode(node);
+        for (int i = 0; i < 4; i++) {
+            graph.addEdge(node, GraphShape.name(random.nextInt(size)), 1 + random.nextInt(100));
+        }
+        return removed;
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public boolean writer() {
+        return addEdge();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Integer reader() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return graph.getShortestPath(GraphShape.name(random.nextInt(size)), GraphShape.name(random.nextInt(size)));
+    }
+}
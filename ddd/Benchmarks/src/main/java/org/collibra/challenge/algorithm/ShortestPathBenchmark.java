@@ -0,0 +1,107 @@
+package org.collibra.challenge.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single source Dijkstra on generated graphs of every {@link GraphShape} and several sizes. {@link #engine()}
+ * measures the algorithm alone on the graph snapshot, {@link #targeted()} and {@link #bidirectional()} the
+ * point-to-point searches between random pairs of nodes and {@link #cachedQuery()} a SHORTEST PATH query of
+ * {@link DirectedGraph} answered from its cache.
+ * <p>
+ * LINEAR_SCAN is O(V^2), with 100000 nodes one run takes seconds; narrow the parameters with e.g.
+ * {@code -p algorithm=PRIORITY_QUEUE -p size=100000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortestPathBenchmark {
+
+    private static final int SOURCES = 16;
+
+    @Param({"SPARSE", "DENSE", "GRID", "POWER_LAW"})
+    private GraphShape shape;
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    @Param({"PRIORITY_QUEUE", "LINEAR_SCAN"})
+    private AlgorithmType algorithm;
+
+    private DirectedGraph graph;
+    private GraphSnapshot snapshot;
+    private final int[] sources = new int[SOURCES];
+    private final int[] destinations = new int[SOURCES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        graph = shape.generate(size, 42);
+        graph.setAlgorithmType(algorithm);
+        snapshot = graph.getSnapshot();
+        Random random = new Random(7);
+        for (int i = 0; i < SOURCES; i++) {
+            sources[i] = snapshot.nodeId(GraphShape.name(random.nextInt(size)));
+            destinations[i] = snapshot.nodeId(GraphShape.name(random.nextInt(size)));
+        }
+    }
+
+    /**
+     * @return tree of a full single source search, sources rotate so that no single source dominates
+     */
+    @Benchmark
+    public ShortestPathTree engine() {
+        ShortestPathAlgorithm dijkstra = algorithm.create(snapshot);
+        dijkstra.execute(sources[next++ % SOURCES]);
+        return dijkstra.toTree();
+    }
+
+    /**
+     * @return tree of a full search by the parallel engine on the common pool, compare with {@link #engine()}
+     */
+    @Benchmark
+    public ShortestPathTree deltaStepping() {
+        return DeltaStepping.create(snapshot).execute(sources[next++ % SOURCES]);
+    }
+
+    @Benchmark
+    public int targeted() {
+        int pair = next++ % SOURCES;
+        return PathSearch.TARGETED.distance(snapshot, algorithm, sources[pair], destinations[pair]);
+    }
+
+    @Benchmark
+    public int bidirectional() {
+        int pair = next++ % SOURCES;
+        return PathSearch.BIDIRECTIONAL.distance(snapshot, algorithm, sources[pair], destinations[pair]);
+    }
+
+    /**
+     * @return distance from the contraction hierarchy, which is built by the first call, during warmup
+     */
+    @Benchmark
+    public int contractionHierarchy() {
+        int pair = next++ % SOURCES;
+        return PathSearch.CONTRACTION_HIERARCHY.distance(snapshot, algorithm, sources[pair], destinations[pair]);
+    }
+
+    @Benchmark
+    public Integer cachedQuery() {
+        return graph.getShortestPath(GraphShape.name(0), GraphShape.name(size - 1));
+    }
+}
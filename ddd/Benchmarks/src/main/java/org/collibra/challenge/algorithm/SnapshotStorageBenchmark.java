@@ -0,0 +1,74 @@
+package org.collibra.challenge.algorithm;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap against off-heap {@link SnapshotStorage} on a large sparse graph: {@link #bidirectional()} shows what the
+ * indirection through byte buffers costs a query, {@link #rebuildSnapshot()} builds a new snapshot after every
+ * mutation, which is where edge arrays are allocated. Run with the JMH GC profiler to compare collector pauses,
+ * {@code gc.count} and {@code gc.time} of both storages:
+ * {@code java -jar target/benchmarks.jar SnapshotStorageBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=4g"})
+public class SnapshotStorageBenchmark {
+
+    private static final int PAIRS = 16;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    private SnapshotStorage storage;
+
+    @Param({"300000"})
+    private int size;
+
+    private DirectedGraph graph;
+    private GraphSnapshot snapshot;
+    private final int[] sources = new int[PAIRS];
+    private final int[] destinations = new int[PAIRS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        graph = GraphShape.SPARSE.generate(size, 42);
+        graph.setSnapshotStorage(storage);
+        snapshot = graph.getSnapshot();
+        Random random = new Random(7);
+        for (int i = 0; i < PAIRS; i++) {
+            sources[i] = snapshot.nodeId(GraphShape.name(random.nextInt(size)));
+            destinations[i] = snapshot.nodeId(GraphShape.name(random.nextInt(size)));
+        }
+    }
+
+    @Benchmark
+    public int bidirectional() {
+        int pair = next++ % PAIRS;
+        return new BidirectionalDijkstra(snapshot).distance(sources[pair], destinations[pair]);
+    }
+
+    /**
+     * @return snapshot of a new version, the previous one becomes garbage
+     */
+    @Benchmark
+    public GraphSnapshot rebuildSnapshot() {
+        int pair = next++ % PAIRS;
+        graph.addEdge(snapshot.nodeName(sources[pair]), snapshot.nodeName(destinations[pair]), 100);
+        return graph.getSnapshot();
+    }
+}
@@ -0,0 +1,61 @@
+package org.collibra.challenge.server;
+
+import org.collibra.challenge.algorithm.DirectedGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of recognizing a command line: {@link #parse()} only parses it into {@link Command},
+ * {@link #processResponse()} also executes it against the shared graph (nodes of the sample lines dont exist,
+ * so only the lookups run) and {@link #legacyParse()} is the regex and {@code String.split} validation
+ * {@link Command} replaced, kept as baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParseBenchmark {
+
+    private static final Pattern LEGACY_VALIDATION = Pattern.compile(
+            ".*ADD NODE.*|.*REMOVE NODE.*|.*ADD EDGE.*|.*REMOVE EDGE.*|.*SHORTEST PATH.*|.*CLOSER THAN.*");
+
+    @Param({"ADD EDGE bench-a bench-b 15", "SHORTEST PATH bench-a bench-b", "CLOSER THAN 10 bench-a", "WHAT IS THIS"})
+    private String line;
+
+    private final Command command = new Command();
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        blackhole.consume(command.parse(line));
+        if (command.type() != CommandType.UNKNOWN) {
+            blackhole.consume(command.argument(2));
+        }
+    }
+
+    @Benchmark
+    public String processResponse() {
+        return MessagesFromClient.processResponse(line, command, DirectedGraph.getInstance());
+    }
+
+    @Benchmark
+    public void legacyParse(Blackhole blackhole) {
+        if (LEGACY_VALIDATION.matcher(line).matches()) {
+            String[] words = line.split(" ");
+            blackhole.consume(words.length > 2 ? words[2] : null);
+        }
+    }
+}
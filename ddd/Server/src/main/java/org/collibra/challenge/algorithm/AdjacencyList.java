@@ -0,0 +1,96 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of edges of one node stored as two parallel primitive arrays (neighbor node id, weight),
+ * so an edge takes 8 bytes instead of an object with two String references
+ */
+final class AdjacencyList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] nodes;
+    private int[] weights;
+    private int size;
+    //copy epoch of the owning graph when the list was created, see DirectedGraph
+    private final long epoch;
+
+    AdjacencyList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of edges the list holds before growing, at least 1
+     */
+    AdjacencyList(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param capacity number of edges the list holds before growing, at least 1
+     * @param epoch    value returned by {@link #epoch()}
+     */
+    AdjacencyList(int capacity, long epoch) {
+        nodes = new int[capacity];
+        weights = new int[capacity];
+        this.epoch = epoch;
+    }
+
+    /**
+     * @return list with the same edges and given epoch, later changes of either list dont affect the other one
+     */
+    AdjacencyList copy(long epoch) {
+        AdjacencyList copy = new AdjacencyList(Math.max(1, size), epoch);
+        System.arraycopy(nodes, 0, copy.nodes, 0, size);
+        System.arraycopy(weights, 0, copy.weights, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    void add(int node, int weight) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+        }
+        nodes[size] = node;
+        weights[size] = weight;
+        size++;
+    }
+
+    /**
+     * Removing all edges towards given neighbor, order of remaining edges is kept
+     *
+     * @param node neighbor node id
+     * @return number of removed edges
+     */
+    int removeAll(int node) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (nodes[i] != node) {
+                nodes[kept] = nodes[i];
+                weights[kept] = weights[i];
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int node(int index) {
+        return nodes[index];
+    }
+
+    int weight(int index) {
+        return weights[index];
+    }
+}
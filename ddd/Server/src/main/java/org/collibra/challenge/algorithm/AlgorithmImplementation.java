@@ -1,147 +1,64 @@
 package org.collibra.challenge.algorithm;
 
-import java.util.*;
-
 /**
  * Implementation of Dijkstra’s Shortest Path Algorithm in Java. Dijkstra’s Algorithms describes
  * how to find the shortest path from one node to another node in a directed weighted graph.
  * A graph is made out of nodes and directed edges which define a connection from one node to another node.
  * The mathematical description for graphs is G= {V,E}, meaning that a graph is defined by a set of
  * vertexes (nodes)(V) and a collection of edges. This implementation does not use any performance optimization (e.g. by using a
- * PriorityQueue for the UnSettledNodes and does not cache the result of the target evaluation of the edges)
- * to make the algorithm as simple as possible.
+ * PriorityQueue for the UnSettledNodes) to make the algorithm as simple as possible. Neighbors are read from
+ * the CSR {@link GraphSnapshot}, so expanding a node costs O(out-degree).
+ * See {@link PriorityQueueAlgorithm} for the heap based engine.
  */
-final class AlgorithmImplementation {
+final class AlgorithmImplementation extends ShortestPathAlgorithm {
 
-    private List<Edge> edges;
-    private Set<String> settledNodes;
-    private Set<String> unSettledNodes;
-    private Map<String, String> predecessors;
-    private Map<String, Integer> distance;
-    private Map<String, Integer> distanceCloserThan;
+    //unsettled node ids in no particular order, workspace tells if node is already in the list
+    private int[] unSettledNodes;
+    private int unSettledCount;
 
-    AlgorithmImplementation(DirectedGraph graph) {
-        //create a copy of the array so that we can operate on this array
-        this.edges = new ArrayList<>(graph.getEdges());
+    AlgorithmImplementation(GraphSnapshot graph, QueryBudget budget) {
+        super(graph, budget);
     }
 
-    /**
-     * @param sourceNode sourceNode node name
-     */
-    void execute(String sourceNode) {
-        settledNodes = new HashSet<>();
-        unSettledNodes = new HashSet<>();
-        distance = new HashMap<>();
-        distanceCloserThan = new HashMap<>();
-        predecessors = new HashMap<>();
-        //putting first sourceNode node name and distance 0 as starting point
-        distance.put(sourceNode, 0);
-        distanceCloserThan.put(sourceNode, 0);
+    @Override
+    void startSearch(int sourceNode) {
+        unSettledNodes = workspace.list();
+        unSettledCount = 0;
         //adding each node created to state unsettled
-        unSettledNodes.add(sourceNode);
-
-        //loop until unSettledNodes are less than 1
-        while (unSettledNodes.size() > 0) {
-            //
-            String node = getMinimum(unSettledNodes);
-            settledNodes.add(node);
-            unSettledNodes.remove(node);
-            //
-
-            findMinimalDistances(node);
-        }
+        distanceDecreased(sourceNode, 0);
     }
 
-    private void findMinimalDistances(String sourceNode) {
-        //fill the list with current neighbors from source node
-        List<String> adjacentNodes = getNeighbors(sourceNode);
-        for (String destinationNode : adjacentNodes) {
-            if (getShortestDistance(destinationNode) > getShortestDistance(sourceNode)
-                    + getDistance(sourceNode, destinationNode)) {
-                //distance calculation for shortest path
-                distance.put(destinationNode, getShortestDistance(sourceNode)
-                        + getDistance(sourceNode, destinationNode));
-                //distance calculation for closer than
-                distanceCloserThan.put(destinationNode, getDistance(sourceNode, destinationNode));
-                predecessors.put(sourceNode, destinationNode);
-                unSettledNodes.add(destinationNode);
-            }
+    @Override
+    void distanceDecreased(int node, int distance) {
+        if (!workspace.isListed(node)) {
+            workspace.setListed(node, true);
+            unSettledNodes[unSettledCount++] = node;
         }
     }
 
-    private int getDistance(String sourceNode, String destinationNode) {
-        //loop through edges and find only two nodes we are looking for and return edge
-        // value or if it doesnt exist return Integer.MAX_VALUE
-        for (Edge edge : edges) {
-            if (edge.getSourceNode().equals(sourceNode)
-                    && edge.getDestinationNode().equals(destinationNode)) {
-                return edge.getWeight();
-            }
-        }
-        return Integer.MAX_VALUE;
-    }
-
-    private List<String> getNeighbors(String sourceNode) {
-        //get next neighbor from source node
-        List<String> neighbors = new ArrayList<>();
-        for (Edge edge : edges) {
-            //
-            if (edge.getSourceNode().equals(sourceNode)
-                    && !isSettled(edge.getDestinationNode())) {
-                //adding all neighbors from source node
-                neighbors.add(edge.getDestinationNode());
-            }
+    @Override
+    int nextUnsettledNode() {
+        //loop until unSettledNodes are less than 1
+        if (unSettledCount == 0) {
+            return GraphSnapshot.NO_NODE;
         }
-        return neighbors;
+        int minimum = getMinimum();
+        int node = unSettledNodes[minimum];
+        unSettledNodes[minimum] = unSettledNodes[--unSettledCount];
+        workspace.setListed(node, false);
+        return node;
     }
 
-    private String getMinimum(Set<String> nodes) {
-        String minimum = null;
-        for (String node : nodes) {
-            //first time minimum is null, return first node
-            if (minimum == null) {
-                minimum = node;
-            } else {
-                //
-                if (getShortestDistance(node) < getShortestDistance(minimum)) {
-                    minimum = node;
-                }
+    /**
+     * @return position of unsettled node with minimal distance in the unsettled list
+     */
+    private int getMinimum() {
+        int minimum = 0;
+        for (int i = 1; i < unSettledCount; i++) {
+            if (getShortestDistance(unSettledNodes[i]) < getShortestDistance(unSettledNodes[minimum])) {
+                minimum = i;
             }
         }
         return minimum;
     }
-
-    private boolean isSettled(String nodeName) {
-        return settledNodes.contains(nodeName);
-    }
-
-    int getShortestDistance(String destinationNode) {
-        //get current distance to destination node
-        Integer d = distance.get(destinationNode);
-        if (d == null) {
-            //return Integer.MAX_VALUE if connections doesnt exist
-            return Integer.MAX_VALUE;
-        } else {
-            return d;
-        }
-    }
-
-    Set<String> getCloserThan(int weight, String sourceNode) {
-        Set<String> path = new TreeSet<>();
-        String temp = sourceNode;
-
-        if (predecessors.get(temp) == null) {
-            return path;
-        }
-        int tempWeight = 0;
-        while (predecessors.get(temp) != null) {
-            temp = predecessors.get(temp);
-            tempWeight = tempWeight + distanceCloserThan.get(temp);
-            if (tempWeight > weight) {
-                break;
-            }
-            path.add(temp);
-        }
-        return path;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Available shortest path engines. Engine used by {@link DirectedGraph} is taken from system property
+ * {@value #PROPERTY} (e.g. -Dalgorithm=LINEAR_SCAN) or set with {@link DirectedGraph#setAlgorithmType(AlgorithmType)}
+ */
+public enum AlgorithmType {
+
+    /**
+     * Simple engine scanning all unsettled nodes for the minimum, O(V^2 + E)
+     */
+    LINEAR_SCAN,
+    /**
+     * Binary heap engine, O((V + E) log V)
+     */
+    PRIORITY_QUEUE;
+
+    static final String PROPERTY = "algorithm";
+
+    ShortestPathAlgorithm create(GraphSnapshot graph) {
+        return create(graph, QueryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget limits checked for every settled node
+     */
+    ShortestPathAlgorithm create(GraphSnapshot graph, QueryBudget budget) {
+        return this == LINEAR_SCAN ? new AlgorithmImplementation(graph, budget) : new PriorityQueueAlgorithm(graph, budget);
+    }
+
+    /**
+     * @return engine configured by system property, {@link #PRIORITY_QUEUE} if property is not set
+     */
+    static AlgorithmType fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, PRIORITY_QUEUE.name()).toUpperCase());
+    }
+}
@@ -0,0 +1,133 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Point-to-point Dijkstra searching forward from the source over outgoing edges and backward from the destination
+ * over incoming edges at the same time, always expanding the side whose closest unsettled node is nearer. Every
+ * relaxed edge reaching a node labeled by the other side gives a candidate path; search stops once the two
+ * frontiers together are at least as far as the best candidate, as no shorter path can be found any more.
+ * Both searches cover about half of the distance, which on large graphs settles far fewer nodes than a single
+ * source search, let alone a full one. Labels and heaps of both sides live in a pooled {@link SearchWorkspace} held
+ * only while the search runs.
+ */
+final class BidirectionalDijkstra {
+
+    private final GraphSnapshot graph;
+    private final QueryBudget budget;
+    private SearchWorkspace.Side forward;
+    private SearchWorkspace.Side backward;
+    private IndexedMinHeap forwardQueue;
+    private IndexedMinHeap backwardQueue;
+    private long best;
+    private int settledCount;
+
+    BidirectionalDijkstra(GraphSnapshot graph) {
+        this(graph, QueryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget limits of the query, checked for every node settled by either side
+     */
+    BidirectionalDijkstra(GraphSnapshot graph, QueryBudget budget) {
+        this.graph = graph;
+        this.budget = budget;
+    }
+
+    /**
+     * @param sourceNode      source node id
+     * @param destinationNode destination node id
+     * @return shortest distance, Integer.MAX_VALUE if destination is not reachable
+     */
+    int distance(int sourceNode, int destinationNode) {
+        settledCount = 0;
+        if (sourceNode == destinationNode) {
+            return 0;
+        }
+        SearchWorkspace workspace = SearchWorkspace.acquire(graph.nodeCount());
+        try {
+            forward = workspace.forward();
+            backward = workspace.backward();
+            forwardQueue = forward.queue;
+            backwardQueue = backward.queue;
+            return search(sourceNode, destinationNode);
+        } finally {
+            forward = null;
+            backward = null;
+            forwardQueue = null;
+            backwardQueue = null;
+            workspace.release();
+        }
+    }
+
+    private int search(int sourceNode, int destinationNode) {
+        forward.label(sourceNode, 0, GraphSnapshot.NO_NODE);
+        backward.label(destinationNode, 0, GraphSnapshot.NO_NODE);
+        forwardQueue.insertOrDecrease(sourceNode, 0);
+        backwardQueue.insertOrDecrease(destinationNode, 0);
+        best = ShortestPathAlgorithm.INFINITY;
+
+        //when one side runs out of nodes, every path it could take part in has already been seen
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            int forwardRadius = forwardQueue.minKey();
+            int backwardRadius = backwardQueue.minKey();
+            if ((long) forwardRadius + backwardRadius >= best) {
+                break;
+            }
+            budget.visit();
+            if (forwardRadius <= backwardRadius) {
+                expandForward(forwardQueue.poll());
+            } else {
+                expandBackward(backwardQueue.poll());
+            }
+        }
+        return (int) best;
+    }
+
+    /**
+     * @return number of nodes settled by both sides of the last search
+     */
+    int getSettledCount() {
+        return settledCount;
+    }
+
+    private void expandForward(int node) {
+        forward.settle(node);
+        settledCount++;
+        int nodeDistance = forward.distance(node);
+        for (int edge = graph.firstEdge(node), end = graph.endEdge(node); edge < end; edge++) {
+            int next = graph.target(edge);
+            if (forward.isSettled(next)) {
+                continue;
+            }
+            long distance = (long) nodeDistance + graph.weight(edge);
+            if (distance < forward.distance(next)) {
+                forward.label(next, (int) distance, node);
+                forwardQueue.insertOrDecrease(next, (int) distance);
+            }
+            int backwardDistance = backward.distance(next);
+            if (backwardDistance != ShortestPathAlgorithm.INFINITY) {
+                best = Math.min(best, distance + backwardDistance);
+            }
+        }
+    }
+
+    private void expandBackward(int node) {
+        backward.settle(node);
+        settledCount++;
+        int nodeDistance = backward.distance(node);
+        for (int edge = graph.firstIncomingEdge(node), end = graph.endIncomingEdge(node); edge < end; edge++) {
+            int previous = graph.incomingSource(edge);
+            if (backward.isSettled(previous)) {
+                continue;
+            }
+            long distance = (long) nodeDistance + graph.incomingWeight(edge);
+            if (distance < backward.distance(previous)) {
+                backward.label(previous, (int) distance, node);
+                backwardQueue.insertOrDecrease(previous, (int) distance);
+            }
+            int forwardDistance = forward.distance(previous);
+            if (forwardDistance != ShortestPathAlgorithm.INFINITY) {
+                best = Math.min(best, distance + forwardDistance);
+            }
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Contraction hierarchy of one {@link GraphSnapshot}. Nodes are contracted one by one in order of importance
+ * (edge difference: shortcuts needed minus edges removed, plus number of already contracted neighbors): a
+ * contracted node is taken out of the graph and every shortest path running through it is replaced by a shortcut
+ * edge between its remaining neighbors, unless a local witness search finds a path at least as short around it.
+ * <p>
+ * Afterwards every shortest path consists of edges going up in the contraction order followed by edges going
+ * down, so a query searches forward from the source over upward edges and backward from the destination over
+ * reversed downward edges; both searches settle only a handful of important nodes. Edges are kept as two CSRs
+ * indexed by the lower end of the edge: upward edges by their source, downward edges by their target.
+ * <p>
+ * Hierarchy never changes after it is built and is valid for the version of its snapshot only. Queries take a
+ * {@link Search} from a pool, its arrays are stamped per query instead of being cleared.
+ */
+final class ContractionHierarchy {
+
+    private static final int INFINITY = ShortestPathAlgorithm.INFINITY;
+    //witness search gives up after this many nodes, the shortcut is then added, which is never wrong
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final int nodeCount;
+    private final long version;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final int[] downWeights;
+    private final int shortcutCount;
+    private final ConcurrentLinkedQueue<Search> searches = new ConcurrentLinkedQueue<>();
+
+    private ContractionHierarchy(Builder builder, long version) {
+        this.nodeCount = builder.nodeCount;
+        this.version = version;
+        this.shortcutCount = builder.shortcutCount;
+        int[] rank = builder.rank;
+        upOffsets = new int[nodeCount + 1];
+        downOffsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            AdjacencyList outgoing = builder.outgoing[node];
+            for (int i = 0; i < outgoing.size(); i++) {
+                int target = outgoing.node(i);
+                if (rank[target] > rank[node]) {
+                    upOffsets[node + 1]++;
+                } else {
+                    downOffsets[target + 1]++;
+                }
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            upOffsets[node + 1] += upOffsets[node];
+            downOffsets[node + 1] += downOffsets[node];
+        }
+        upTargets = new int[upOffsets[nodeCount]];
+        upWeights = new int[upOffsets[nodeCount]];
+        downSources = new int[downOffsets[nodeCount]];
+        downWeights = new int[downOffsets[nodeCount]];
+        int[] upNext = Arrays.copyOf(upOffsets, nodeCount);
+        int[] downNext = Arrays.copyOf(downOffsets, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            AdjacencyList outgoing = builder.outgoing[node];
+            for (int i = 0; i < outgoing.size(); i++) {
+                int target = outgoing.node(i);
+                if (rank[target] > rank[node]) {
+                    upTargets[upNext[node]] = target;
+                    upWeights[upNext[node]++] = outgoing.weight(i);
+                } else {
+                    downSources[downNext[target]] = node;
+                    downWeights[downNext[target]++] = outgoing.weight(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Contracting all nodes of the snapshot, takes time and memory growing with the number of shortcuts, which
+     * stays small on road-like and other mostly planar graphs and grows fast on dense random ones
+     */
+    static ContractionHierarchy build(GraphSnapshot graph) {
+        Builder builder = new Builder(graph);
+        builder.contractAll();
+        return new ContractionHierarchy(builder, graph.version());
+    }
+
+    /**
+     * @return graph version the hierarchy is valid for
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return number of shortcut edges added by the contraction
+     */
+    int shortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * @param sourceNode      source node id
+     * @param destinationNode destination node id
+     * @return shortest distance, Integer.MAX_VALUE if destination is not reachable
+     */
+    int distance(int sourceNode, int destinationNode) {
+        if (sourceNode == destinationNode) {
+            return 0;
+        }
+        Search search = takeSearch();
+        try {
+            return search.distance(sourceNode, destinationNode);
+        } finally {
+            searches.offer(search);
+        }
+    }
+
+    /**
+     * Many-to-many distances with buckets (Knopp et al.): a full upward search backward from every destination
+     * leaves (destination, distance) entries at each node it reaches, then a full upward search forward from every
+     * source combines its distance to each reached node with the entries found there. Upward search spaces are
+     * small, so the whole matrix costs about one point-to-point query per source and destination.
+     *
+     * @param sourceNodes      source node ids
+     * @param destinationNodes destination node ids
+     * @return distances by source index and destination index, Integer.MAX_VALUE where not reachable
+     */
+    int[][] distances(int[] sourceNodes, int[] destinationNodes) {
+        Search search = takeSearch();
+        try {
+            return search.distances(sourceNodes, destinationNodes);
+        } finally {
+            searches.offer(search);
+        }
+    }
+
+    private Search takeSearch() {
+        Search search = searches.poll();
+        return null == search ? new Search(nodeCount) : search;
+    }
+
+    /**
+     * Bidirectional upward search with distance arrays valid only where their stamp equals the current query
+     */
+    private final class Search {
+
+        private final int[] forwardDistance;
+        private final int[] backwardDistance;
+        private final int[] forwardStamp;
+        private final int[] backwardStamp;
+        private final IndexedMinHeap forwardQueue;
+        private final IndexedMinHeap backwardQueue;
+        private int stamp;
+        //nodes settled by the last upward search of distances()
+        private int[] settled = new int[64];
+        private int settledCount;
+        //buckets of distances(): entry lists per node linked through entryNext, valid where stamp is current
+        private int[] bucketHead;
+        private int[] bucketStamp;
+        private int[] entryDestination = new int[64];
+        private int[] entryDistance = new int[64];
+        private int[] entryNext = new int[64];
+
+        private Search(int nodeCount) {
+            forwardDistance = new int[nodeCount];
+            backwardDistance = new int[nodeCount];
+            forwardStamp = new int[nodeCount];
+            backwardStamp = new int[nodeCount];
+            forwardQueue = new IndexedMinHeap(nodeCount);
+            backwardQueue = new IndexedMinHeap(nodeCount);
+        }
+
+        private void nextStamp() {
+            if (++stamp == 0) {
+                resetStamps();
+                stamp = 1;
+            }
+        }
+
+        private void resetStamps() {
+            Arrays.fill(forwardStamp, 0);
+            Arrays.fill(backwardStamp, 0);
+            if (null != bucketStamp) {
+                Arrays.fill(bucketStamp, 0);
+            }
+            stamp = 0;
+        }
+
+        private int[][] distances(int[] sourceNodes, int[] destinationNodes) {
+            if (null == bucketHead) {
+                bucketHead = new int[nodeCount];
+                bucketStamp = new int[nodeCount];
+            }
+            //stamps must not wrap around while the buckets are in use
+            if (stamp < 0 && stamp > -2 - sourceNodes.length - destinationNodes.length) {
+                resetStamps();
+            }
+            nextStamp();
+            int bucketsStamp = stamp;
+            int entries = 0;
+            for (int j = 0; j < destinationNodes.length; j++) {
+                upward(destinationNodes[j], false);
+                for (int i = 0; i < settledCount; i++) {
+                    int node = settled[i];
+                    if (entries == entryNext.length) {
+                        entryDestination = Arrays.copyOf(entryDestination, entries * 2);
+                        entryDistance = Arrays.copyOf(entryDistance, entries * 2);
+                        entryNext = Arrays.copyOf(entryNext, entries * 2);
+                    }
+                    entryDestination[entries] = j;
+                    entryDistance[entries] = backwardDistance[node];
+                    entryNext[entries] = bucketStamp[node] == bucketsStamp ? bucketHead[node] : -1;
+                    bucketStamp[node] = bucketsStamp;
+                    bucketHead[node] = entries++;
+                }
+            }
+            int[][] result = new int[sourceNodes.length][destinationNodes.length];
+            for (int s = 0; s < sourceNodes.length; s++) {
+                int[] row = result[s];
+                Arrays.fill(row, INFINITY);
+                upward(sourceNodes[s], true);
+                for (int i = 0; i < settledCount; i++) {
+                    int node = settled[i];
+                    if (bucketStamp[node] != bucketsStamp) {
+                        continue;
+                    }
+                    for (int entry = bucketHead[node]; entry >= 0; entry = entryNext[entry]) {
+                        long distance = (long) forwardDistance[node] + entryDistance[entry];
+                        if (distance < row[entryDestination[entry]]) {
+                            row[entryDestination[entry]] = (int) distance;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Settling every node reachable over upward edges (forward) or reversed downward edges (backward)
+         */
+        private void upward(int start, boolean forward) {
+            nextStamp();
+            IndexedMinHeap queue = forward ? forwardQueue : backwardQueue;
+            int[] distances = forward ? forwardDistance : backwardDistance;
+            int[] stamps = forward ? forwardStamp : backwardStamp;
+            int[] offsets = forward ? upOffsets : downOffsets;
+            int[] neighbors = forward ? upTargets : downSources;
+            int[] weights = forward ? upWeights : downWeights;
+            queue.clear();
+            stamps[start] = stamp;
+            distances[start] = 0;
+            queue.insertOrDecrease(start, 0);
+            settledCount = 0;
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                if (settledCount == settled.length) {
+                    settled = Arrays.copyOf(settled, settledCount * 2);
+                }
+                settled[settledCount++] = node;
+                int nodeDistance = distances[node];
+                for (int edge = offsets[node], end = offsets[node + 1]; edge < end; edge++) {
+                    relax(queue, distances, stamps, neighbors[edge], (long) nodeDistance + weights[edge]);
+                }
+            }
+        }
+
+        private int distance(int sourceNode, int destinationNode) {
+            nextStamp();
+            forwardQueue.clear();
+            backwardQueue.clear();
+            forwardStamp[sourceNode] = stamp;
+            forwardDistance[sourceNode] = 0;
+            backwardStamp[destinationNode] = stamp;
+            backwardDistance[destinationNode] = 0;
+            forwardQueue.insertOrDecrease(sourceNode, 0);
+            backwardQueue.insertOrDecrease(destinationNode, 0);
+            long best = INFINITY;
+
+            //unlike plain bidirectional search both sides must run until their frontier passes the best path,
+            //the upward searches meet at the highest node of the path, not in its middle
+            while (!forwardQueue.isEmpty() || !backwardQueue.isEmpty()) {
+                boolean forward = backwardQueue.isEmpty()
+                        || !forwardQueue.isEmpty() && forwardQueue.minKey() <= backwardQueue.minKey();
+                IndexedMinHeap queue = forward ? forwardQueue : backwardQueue;
+                if (queue.minKey() >= best) {
+                    queue.clear();
+                    continue;
+                }
+                int node = queue.poll();
+                if (forward) {
+                    int nodeDistance = forwardDistance[node];
+                    if (backwardStamp[node] == stamp) {
+                        best = Math.min(best, (long) nodeDistance + backwardDistance[node]);
+                    }
+                    for (int edge = upOffsets[node], end = upOffsets[node + 1]; edge < end; edge++) {
+                        relax(forwardQueue, forwardDistance, forwardStamp, upTargets[edge],
+                                (long) nodeDistance + upWeights[edge]);
+                    }
+                } else {
+                    int nodeDistance = backwardDistance[node];
+                    if (forwardStamp[node] == stamp) {
+                        best = Math.min(best, (long) nodeDistance + forwardDistance[node]);
+                    }
+                    for (int edge = downOffsets[node], end = downOffsets[node + 1]; edge < end; edge++) {
+                        relax(backwardQueue, backwardDistance, backwardStamp, downSources[edge],
+                                (long) nodeDistance + downWeights[edge]);
+                    }
+                }
+            }
+            return (int) Math.min(best, INFINITY);
+        }
+
+        private void relax(IndexedMinHeap queue, int[] distances, int[] stamps, int next, long distance) {
+            if (distance >= INFINITY) {
+                return;
+            }
+            if (stamps[next] != stamp || distance < distances[next]) {
+                stamps[next] = stamp;
+                distances[next] = (int) distance;
+                queue.insertOrDecrease(next, (int) distance);
+            }
+        }
+    }
+
+    /**
+     * Working graph of the contraction: all edges of the snapshot without self loops plus shortcuts, edges of
+     * contracted nodes are kept as they become part of the hierarchy
+     */
+    private static final class Builder {
+
+        private final int nodeCount;
+        private final AdjacencyList[] outgoing;
+        private final AdjacencyList[] incoming;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors;
+        private final int[] rank;
+        private final IndexedMinHeap order;
+        //neighbors already updated after the current contraction, parallel edges and shortcuts repeat them
+        private final int[] updated;
+        private int shortcutCount;
+        //witness search state, valid where the stamp equals the current search
+        private final int[] witnessDistance;
+        private final int[] witnessStamp;
+        private final IndexedMinHeap witnessQueue;
+        private int stamp;
+        //lightest path through the contracted node per target, valid where the stamp equals the current source
+        private final long[] viaWeight;
+        private final int[] viaStamp;
+
+        private Builder(GraphSnapshot graph) {
+            nodeCount = graph.nodeCount();
+            outgoing = new AdjacencyList[nodeCount];
+            incoming = new AdjacencyList[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                outgoing[node] = new AdjacencyList();
+                incoming[node] = new AdjacencyList();
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                for (int edge = graph.firstEdge(node), end = graph.endEdge(node); edge < end; edge++) {
+                    int target = graph.target(edge);
+                    if (target != node) {
+                        outgoing[node].add(target, graph.weight(edge));
+                        incoming[target].add(node, graph.weight(edge));
+                    }
+                }
+            }
+            contracted = new boolean[nodeCount];
+            contractedNeighbors = new int[nodeCount];
+            rank = new int[nodeCount];
+            updated = new int[nodeCount];
+            order = new IndexedMinHeap(nodeCount);
+            witnessDistance = new int[nodeCount];
+            witnessStamp = new int[nodeCount];
+            witnessQueue = new IndexedMinHeap(nodeCount);
+            viaWeight = new long[nodeCount];
+            viaStamp = new int[nodeCount];
+        }
+
+        private void contractAll() {
+            for (int node = 0; node < nodeCount; node++) {
+                order.insertOrDecrease(node, priority(node));
+            }
+            int next = 0;
+            while (!order.isEmpty()) {
+                int node = order.poll();
+                //priorities of other nodes are updated lazily, node goes back if it is no longer the least important
+                int priority = priority(node);
+                if (!order.isEmpty() && priority > order.minKey()) {
+                    order.insertOrDecrease(node, priority);
+                    continue;
+                }
+                shortcutCount += contract(node, true);
+                contracted[node] = true;
+                rank[node] = next++;
+                updateNeighbors(outgoing[node], next);
+                updateNeighbors(incoming[node], next);
+            }
+        }
+
+        private void updateNeighbors(AdjacencyList edges, int contraction) {
+            for (int i = 0; i < edges.size(); i++) {
+                int neighbor = edges.node(i);
+                if (!contracted[neighbor] && updated[neighbor] != contraction) {
+                    updated[neighbor] = contraction;
+                    contractedNeighbors[neighbor]++;
+                    order.insertOrUpdate(neighbor, priority(neighbor));
+                }
+            }
+        }
+
+        private int priority(int node) {
+            int removed = remaining(outgoing[node]) + remaining(incoming[node]);
+            return contract(node, false) - removed + contractedNeighbors[node];
+        }
+
+        private int remaining(AdjacencyList edges) {
+            int count = 0;
+            for (int i = 0; i < edges.size(); i++) {
+                if (!contracted[edges.node(i)]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Finding shortcuts needed when node is contracted
+         *
+         * @param add true to add the shortcuts, false to only count them
+         * @return number of shortcuts
+         */
+        private int contract(int node, boolean add) {
+            AdjacencyList in = incoming[node];
+            AdjacencyList out = outgoing[node];
+            int shortcuts = 0;
+            for (int i = 0; i < in.size(); i++) {
+                int source = in.node(i);
+                if (contracted[source]) {
+                    continue;
+                }
+                long sourceWeight = in.weight(i);
+                nextStamp();
+                long limit = 0;
+                boolean targets = false;
+                for (int j = 0; j < out.size(); j++) {
+                    int target = out.node(j);
+                    if (contracted[target] || target == source) {
+                        continue;
+                    }
+                    long via = sourceWeight + out.weight(j);
+                    if (viaStamp[target] != stamp || via < viaWeight[target]) {
+                        viaStamp[target] = stamp;
+                        viaWeight[target] = via;
+                        limit = Math.max(limit, via);
+                        targets = true;
+                    }
+                }
+                if (!targets) {
+                    continue;
+                }
+                int viaSearch = stamp;
+                witnessSearch(source, node, limit);
+                for (int j = 0; j < out.size(); j++) {
+                    int target = out.node(j);
+                    //every target is handled once, with its lightest edge, the stamp is moved past it afterwards
+                    if (viaStamp[target] != viaSearch || viaWeight[target] >= INFINITY) {
+                        continue;
+                    }
+                    viaStamp[target] = 0;
+                    long via = viaWeight[target];
+                    if (witnessStamp[target] == stamp && witnessDistance[target] <= via) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (add) {
+                        outgoing[source].add(target, (int) via);
+                        incoming[target].add(source, (int) via);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Dijkstra from source over not contracted nodes except the one being contracted, stopping beyond limit
+         */
+        private void witnessSearch(int source, int skipped, long limit) {
+            witnessQueue.clear();
+            witnessStamp[source] = stamp;
+            witnessDistance[source] = 0;
+            witnessQueue.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!witnessQueue.isEmpty() && witnessQueue.minKey() <= limit && settled++ < WITNESS_SETTLE_LIMIT) {
+                int node = witnessQueue.poll();
+                int nodeDistance = witnessDistance[node];
+                AdjacencyList edges = outgoing[node];
+                for (int i = 0; i < edges.size(); i++) {
+                    int next = edges.node(i);
+                    if (next == skipped || contracted[next]) {
+                        continue;
+                    }
+                    long distance = (long) nodeDistance + edges.weight(i);
+                    if (distance < INFINITY && (witnessStamp[next] != stamp || distance < witnessDistance[next])) {
+                        witnessStamp[next] = stamp;
+                        witnessDistance[next] = (int) distance;
+                        witnessQueue.insertOrDecrease(next, (int) distance);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Starting a new search, stamps are shared by via weights and witness distances of the same source
+         */
+        private void nextStamp() {
+            if (++stamp == 0) {
+                Arrays.fill(witnessStamp, 0);
+                Arrays.fill(viaStamp, 0);
+                stamp = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel single source search (delta-stepping, Meyer and Sanders). Tentative distances are grouped into buckets
+ * of width delta and buckets are processed in order. Nodes of the current bucket are relaxed in phases: every
+ * phase relaxes light edges (weight up to delta) of all nodes of the bucket in parallel, nodes they improve within
+ * the bucket form the next phase. Once the bucket stays empty, heavy edges of all nodes it held are relaxed in one
+ * more parallel phase, those can only reach later buckets.
+ * <p>
+ * Distance and parent of a node are packed into one long and updated by compare-and-set, so a parent is always
+ * the node which set the final distance. Parent chains therefore form a tree even with zero weight cycles, which
+ * {@link ShortestPathCache} relies on. Workers collect improved nodes in their own lists, buckets are only
+ * touched between phases by the calling thread.
+ */
+final class DeltaStepping {
+
+    static final String THRESHOLD_PROPERTY = "parallel.threshold";
+    //graphs with at least this many edges get parallel full searches unless the property says otherwise
+    static final int DEFAULT_THRESHOLD = 1_000_000;
+    //frontier slices smaller than this are relaxed by one task
+    static final int TASK_NODES = 256;
+
+    private static final long UNREACHED = pack(ShortestPathAlgorithm.INFINITY, GraphSnapshot.NO_NODE);
+
+    private final GraphSnapshot graph;
+    private final ForkJoinPool pool;
+    private final int delta;
+    private AtomicLongArray labels;
+
+    /**
+     * @param delta bucket width, at least 1
+     */
+    DeltaStepping(GraphSnapshot graph, ForkJoinPool pool, int delta) {
+        if (delta < 1) {
+            throw new IllegalArgumentException("Bucket width must be at least 1: " + delta);
+        }
+        this.graph = graph;
+        this.pool = pool;
+        this.delta = delta;
+    }
+
+    /**
+     * @return search on the common pool with bucket width equal to the average edge weight, at least 1
+     */
+    static DeltaStepping create(GraphSnapshot graph) {
+        int delta = (int) Math.max(1, Math.min(Integer.MAX_VALUE, graph.averageWeight()));
+        return new DeltaStepping(graph, ForkJoinPool.commonPool(), delta);
+    }
+
+    /**
+     * @return edge count from which {@link DirectedGraph} computes full trees in parallel
+     */
+    static int thresholdFromSystemProperty() {
+        return Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param sourceNode source node id
+     * @return tree of all nodes reachable from source
+     */
+    ShortestPathTree execute(int sourceNode) {
+        return execute(sourceNode, QueryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget limits of the query, checked by the calling thread before every phase
+     * @return tree of all nodes reachable from source
+     */
+    ShortestPathTree execute(int sourceNode, QueryBudget budget) {
+        int nodeCount = graph.nodeCount();
+        labels = new AtomicLongArray(nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            labels.set(node, UNREACHED);
+        }
+        labels.set(sourceNode, pack(0, GraphSnapshot.NO_NODE));
+        //phase in which a node was last queued and bucket in which it was last taken, to drop duplicates
+        int[] queuedPhase = new int[nodeCount];
+        int[] takenBucket = new int[nodeCount];
+        Arrays.fill(takenBucket, -1);
+        TreeMap<Integer, IntList> buckets = new TreeMap<>();
+        bucket(buckets, 0).add(sourceNode);
+        int phase = 0;
+
+        Map.Entry<Integer, IntList> entry;
+        while (null != (entry = buckets.pollFirstEntry())) {
+            int current = entry.getKey();
+            IntList frontier = entry.getValue();
+            IntList taken = new IntList();
+            while (frontier.size > 0) {
+                phase++;
+                IntList nodes = new IntList();
+                for (int i = 0; i < frontier.size; i++) {
+                    int node = frontier.values[i];
+                    //entries are stale once the node moved to a lower bucket, duplicates are relaxed once per phase
+                    if (bucketOf(distance(labels.get(node))) != current || queuedPhase[node] == phase) {
+                        continue;
+                    }
+                    queuedPhase[node] = phase;
+                    nodes.add(node);
+                    if (takenBucket[node] != current) {
+                        takenBucket[node] = current;
+                        taken.add(node);
+                    }
+                }
+                budget.visit(nodes.size);
+                IntList improved = relax(nodes, true);
+                frontier = new IntList();
+                distribute(improved, current, frontier, buckets);
+            }
+            IntList improved = relax(taken, false);
+            distribute(improved, current, null, buckets);
+        }
+
+        int[] distance = new int[nodeCount];
+        int[] parents = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            long label = labels.get(node);
+            distance[node] = distance(label);
+            parents[node] = parent(label);
+        }
+        labels = null;
+        return new ShortestPathTree(sourceNode, distance, parents);
+    }
+
+    private void distribute(IntList improved, int current, IntList frontier, TreeMap<Integer, IntList> buckets) {
+        for (int i = 0; i < improved.size; i++) {
+            int node = improved.values[i];
+            int bucket = bucketOf(distance(labels.get(node)));
+            if (bucket == current && null != frontier) {
+                frontier.add(node);
+            } else {
+                bucket(buckets, bucket).add(node);
+            }
+        }
+    }
+
+    private static IntList bucket(TreeMap<Integer, IntList> buckets, int bucket) {
+        return buckets.computeIfAbsent(bucket, key -> new IntList());
+    }
+
+    private int bucketOf(int distance) {
+        return distance / delta;
+    }
+
+    private IntList relax(IntList nodes, boolean light) {
+        if (nodes.size <= TASK_NODES) {
+            return new Relaxation(nodes, 0, nodes.size, light).compute();
+        }
+        return pool.invoke(new Relaxation(nodes, 0, nodes.size, light));
+    }
+
+    /**
+     * Relaxing light or heavy edges of a slice of nodes, returning nodes whose distance was lowered
+     */
+    private final class Relaxation extends RecursiveTask<IntList> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntList nodes;
+        private final int start;
+        private final int end;
+        private final boolean light;
+
+        private Relaxation(IntList nodes, int start, int end, boolean light) {
+            this.nodes = nodes;
+            this.start = start;
+            this.end = end;
+            this.light = light;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (end - start > TASK_NODES) {
+                int middle = (start + end) >>> 1;
+                Relaxation left = new Relaxation(nodes, start, middle, light);
+                left.fork();
+                IntList right = new Relaxation(nodes, middle, end, light).compute();
+                IntList result = left.join();
+                result.addAll(right);
+                return result;
+            }
+            IntList improved = new IntList();
+            for (int i = start; i < end; i++) {
+                int node = nodes.values[i];
+                long nodeDistance = distance(labels.get(node));
+                for (int edge = graph.firstEdge(node), last = graph.endEdge(node); edge < last; edge++) {
+                    int weight = graph.weight(edge);
+                    if ((weight <= delta) != light) {
+                        continue;
+                    }
+                    long distance = nodeDistance + weight;
+                    if (distance < ShortestPathAlgorithm.INFINITY && lower(graph.target(edge), (int) distance, node)) {
+                        improved.add(graph.target(edge));
+                    }
+                }
+            }
+            return improved;
+        }
+    }
+
+    /**
+     * @return true if distance of the node was lowered, false if it already was at most given distance
+     */
+    private boolean lower(int node, int distance, int parent) {
+        long label = labels.get(node);
+        long lowered = pack(distance, parent);
+        while (distance(label) > distance) {
+            if (labels.compareAndSet(node, label, lowered)) {
+                return true;
+            }
+            label = labels.get(node);
+        }
+        return false;
+    }
+
+    private static long pack(int distance, int parent) {
+        return (long) distance << 32 | (parent & 0xFFFFFFFFL);
+    }
+
+    private static int distance(long label) {
+        return (int) (label >>> 32);
+    }
+
+    private static int parent(long label) {
+        return (int) label;
+    }
+
+    /**
+     * Growable int array
+     */
+    private static final class IntList {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
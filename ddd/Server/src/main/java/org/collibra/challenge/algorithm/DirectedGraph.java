@@ -1,23 +1,93 @@
 package org.collibra.challenge.algorithm;
 
+import org.collibra.challenge.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This class represent object containing logic for storing, building graph and sharing among
- * multiple sessions, so it has to be synchronized. Error checking and unusual inputs are handled
- * by this class before calling proper algorithm for execution
+ * multiple sessions. Error checking and unusual inputs are handled by this class before calling proper
+ * algorithm for execution. Node names are interned to dense int ids when added, edges are indexed per node id
+ * in both directions (outgoing and incoming) as primitive {@link AdjacencyList}s.
+ * <p>
+ * Mutations are serialized on the graph monitor, each creates a new version. Queries run without locking against
+ * the immutable {@link GraphSnapshot} of the published version, using cached and shared shortest path trees, see
+ * {@link ShortestPathCache} and {@link SingleFlight}, and are limited by {@link #setQueryLimits(long, long)}. With
+ * storage open every mutation is appended to a {@link WriteAheadLog} and {@link #checkpoint()} writes a
+ * {@link SnapshotFile}.
  */
 public class DirectedGraph {
 
-    private volatile HashMap<String, String> nodes = new HashMap<>();
-    private CopyOnWriteArrayList<Edge> edges = new CopyOnWriteArrayList<>();
-    private static DirectedGraph DIRECTED_GRAPH_INSTANCE;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int INITIAL_EDGES = 4;
+    private static final long NOT_LOGGED = -1;
+
+    //read without locking by queries from hot sources
+    private final ConcurrentHashMap<String, Integer> nodeIds = new ConcurrentHashMap<>();
+    private String[] nodeNames = new String[INITIAL_CAPACITY];
+    private AdjacencyList[] outgoingEdges = new AdjacencyList[INITIAL_CAPACITY];
+    private AdjacencyList[] incomingEdges = new AdjacencyList[INITIAL_CAPACITY];
+    //ids of removed nodes reused by next added nodes so ids stay dense
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private int nodeCount;
+    private int edgeCount;
+    private long version;
+    //version queries see: the current one, or the one before a running batch
+    private volatile long publishedVersion;
+    //snapshot of the current version, the graph holds a reference to it until it is replaced
+    private volatile GraphSnapshot snapshot;
+    //serializes snapshot builds, never taken while holding the monitor
+    private final Object snapshotBuild = new Object();
+    //increased by every state copy, adjacency lists of older epochs may be shared with a copy
+    private long copyEpoch;
+    //thread running a batch and the state before it, what queries of other threads see until the batch ends
+    private volatile Thread batchOwner;
+    private VersionState batchBase;
+    private final ShortestPathCache cache = ShortestPathCache.fromSystemProperties();
+    private volatile AlgorithmType algorithmType = AlgorithmType.fromSystemProperty();
+    private volatile PathSearch pathSearch = PathSearch.fromSystemProperty();
+    private volatile int parallelThreshold = DeltaStepping.thresholdFromSystemProperty();
+    private volatile SnapshotStorage snapshotStorage = SnapshotStorage.fromSystemProperty();
+    private volatile long queryMaxNodes;
+    private volatile long queryTimeout;
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private Set<String> hotSources = hotSourcesFromSystemProperty();
+    //replaced as a whole under the monitor, read by queries without locking
+    private volatile Map<Integer, DynamicShortestPathTree> hotTrees = Collections.emptyMap();
+    private final LongAdder hotHits = new LongAdder();
+    private final SingleFlight<QueryKey, ShortestPathTree> treeFlights = new SingleFlight<>();
+    private final SingleFlight<QueryKey, Set<String>> closerThanFlights = new SingleFlight<>();
+    private Path dataDirectory;
+    private volatile WriteAheadLog log;
+    private long checkpointVersion = -1;
+    private final AtomicBoolean hierarchyBuildScheduled = new AtomicBoolean();
     private static final Logger LOGGER = Logger.getLogger(DirectedGraph.class.getName());
+    //one thread shared by all graphs, so hierarchy builds never take more than one core
+    private static final ExecutorService HIERARCHY_BUILDER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hierarchy-build");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private DirectedGraph() { }
+    DirectedGraph() { }
 
     /**
      * Adding new node to map of nodes if not null
@@ -25,14 +95,44 @@ public class DirectedGraph {
      * @param nodeName node name for adding
      * @return true if successful, false if fail
      */
-    public synchronized boolean addNode(String nodeName) {
-        LOGGER.info("Add node method triggered");
-        if (null == nodes.get(nodeName)) {
-            nodes.put(nodeName, nodeName);
-            LOGGER.info("Node added: " + nodeName);
-            return true;
+    public boolean addNode(String nodeName) {
+        long waitStart = lockWaitStart();
+        long logged;
+        synchronized (this) {
+            lockAcquired(waitStart);
+            LOGGER.fine("Add node method triggered");
+            if (null != nodeIds.get(nodeName)) {
+                return false;
+            }
+            int node = allocateNode(nodeName);
+            publish();
+            cache.nodeAdded(version);
+            for (DynamicShortestPathTree tree : hotTrees.values()) {
+                tree.nodeAdded(node, version);
+            }
+            if (hotSources.contains(nodeName)) {
+                addHotTree(node);
+            }
+            logged = null == log ? NOT_LOGGED : log.appendAddNode(nodeName);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Node added: " + nodeName);
+            }
         }
-        return false;
+        awaitDurable(logged);
+        return true;
+    }
+
+    private int allocateNode(String nodeName) {
+        int node = freeIds.isEmpty() ? nodeCount++ : freeIds.pop();
+        if (node == nodeNames.length) {
+            int capacity = nodeNames.length * 2;
+            nodeNames = Arrays.copyOf(nodeNames, capacity);
+            outgoingEdges = Arrays.copyOf(outgoingEdges, capacity);
+            incomingEdges = Arrays.copyOf(incomingEdges, capacity);
+        }
+        nodeIds.put(nodeName, node);
+        nodeNames[node] = nodeName;
+        return node;
     }
 
     /**
@@ -42,14 +142,36 @@ public class DirectedGraph {
      * @param destinationNode destination node name
      * @param weight          Integer value (weight) of link between two nodes
      * @return true if successful, false if fail
+     * @throws IllegalArgumentException if weight is negative, shortest paths are defined for non negative weights
      */
-    public synchronized boolean addEdge(String sourceNode, String destinationNode, int weight) {
-        LOGGER.info("Add edge method triggered");
-        if (null == nodes.get(sourceNode) || null == nodes.get(destinationNode)) {
-            return false;
+    public boolean addEdge(String sourceNode, String destinationNode, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Edge weight cannot be negative: " + weight);
         }
-        edges.add(new Edge(sourceNode, destinationNode, weight));
-        LOGGER.info("Edge added between nodes: " + sourceNode + "-" + destinationNode + ", with weight: " + weight);
+        long waitStart = lockWaitStart();
+        long logged;
+        synchronized (this) {
+            lockAcquired(waitStart);
+            LOGGER.fine("Add edge method triggered");
+            Integer source = nodeIds.get(sourceNode);
+            Integer destination = nodeIds.get(destinationNode);
+            if (null == source || null == destination) {
+                return false;
+            }
+            writableOutgoing(source).add(destination, weight);
+            adjacency(incomingEdges, destination).add(source, weight);
+            edgeCount++;
+            publish();
+            cache.edgeAdded(source, destination, weight, version);
+            for (DynamicShortestPathTree tree : hotTrees.values()) {
+                tree.edgeAdded(source, destination, weight, outgoingEdges, version);
+            }
+            logged = null == log ? NOT_LOGGED : log.appendAddEdge(sourceNode, destinationNode, weight);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Edge added between nodes: " + sourceNode + "-" + destinationNode + ", with weight: " + weight);
+            }
+        }
+        awaitDurable(logged);
         return true;
     }
 
@@ -59,19 +181,54 @@ public class DirectedGraph {
      * @param nodeName node name for removal
      * @return true if successful, false if fail
      */
-    public synchronized boolean removeNode(String nodeName) {
-        LOGGER.info("Remove node method triggered");
-        if (null == nodes.get(nodeName)) {
-            return false;
-        }
-        nodes.remove(nodeName);
-        LOGGER.info("Node removed: " + nodeName);
-        getEdges().forEach((edge) -> {
-            if (edge.getSourceNode().contains(nodeName) && edge.getDestinationNode().contains(nodeName)) {
-                edges.remove(edge);
-                LOGGER.info("Edges removed: " + edge);
+    public boolean removeNode(String nodeName) {
+        long waitStart = lockWaitStart();
+        long logged;
+        synchronized (this) {
+            lockAcquired(waitStart);
+            LOGGER.fine("Remove node method triggered");
+            Integer node = nodeIds.remove(nodeName);
+            if (null == node) {
+                return false;
             }
-        });
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Node removed: " + nodeName);
+            }
+            //detach every edge leaving the node from the incoming index of its destination and vice versa
+            AdjacencyList outgoing = outgoingEdges[node];
+            if (null != outgoing) {
+                for (int i = 0; i < outgoing.size(); i++) {
+                    if (outgoing.node(i) != node) {
+                        incomingEdges[outgoing.node(i)].removeAll(node);
+                    }
+                }
+                edgeCount -= outgoing.size();
+            }
+            AdjacencyList incoming = incomingEdges[node];
+            if (null != incoming) {
+                for (int i = 0; i < incoming.size(); i++) {
+                    if (incoming.node(i) != node) {
+                        edgeCount -= writableOutgoing(incoming.node(i)).removeAll(node);
+                    }
+                }
+            }
+            nodeNames[node] = null;
+            outgoingEdges[node] = null;
+            incomingEdges[node] = null;
+            freeIds.push(node);
+            publish();
+            cache.nodeRemoved(node, version);
+            if (hotTrees.containsKey(node)) {
+                Map<Integer, DynamicShortestPathTree> trees = new HashMap<>(hotTrees);
+                trees.remove(node);
+                hotTrees = trees;
+            }
+            for (DynamicShortestPathTree tree : hotTrees.values()) {
+                tree.nodeRemoved(node, outgoing, outgoingEdges, incomingEdges, version);
+            }
+            logged = null == log ? NOT_LOGGED : log.appendRemoveNode(nodeName);
+        }
+        awaitDurable(logged);
         return true;
     }
 
@@ -82,77 +239,1080 @@ public class DirectedGraph {
      * @param destinationNode destination node name
      * @return true if successful, false if fail
      */
-    public synchronized boolean removeEdge(String sourceNode, String destinationNode) {
-        LOGGER.info("Remove edge method triggered");
-        if (null == nodes.get(sourceNode) || null == nodes.get(destinationNode)) {
-            return false;
-        }
-        getEdges().forEach((edge) -> {
-            if (edge.getSourceNode().contains(sourceNode) && edge.getDestinationNode().contains(destinationNode)) {
-                edges.remove(edge);
-                LOGGER.info("Edge removed between nodes: " + sourceNode + "-" + destinationNode + ", with weight: " + edge.getWeight());
+    public boolean removeEdge(String sourceNode, String destinationNode) {
+        long waitStart = lockWaitStart();
+        long logged = NOT_LOGGED;
+        synchronized (this) {
+            lockAcquired(waitStart);
+            LOGGER.fine("Remove edge method triggered");
+            Integer source = nodeIds.get(sourceNode);
+            Integer destination = nodeIds.get(destinationNode);
+            if (null == source || null == destination) {
+                return false;
             }
-        });
+            if (null == outgoingEdges[source]) {
+                return true;
+            }
+            int removed = writableOutgoing(source).removeAll(destination);
+            if (removed > 0) {
+                incomingEdges[destination].removeAll(source);
+                edgeCount -= removed;
+                publish();
+                cache.edgesRemoved(source, destination, version);
+                for (DynamicShortestPathTree tree : hotTrees.values()) {
+                    tree.edgesRemoved(source, destination, outgoingEdges, incomingEdges, version);
+                }
+                logged = null == log ? NOT_LOGGED : log.appendRemoveEdge(sourceNode, destinationNode);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Edges removed between nodes: " + sourceNode + "-" + destinationNode + ", count: " + removed);
+                }
+            }
+        }
+        awaitDurable(logged);
         return true;
     }
 
+    /**
+     * Running several mutations as one graph write: no other mutation interleaves with them and queries either
+     * see the graph before the batch or after all its mutations. The batch doesnt hold the monitor between its
+     * mutations, other writers wait until it ends while queries keep reading the version before the batch, built
+     * from a copy of its state taken when the batch started. Logged mutations of the batch become durable together
+     * when it ends.
+     *
+     * @param mutations calls to mutation methods of this graph
+     */
+    public void batch(Runnable mutations) {
+        long waitStart = lockWaitStart();
+        if (waitStart < 0) {
+            mutations.run();
+            return;
+        }
+        synchronized (this) {
+            lockAcquired(waitStart);
+            startBatch();
+        }
+        long logged;
+        try {
+            mutations.run();
+        } finally {
+            logged = finishBatch();
+        }
+        awaitDurable(logged);
+    }
+
+    /**
+     * Making current thread the only writer until {@link #finishBatch()}, must be called holding the monitor
+     */
+    private void startBatch() {
+        batchOwner = Thread.currentThread();
+        batchBase = null == snapshot ? copyState() : new VersionState(snapshot);
+    }
+
+    /**
+     * Dropping the state queries read during a batch, must be called holding the monitor
+     */
+    private void clearBatchBase() {
+        if (null != batchBase) {
+            batchBase.release();
+            batchBase = null;
+        }
+    }
+
+    /**
+     * @return log position written by the batch
+     */
+    private synchronized long finishBatch() {
+        long logged = null == log ? NOT_LOGGED : log.appendedPosition();
+        batchOwner = null;
+        clearBatchBase();
+        publishedVersion = version;
+        notifyAll();
+        return logged;
+    }
+
+    /**
+     * Waiting while a batch of another thread runs, must be called holding the monitor
+     */
+    private void awaitBatch() {
+        boolean interrupted = false;
+        while (null != batchOwner && Thread.currentThread() != batchOwner) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true if current thread holds the monitor or runs a batch
+     */
+    private boolean isWriting() {
+        return Thread.holdsLock(this) || Thread.currentThread() == batchOwner;
+    }
+
+    /**
+     * Waiting until the log is on disk up to given position, skipped inside a batch which waits once at its end
+     */
+    private void awaitDurable(long logged) {
+        WriteAheadLog current = log;
+        if (NOT_LOGGED != logged && null != current && !isWriting()) {
+            current.awaitDurable(logged);
+        }
+    }
+
+    /**
+     * Making the graph durable in given directory: graph is restored from the latest snapshot and the log written
+     * after it, then every following mutation is logged. Graph must be empty.
+     *
+     * @param directory data directory, created if missing
+     */
+    public void openStorage(Path directory) throws IOException {
+        long waitStart = lockWaitStart();
+        synchronized (this) {
+            lockAcquired(waitStart);
+            if (null != log || version != 0) {
+                throw new IllegalStateException("Storage can only be opened on an empty graph");
+            }
+            Files.createDirectories(directory);
+            long start = System.nanoTime();
+            GraphSnapshot stored = SnapshotFile.loadLatest(directory, snapshotStorage);
+            if (null != stored) {
+                restore(stored);
+            }
+            long replayed = WriteAheadLog.replay(directory, this);
+            dataDirectory = directory;
+            checkpointVersion = null == stored ? -1 : stored.version();
+            log = new WriteAheadLog(directory, version);
+            LOGGER.info("Graph restored from " + directory + " in " + (System.nanoTime() - start) / 1_000_000
+                    + " ms: " + nodeIds.size() + " nodes, " + edgeCount + " edges, " + replayed
+                    + " log records replayed");
+        }
+    }
+
+    /**
+     * Writing snapshot of the current version and starting a new log segment, older snapshots and segments are
+     * deleted once the snapshot is complete. Snapshot is written without holding the monitor.
+     */
+    public void checkpoint() throws IOException {
+        GraphSnapshot graph;
+        VersionState state = null;
+        Path directory;
+        long waitStart = lockWaitStart();
+        synchronized (this) {
+            lockAcquired(waitStart);
+            if (null == log) {
+                throw new IllegalStateException("Storage is not open");
+            }
+            if (version == checkpointVersion) {
+                return;
+            }
+            graph = snapshot;
+            if (null == graph) {
+                state = copyState();
+            } else {
+                graph.retain();
+            }
+            log.rotate(version);
+            checkpointVersion = version;
+            directory = dataDirectory;
+        }
+        if (null == graph) {
+            graph = state.build(snapshotStorage);
+        }
+        try {
+            writeCheckpoint(directory, graph);
+        } finally {
+            graph.release();
+        }
+    }
+
+    private static void writeCheckpoint(Path directory, GraphSnapshot graph) throws IOException {
+        SnapshotFile.write(directory, graph);
+        deleteBefore(directory, graph.version());
+    }
+
+    /**
+     * Deleting snapshots and log segments older than a complete snapshot of given version
+     */
+    private static void deleteBefore(Path directory, long version) throws IOException {
+        SnapshotFile.deleteBefore(directory, version);
+        WriteAheadLog.deleteSegmentsBefore(directory, version);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Checkpoint of version " + version + " written");
+        }
+    }
+
+    /**
+     * Adding all nodes and edges of an edge-list file as one graph write, see {@link EdgeListImport} for the format.
+     * File is parsed in parallel chunks and every chunk is merged as soon as it is parsed, holding the monitor only
+     * while one chunk is merged. Import runs like a {@link #batch(Runnable)}: other writers wait until it ends while
+     * queries keep reading the version before it. Import is one graph version, it is made durable by a checkpoint
+     * instead of logging every edge; the log continues after the import only once the checkpoint is on disk.
+     * Import is all or nothing, a failure to parse the file or to write the checkpoint restores the graph.
+     *
+     * @param file edge-list file
+     * @return counts of the import
+     */
+    public ImportResult importEdges(Path file) throws IOException {
+        long start = System.nanoTime();
+        long waitStart = lockWaitStart();
+        boolean owner = waitStart >= 0;
+        VersionState before;
+        int nodesBefore;
+        int edgesBefore;
+        synchronized (this) {
+            if (owner) {
+                lockAcquired(waitStart);
+                startBatch();
+            }
+            before = copyState();
+            nodesBefore = nodeIds.size();
+            edgesBefore = edgeCount;
+        }
+        long[] skippedLines = new long[1];
+        boolean imported = false;
+        ImportResult result;
+        try {
+            EdgeListImport.parse(file, Runtime.getRuntime().availableProcessors(), chunk -> {
+                mergeChunk(chunk);
+                skippedLines[0] += chunk.skippedLines();
+            });
+            VersionState state = null;
+            Path directory = null;
+            synchronized (this) {
+                int nodesAdded = nodeIds.size() - nodesBefore;
+                int edges = edgeCount - edgesBefore;
+                if (nodesAdded > 0 || edges > 0) {
+                    publish();
+                    cache.edgesImported(version);
+                    buildHotTrees();
+                    if (null != log) {
+                        state = copyState();
+                        directory = dataDirectory;
+                    }
+                }
+                result = new ImportResult(nodesAdded, edges, skippedLines[0], System.nanoTime() - start);
+            }
+            if (null != state) {
+                writeImportCheckpoint(directory, state);
+            }
+            imported = true;
+            if (null != state) {
+                deleteBefore(directory, state.version);
+            }
+        } finally {
+            synchronized (this) {
+                //nodes and edges are only added by an import, unchanged counts mean nothing was merged
+                if (!imported && (nodeIds.size() != nodesBefore || edgeCount != edgesBefore)) {
+                    rollBack(before);
+                }
+            }
+            if (owner) {
+                finishBatch();
+            }
+        }
+        LOGGER.info("Imported " + file + ": " + result);
+        return result;
+    }
+
+    /**
+     * Writing snapshot of an import and starting a new log segment after it, the previous segment stays the one
+     * written to until the snapshot is complete
+     */
+    private void writeImportCheckpoint(Path directory, VersionState state) throws IOException {
+        GraphSnapshot graph = state.build(snapshotStorage);
+        Path written;
+        try {
+            written = SnapshotFile.write(directory, graph);
+        } finally {
+            graph.release();
+        }
+        try {
+            synchronized (this) {
+                if (null != log) {
+                    log.rotate(state.version);
+                    checkpointVersion = state.version;
+                }
+            }
+        } catch (IOException e) {
+            //the import is rolled back, its snapshot must not be restored
+            Files.deleteIfExists(written);
+            throw e;
+        }
+    }
+
+    /**
+     * Returning to the state before a failed import, must be called holding the monitor. Takes O(nodes + edges),
+     * which a failure can afford.
+     */
+    private void rollBack(VersionState before) {
+        GraphSnapshot stored = before.build(snapshotStorage);
+        long published = publishedVersion;
+        nodeIds.clear();
+        freeIds.clear();
+        restore(stored);
+        publishedVersion = published;
+        cache.edgesImported(version);
+        if (version != published) {
+            //import ran inside a batch, its version must not be visible before the batch ends
+            replaceSnapshot(null);
+        }
+        LOGGER.warning("Import failed, graph restored to version " + version);
+    }
+
+    /**
+     * Adding nodes and edges of one parsed chunk, the version is published once the whole import is merged
+     */
+    private synchronized void mergeChunk(EdgeListImport.Chunk chunk) {
+        int[] ids = new int[chunk.nameCount()];
+        for (int local = 0; local < ids.length; local++) {
+            Integer node = nodeIds.get(chunk.name(local));
+            ids[local] = null == node ? allocateNode(chunk.name(local)) : node;
+        }
+        for (int line = 0; line < chunk.lines(); line++) {
+            if (chunk.target(line) != EdgeListImport.NO_TARGET) {
+                int source = ids[chunk.source(line)];
+                int destination = ids[chunk.target(line)];
+                writableOutgoing(source).add(destination, chunk.weight(line));
+                adjacency(incomingEdges, destination).add(source, chunk.weight(line));
+                edgeCount++;
+            }
+        }
+    }
+
+    /**
+     * Writing out the log and stopping logging, graph stays usable in memory
+     */
+    public void closeStorage() throws IOException {
+        long waitStart = lockWaitStart();
+        synchronized (this) {
+            lockAcquired(waitStart);
+            if (null != log) {
+                log.close();
+                log = null;
+            }
+        }
+    }
+
+    /**
+     * Replacing empty graph by stored snapshot, incoming index is taken from the transposed CSR of the snapshot
+     */
+    private void restore(GraphSnapshot stored) {
+        int ids = stored.nodeCount();
+        int capacity = Math.max(INITIAL_CAPACITY, ids);
+        nodeNames = new String[capacity];
+        outgoingEdges = new AdjacencyList[capacity];
+        incomingEdges = new AdjacencyList[capacity];
+        for (int node = 0; node < ids; node++) {
+            String nodeName = stored.nodeName(node);
+            if (null == nodeName) {
+                freeIds.push(node);
+                continue;
+            }
+            nodeIds.put(nodeName, node);
+            nodeNames[node] = nodeName;
+            int first = stored.firstEdge(node);
+            int end = stored.endEdge(node);
+            if (end > first) {
+                AdjacencyList outgoing = new AdjacencyList(end - first);
+                for (int edge = first; edge < end; edge++) {
+                    outgoing.add(stored.target(edge), stored.weight(edge));
+                }
+                outgoingEdges[node] = outgoing;
+            }
+            first = stored.firstIncomingEdge(node);
+            end = stored.endIncomingEdge(node);
+            if (end > first) {
+                AdjacencyList incoming = new AdjacencyList(end - first);
+                for (int edge = first; edge < end; edge++) {
+                    incoming.add(stored.incomingSource(edge), stored.incomingWeight(edge));
+                }
+                incomingEdges[node] = incoming;
+            }
+        }
+        nodeCount = ids;
+        edgeCount = stored.edgeCount();
+        version = stored.version();
+        publishedVersion = version;
+        replaceSnapshot(stored);
+        buildHotTrees();
+    }
+
+    /**
+     * Selecting sources whose shortest path trees are kept live, trees of existing nodes are computed now and
+     * trees of missing nodes when they are added
+     *
+     * @param nodeNames names of hot source nodes
+     */
+    public void setHotSources(Collection<String> nodeNames) {
+        long waitStart = lockWaitStart();
+        synchronized (this) {
+            lockAcquired(waitStart);
+            hotSources = new HashSet<>(nodeNames);
+            buildHotTrees();
+        }
+    }
+
+    private void buildHotTrees() {
+        hotTrees = Collections.emptyMap();
+        for (String nodeName : hotSources) {
+            Integer node = nodeIds.get(nodeName);
+            if (null != node) {
+                addHotTree(node);
+            }
+        }
+    }
+
+    private void addHotTree(int node) {
+        Map<Integer, DynamicShortestPathTree> trees = new HashMap<>(hotTrees);
+        trees.put(node, new DynamicShortestPathTree(node, nodeNames.length, outgoingEdges, version));
+        hotTrees = trees;
+    }
+
+    private static Set<String> hotSourcesFromSystemProperty() {
+        String property = System.getProperty("hot.sources", "");
+        Set<String> sources = new HashSet<>();
+        for (String nodeName : property.split(",")) {
+            if (!nodeName.isBlank()) {
+                sources.add(nodeName.trim());
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @return time the wait for the monitor started or -1 if current thread already holds it or runs a batch
+     * (mutation in a batch)
+     */
+    private long lockWaitStart() {
+        return isWriting() ? -1 : System.nanoTime();
+    }
+
+    /**
+     * Recording the wait of a writer which entered the monitor, after waiting for a batch of another thread to end
+     */
+    private void lockAcquired(long waitStart) {
+        awaitBatch();
+        recordLockWait(waitStart);
+    }
+
+    private void recordLockWait(long waitStart) {
+        if (waitStart >= 0) {
+            lockWait.record(System.nanoTime() - waitStart);
+        }
+    }
+
+    /**
+     * Starting new graph version, snapshot of the old version stays valid for queries already running on it
+     */
+    private void publish() {
+        version++;
+        replaceSnapshot(null);
+        if (null == batchOwner) {
+            publishedVersion = version;
+        }
+    }
+
+    /**
+     * @return outgoing edges of node which may be changed: a list a snapshot build may be reading, created before the
+     * latest {@link #copyState()}, is replaced by a copy first
+     */
+    private AdjacencyList writableOutgoing(int node) {
+        AdjacencyList edges = outgoingEdges[node];
+        if (null == edges) {
+            edges = new AdjacencyList(INITIAL_EDGES, copyEpoch);
+            outgoingEdges[node] = edges;
+        } else if (edges.epoch() != copyEpoch) {
+            edges = edges.copy(copyEpoch);
+            outgoingEdges[node] = edges;
+        }
+        return edges;
+    }
+
+    private static AdjacencyList adjacency(AdjacencyList[] index, int node) {
+        if (null == index[node]) {
+            index[node] = new AdjacencyList();
+        }
+        return index[node];
+    }
+
     /**
      * Finding shortest path (Integer) between source node and destination node
      *
      * @param sourceNode      source node name
      * @param destinationNode destination node name
      * @return Integer {0} if any of provided nodes doesnt exist or Integer {value} if path has been found
+     * @throws QueryLimitExceededException if the search exceeds the query limits
+     */
+    public Integer getShortestPath(String sourceNode, String destinationNode) {
+        LOGGER.fine("Calculating Shortest path");
+        int hotDistance = hotDistance(sourceNode, destinationNode);
+        if (hotDistance != DynamicShortestPathTree.STALE) {
+            hotHits.increment();
+            return hotDistance;
+        }
+        GraphSnapshot graph = getSnapshot();
+        try {
+            int source = graph.nodeId(sourceNode);
+            int destination = graph.nodeId(destinationNode);
+            if (GraphSnapshot.NO_NODE == source || GraphSnapshot.NO_NODE == destination) {
+                return 0;
+            }
+            QueryBudget budget = newBudget();
+            ShortestPathTree tree = sharedTree(graph, source, budget);
+            if (null != tree) {
+                return tree.distance(destination);
+            }
+            PathSearch search = pathSearch;
+            if (search == PathSearch.CONTRACTION_HIERARCHY) {
+                ContractionHierarchy hierarchy = graph.builtContractionHierarchy();
+                if (null != hierarchy) {
+                    return hierarchy.distance(source, destination);
+                }
+                scheduleHierarchyBuild();
+                search = PathSearch.BIDIRECTIONAL;
+            }
+            if (search == PathSearch.TREE || cache.admit(source)) {
+                return treeFlights.execute(new QueryKey(source, graph.version(), ShortestPathAlgorithm.INFINITY), () -> {
+                    ShortestPathTree computed = computeTree(graph, source, budget);
+                    cache.put(computed, graph.version());
+                    return computed;
+                }, budget).distance(destination);
+            }
+            return search.distance(graph, algorithmType, source, destination, budget);
+        } finally {
+            graph.release();
+        }
+    }
+
+    /**
+     * Reading distance from the live tree of a hot source without a snapshot, so queries from hot sources dont
+     * wait for a snapshot build after a mutation. Names are resolved against the mutable index, a mutation
+     * running meanwhile is detected by the published version changing and a running batch by its owner, in both
+     * cases the query falls back to the snapshot.
+     *
+     * @return distance or {@link DynamicShortestPathTree#STALE} if source is not hot, a node doesnt exist or the
+     * tree doesnt represent the published version
      */
-    public synchronized Integer getShortestPath(String sourceNode, String destinationNode) {
-        LOGGER.info("Calculating Shortest path");
-        AlgorithmImplementation dijkstra = new AlgorithmImplementation(DIRECTED_GRAPH_INSTANCE);
-        if (null == getNodes().get(sourceNode) || null == getNodes().get(destinationNode)) {
-            return 0;
+    private int hotDistance(String sourceNode, String destinationNode) {
+        Map<Integer, DynamicShortestPathTree> trees = hotTrees;
+        if (trees.isEmpty() || null != batchOwner) {
+            return DynamicShortestPathTree.STALE;
         }
-        dijkstra.execute(getNodes().get(sourceNode));
-        return dijkstra.getShortestDistance(getNodes().get(destinationNode));
+        long current = publishedVersion;
+        Integer source = nodeIds.get(sourceNode);
+        Integer destination = nodeIds.get(destinationNode);
+        DynamicShortestPathTree tree = null == source ? null : trees.get(source);
+        if (null == tree || null == destination) {
+            return DynamicShortestPathTree.STALE;
+        }
+        int distance = tree.distance(destination, current);
+        //nodes added by a batch must not be visible before it ends
+        return null == batchOwner && publishedVersion == current ? distance : DynamicShortestPathTree.STALE;
     }
 
     /**
-     * Finding closer than (Integer) from source node to all nodes with smaller (sum) weight of links
+     * Finding shortest paths from every source node to every destination node on one graph version. With a ready
+     * contraction hierarchy the matrix is computed by its bucket algorithm, otherwise every distinct source is
+     * answered from its live or cached tree or by one search stopping once all destinations are settled.
      *
-     * @param weight     Integer (limit) of all links from source node
+     * @param sourceNodes      source node names, duplicates allowed
+     * @param destinationNodes destination node names, duplicates allowed
+     * @return distances by source index and destination index, Integer.MAX_VALUE where no path exists, null if
+     * any of provided nodes doesnt exist
+     * @throws QueryLimitExceededException if the searches of all sources together exceed the query limits
+     */
+    public int[][] getDistances(List<String> sourceNodes, List<String> destinationNodes) {
+        LOGGER.fine("Calculating distances");
+        GraphSnapshot graph = getSnapshot();
+        try {
+            int[] sources = nodeIds(graph, sourceNodes);
+            int[] destinations = nodeIds(graph, destinationNodes);
+            if (null == sources || null == destinations) {
+                return null;
+            }
+            if (pathSearch == PathSearch.CONTRACTION_HIERARCHY) {
+                ContractionHierarchy hierarchy = graph.builtContractionHierarchy();
+                if (null != hierarchy) {
+                    return hierarchy.distances(sources, destinations);
+                }
+                scheduleHierarchyBuild();
+            }
+            QueryBudget budget = newBudget();
+            int[][] distances = new int[sources.length][];
+            Map<Integer, int[]> rows = new HashMap<>();
+            for (int i = 0; i < sources.length; i++) {
+                int source = sources[i];
+                distances[i] = rows.computeIfAbsent(source, key -> distancesFrom(graph, source, destinations, budget));
+            }
+            return distances;
+        } finally {
+            graph.release();
+        }
+    }
+
+    private int[] distancesFrom(GraphSnapshot graph, int source, int[] destinations, QueryBudget budget) {
+        int[] row = new int[destinations.length];
+        DynamicShortestPathTree hotTree = hotTrees.get(source);
+        if (null != hotTree) {
+            boolean current = true;
+            for (int j = 0; j < destinations.length && current; j++) {
+                row[j] = hotTree.distance(destinations[j], graph.version());
+                current = row[j] != DynamicShortestPathTree.STALE;
+            }
+            if (current) {
+                hotHits.increment();
+                return row;
+            }
+        }
+        ShortestPathTree tree = sharedTree(graph, source, budget);
+        if (null != tree) {
+            for (int j = 0; j < destinations.length; j++) {
+                row[j] = tree.distance(destinations[j]);
+            }
+            return row;
+        }
+        try (ShortestPathAlgorithm dijkstra = algorithmType.create(graph, budget)) {
+            dijkstra.executeToAll(source, destinations);
+            for (int j = 0; j < destinations.length; j++) {
+                row[j] = dijkstra.getShortestDistance(destinations[j]);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @param budget of the query, limiting how long it waits for a tree computed by another query
+     * @return tree of source valid in the graph version from the cache or computed by another query at the moment,
+     * null if there is none or the other query exceeded its limits
+     */
+    private ShortestPathTree sharedTree(GraphSnapshot graph, int source, QueryBudget budget) {
+        ShortestPathTree tree = cache.get(source, graph.version());
+        if (null != tree) {
+            return tree;
+        }
+        return treeFlights.join(new QueryKey(source, graph.version(), ShortestPathAlgorithm.INFINITY), budget);
+    }
+
+    /**
+     * @return node ids in the same order, null if any node doesnt exist
+     */
+    private static int[] nodeIds(GraphSnapshot graph, List<String> nodeNames) {
+        int[] ids = new int[nodeNames.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.nodeId(nodeNames.get(i));
+            if (GraphSnapshot.NO_NODE == ids[i]) {
+                return null;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Full single source search, run in parallel by {@link DeltaStepping} on graphs with at least
+     * {@link #setParallelThreshold(int) threshold} edges and by the configured engine otherwise
+     */
+    private ShortestPathTree computeTree(GraphSnapshot graph, int source, QueryBudget budget) {
+        if (graph.edgeCount() >= parallelThreshold) {
+            return DeltaStepping.create(graph).execute(source, budget);
+        }
+        try (ShortestPathAlgorithm dijkstra = algorithmType.create(graph, budget)) {
+            dijkstra.execute(source);
+            return dijkstra.toTree();
+        }
+    }
+
+    /**
+     * Building contraction hierarchy of the current version in the background unless a build is already pending,
+     * a build running during a mutation finishes with the old version and the next query schedules another one
+     */
+    private void scheduleHierarchyBuild() {
+        if (!hierarchyBuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        HIERARCHY_BUILDER.execute(() -> {
+            //cleared first, so a mutation during the build schedules the next one
+            hierarchyBuildScheduled.set(false);
+            GraphSnapshot graph = getSnapshot();
+            try {
+                if (null != graph.builtContractionHierarchy()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                ContractionHierarchy hierarchy = graph.contractionHierarchy();
+                LOGGER.info("Contraction hierarchy of version " + hierarchy.version() + " built in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms, " + hierarchy.shortcutCount() + " shortcuts");
+            } finally {
+                graph.release();
+            }
+        });
+    }
+
+    /**
+     * Finding all nodes closer than given weight to source node, only the neighborhood within the limit is searched
+     *
+     * @param weight     Integer (exclusive limit) of the sum of weights of links from source node
      * @param sourceNode source node name
-     * @return all nodes excluding source node
+     * @return names of all nodes with shortest distance from source below the weight excluding source node,
+     * sorted by name, null if source node doesnt exist
+     * @throws QueryLimitExceededException if the search exceeds the query limits
      */
-    public synchronized Set<String> getCloserThan(int weight, String sourceNode) {
-        LOGGER.info("Calculating closer than");
-        if (null == getNodes().get(sourceNode)) {
-            return null;
+    public Set<String> getCloserThan(int weight, String sourceNode) {
+        LOGGER.fine("Calculating closer than");
+        GraphSnapshot graph = getSnapshot();
+        try {
+            int source = graph.nodeId(sourceNode);
+            if (GraphSnapshot.NO_NODE == source) {
+                return null;
+            }
+            QueryBudget budget = newBudget();
+            return closerThanFlights.execute(new QueryKey(source, graph.version(), weight), () -> {
+                try (ShortestPathAlgorithm dijkstra = algorithmType.create(graph, budget)) {
+                    dijkstra.executeWithin(source, weight);
+                    return Collections.unmodifiableSet(dijkstra.getCloserThan());
+                }
+            }, budget);
+        } finally {
+            graph.release();
         }
-        AlgorithmImplementation dijkstra = new AlgorithmImplementation(DIRECTED_GRAPH_INSTANCE);
-        dijkstra.execute(getNodes().get(sourceNode));
-        return dijkstra.getCloserThan(weight, sourceNode);
     }
 
     /**
-     * @return all nodes in a HashMap
+     * @return engine used for shortest path queries
      */
-    public synchronized HashMap<String, String> getNodes() {
-        return nodes;
+    public AlgorithmType getAlgorithmType() {
+        return algorithmType;
     }
 
     /**
-     * @return list with all edges (sourceNode, destinationNode, weight)
+     * Selecting engine used for all following shortest path queries
+     *
+     * @param algorithmType engine type
      */
-    CopyOnWriteArrayList<Edge> getEdges() {
-        return edges;
+    public void setAlgorithmType(AlgorithmType algorithmType) {
+        this.algorithmType = algorithmType;
     }
 
     /**
-     * Singleton instance of DirectedGraph class to be shared among multiple sessions
+     * @return search used for shortest path queries not answered from the cache
+     */
+    public PathSearch getPathSearch() {
+        return pathSearch;
+    }
+
+    /**
+     * Selecting search used for all following shortest path queries not answered from the cache
+     *
+     * @param pathSearch search type
+     */
+    public void setPathSearch(PathSearch pathSearch) {
+        this.pathSearch = pathSearch;
+    }
+
+    /**
+     * @return edge count from which full shortest path trees are computed in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Selecting graph size from which full shortest path trees are computed in parallel by {@link DeltaStepping},
+     * taken from system property "parallel.threshold" by default
+     *
+     * @param edgeCount number of edges, Integer.MAX_VALUE to always search sequentially
+     */
+    public void setParallelThreshold(int edgeCount) {
+        this.parallelThreshold = edgeCount;
+    }
+
+    /**
+     * @return memory edge arrays of new snapshots are kept in
+     */
+    public SnapshotStorage getSnapshotStorage() {
+        return snapshotStorage;
+    }
+
+    /**
+     * Selecting memory edge arrays of snapshots built or restored from now on are kept in, adjacency lists of the
+     * graph itself stay on the heap
+     *
+     * @param snapshotStorage storage type
+     */
+    public void setSnapshotStorage(SnapshotStorage snapshotStorage) {
+        this.snapshotStorage = snapshotStorage;
+    }
+
+    /**
+     * @return nodes a query may settle, 0 if not limited
+     */
+    public long getQueryMaxNodes() {
+        return queryMaxNodes;
+    }
+
+    /**
+     * @return milliseconds a query may run, 0 if not limited
+     */
+    public long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * Limiting all following queries, a query over a limit throws {@link QueryLimitExceededException}. Searches
+     * of a ready contraction hierarchy are not limited, they settle only a few hundred nodes.
+     *
+     * @param maxNodes      nodes one query may settle, 0 for no limit
+     * @param timeoutMillis milliseconds one query may run, 0 for no limit
+     */
+    public void setQueryLimits(long maxNodes, long timeoutMillis) {
+        if (maxNodes < 0 || timeoutMillis < 0) {
+            throw new IllegalArgumentException("Query limits cannot be negative");
+        }
+        this.queryMaxNodes = maxNodes;
+        this.queryTimeout = timeoutMillis;
+    }
+
+    private QueryBudget newBudget() {
+        long maxNodes = queryMaxNodes;
+        long timeout = queryTimeout;
+        return maxNodes == 0 && timeout == 0 ? QueryBudget.UNLIMITED : new QueryBudget(maxNodes, timeout);
+    }
+
+    /**
+     * @return number of shortest path queries answered from the cache
+     */
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return number of shortest path queries which had to run the algorithm
+     */
+    public long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * @return number of shortest path queries answered from a live tree of a hot source
+     */
+    public long getHotHitCount() {
+        return hotHits.sum();
+    }
+
+    /**
+     * @return number of queries answered by joining an identical query running at the same time
+     */
+    public long getSharedQueryCount() {
+        return treeFlights.getSharedCount() + closerThanFlights.getSharedCount();
+    }
+
+    /**
+     * @return number of cached trees evicted because cache was full
+     */
+    public long getCacheEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * @return number of cached trees dropped because a mutation changed them
+     */
+    public long getCacheInvalidationCount() {
+        return cache.getInvalidationCount();
+    }
+
+    /**
+     * @return nanoseconds writers waited for the graph monitor, one value per mutation, batch or snapshot copy
+     */
+    public LatencyHistogram getLockWaitHistogram() {
+        return lockWait;
+    }
+
+    /**
+     * @return names of all nodes
+     */
+    public Set<String> getNodes() {
+        GraphSnapshot graph = getSnapshot();
+        try {
+            return graph.nodes();
+        } finally {
+            graph.release();
+        }
+    }
+
+    /**
+     * Taking currently published graph version without locking. If a mutation happened since the last snapshot,
+     * node names and references to the adjacency lists of the current version are copied under the monitor and the
+     * snapshot is built from them outside of it, so writers wait only for the copy. Concurrent builds are
+     * serialized, queries arriving during a build wait for it instead of building the same version again.
+     * Must not be called while holding the monitor.
+     * <p>
+     * Returned snapshot is retained for the caller, who releases it once done reading so that off-heap edge arrays
+     * of replaced snapshots are freed right away. A snapshot never released is freed by the collector.
+     *
+     * @return immutable CSR view of the current graph
+     */
+    GraphSnapshot getSnapshot() {
+        GraphSnapshot current = snapshot;
+        if (null != current && current.retain()) {
+            return current;
+        }
+        synchronized (snapshotBuild) {
+            VersionState state;
+            long waitStart = lockWaitStart();
+            synchronized (this) {
+                recordLockWait(waitStart);
+                //queries of other threads dont see the mutations of a running batch
+                state = null != batchBase && Thread.currentThread() != batchOwner ? batchBase : null;
+                current = null == state ? snapshot : state.snapshot;
+                if (null != current) {
+                    //cannot fail, the graph or the batch holds a reference under the monitor
+                    current.retain();
+                    return current;
+                }
+                if (null == state) {
+                    state = copyState();
+                }
+            }
+            GraphSnapshot built = state.build(snapshotStorage);
+            synchronized (this) {
+                if (state == batchBase) {
+                    built.retain();
+                    state.snapshot = built;
+                } else if (null == batchOwner && version == built.version()) {
+                    //a mutation during the build started a newer version, the built one still answers this query
+                    built.retain();
+                    replaceSnapshot(built);
+                }
+            }
+            return built;
+        }
+    }
+
+    /**
+     * Replacing snapshot of the current version, must be called holding the monitor. Graph takes over a reference
+     * to the new snapshot and releases the replaced one, which is freed once the queries reading it release it too.
+     */
+    private void replaceSnapshot(GraphSnapshot replacement) {
+        GraphSnapshot replaced = snapshot;
+        snapshot = replacement;
+        if (null != replaced) {
+            replaced.release();
+        }
+    }
+
+    /**
+     * Copying everything a snapshot is built from in O(nodes): adjacency lists are shared with the copy, lists
+     * created before it are replaced by copies when they change next, see {@link #writableOutgoing(int)}
+     */
+    private VersionState copyState() {
+        copyEpoch++;
+        return new VersionState(Arrays.copyOf(nodeNames, nodeCount), Arrays.copyOf(outgoingEdges, nodeCount),
+                edgeCount, version);
+    }
+
+    /**
+     * @return version of the published graph, increased by every successful mutation
+     */
+    public long getVersion() {
+        //a batch sees its own mutations, nobody else changes the version while it runs
+        return Thread.currentThread() == batchOwner ? version : publishedVersion;
+    }
+
+    /**
+     * @return snapshot of the current version or null if none was built since the last mutation
+     */
+    GraphSnapshot builtSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Singleton instance of DirectedGraph class to be shared among multiple sessions, the default graph of
+     * {@link GraphRegistry}
      *
      * @return DirectedGraph INSTANCE
      */
     public static DirectedGraph getInstance() {
-        if (null == DIRECTED_GRAPH_INSTANCE) {
-            DIRECTED_GRAPH_INSTANCE = new DirectedGraph();
+        return InstanceHolder.DIRECTED_GRAPH_INSTANCE;
+    }
+
+    /**
+     * Source, graph version and distance limit of a query, {@link ShortestPathAlgorithm#INFINITY} for full trees
+     */
+    private static final class QueryKey {
+        private final int source;
+        private final long version;
+        private final int limit;
+
+        private QueryKey(int source, long version, int limit) {
+            this.source = source;
+            this.version = version;
+            this.limit = limit;
         }
-        return DIRECTED_GRAPH_INSTANCE;
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey key = (QueryKey) other;
+            return source == key.source && version == key.version && limit == key.limit;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * source + Long.hashCode(version)) * 31 + limit;
+        }
+    }
+
+    /**
+     * Node names and outgoing adjacency lists of one graph version, none of them changes after the copy. State
+     * before a batch keeps a reference to its snapshot, built at most once, until the batch ends.
+     */
+    private static final class VersionState {
+        private final String[] nodeNames;
+        private final AdjacencyList[] outgoing;
+        private final int edgeCount;
+        private final long version;
+        private GraphSnapshot snapshot;
+
+        private VersionState(String[] nodeNames, AdjacencyList[] outgoing, int edgeCount, long version) {
+            this.nodeNames = nodeNames;
+            this.outgoing = outgoing;
+            this.edgeCount = edgeCount;
+            this.version = version;
+        }
+
+        /**
+         * @param snapshot current snapshot of the graph, must be called holding the graph monitor
+         */
+        private VersionState(GraphSnapshot snapshot) {
+            this(null, null, snapshot.edgeCount(), snapshot.version());
+            snapshot.retain();
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * @return new snapshot of this state, retained for the caller
+         */
+        private GraphSnapshot build(SnapshotStorage storage) {
+            return GraphSnapshot.build(nodeNames, outgoing, nodeNames.length, edgeCount, version, storage);
+        }
+
+        private void release() {
+            if (null != snapshot) {
+                snapshot.release();
+            }
+        }
+    }
+
+    /**
+     * Lazily and safely initialized singleton holder
+     */
+    private static final class InstanceHolder {
+        private static final DirectedGraph DIRECTED_GRAPH_INSTANCE = new DirectedGraph();
     }
 }
\ No newline at end of file
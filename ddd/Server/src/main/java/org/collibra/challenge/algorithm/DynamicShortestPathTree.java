@@ -0,0 +1,258 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Shortest path tree of one hot source kept up to date under graph mutations instead of being recomputed,
+ * in the style of Ramalingam–Reps dynamic SSSP. {@link DirectedGraph} reports every mutation while holding its
+ * monitor, together with its adjacency lists:
+ * <ul>
+ * <li>added edge shortening the distance of its destination starts a Dijkstra from there which only follows
+ * nodes whose distance improves</li>
+ * <li>removed tree edge (or removed node) invalidates the subtree hanging below it; every node of the subtree gets
+ * the best distance offered by its incoming edges from outside the subtree, then Dijkstra restricted to the
+ * subtree settles the final distances. Nodes outside of the subtree keep their distance, as removal never
+ * shortens a path</li>
+ * </ul>
+ * So work is proportional to the part of the tree which actually changes. Queries read distances under
+ * optimistic {@link StampedLock} reads and only take the read lock if a repair ran meanwhile.
+ */
+final class DynamicShortestPathTree {
+
+    /**
+     * Returned by {@link #distance(int, long)} if the tree belongs to other graph version than the query
+     */
+    static final int STALE = Integer.MIN_VALUE;
+
+    private static final int INFINITY = ShortestPathAlgorithm.INFINITY;
+
+    private final int source;
+    private final StampedLock lock = new StampedLock();
+    private int[] distance;
+    private int[] parents;
+    private long version;
+    //working state of repairs reused between mutations, so a repair costs only as much as the subtree it repairs
+    private IndexedMinHeap unSettledNodes;
+    private boolean[] affected;
+    private int[] affectedNodes;
+    private int affectedCount;
+
+    /**
+     * Computing initial tree of source from current adjacency lists
+     *
+     * @param capacity size of the id space
+     */
+    DynamicShortestPathTree(int source, int capacity, AdjacencyList[] outgoing, long graphVersion) {
+        this.source = source;
+        this.distance = new int[capacity];
+        this.parents = new int[capacity];
+        this.version = graphVersion;
+        Arrays.fill(distance, INFINITY);
+        Arrays.fill(parents, GraphSnapshot.NO_NODE);
+        allocateWorkingState(capacity);
+        distance[source] = 0;
+        unSettledNodes.insertOrDecrease(source, 0);
+        propagate(outgoing, false);
+    }
+
+    int source() {
+        return source;
+    }
+
+    /**
+     * @return shortest distance from source, Integer.MAX_VALUE if node is not reachable, {@link #STALE} if tree
+     * doesnt represent given graph version
+     */
+    int distance(int node, long graphVersion) {
+        long stamp = lock.tryOptimisticRead();
+        int result = read(node, graphVersion);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = read(node, graphVersion);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    private int read(int node, long graphVersion) {
+        int[] current = distance;
+        if (version != graphVersion) {
+            return STALE;
+        }
+        return node < current.length ? current[node] : INFINITY;
+    }
+
+    /**
+     * New isolated node, or a reused id, is unreachable
+     */
+    void nodeAdded(int node, long graphVersion) {
+        long stamp = lock.writeLock();
+        try {
+            if (node >= distance.length) {
+                int capacity = Math.max(node + 1, distance.length * 2);
+                int oldCapacity = distance.length;
+                distance = Arrays.copyOf(distance, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                Arrays.fill(distance, oldCapacity, capacity, INFINITY);
+                Arrays.fill(parents, oldCapacity, capacity, GraphSnapshot.NO_NODE);
+                allocateWorkingState(capacity);
+            }
+            version = graphVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Propagating shorter distances if the new edge offers one to its destination
+     */
+    void edgeAdded(int from, int to, int weight, AdjacencyList[] outgoing, long graphVersion) {
+        long stamp = lock.writeLock();
+        try {
+            version = graphVersion;
+            long candidate = distance[from] == INFINITY ? INFINITY : (long) distance[from] + weight;
+            if (candidate >= distance[to]) {
+                return;
+            }
+            distance[to] = (int) candidate;
+            parents[to] = from;
+            unSettledNodes.insertOrDecrease(to, (int) candidate);
+            propagate(outgoing, false);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Repairing the subtree below destination if removed edges were part of the tree
+     */
+    void edgesRemoved(int from, int to, AdjacencyList[] outgoing, AdjacencyList[] incoming, long graphVersion) {
+        long stamp = lock.writeLock();
+        try {
+            version = graphVersion;
+            if (parents[to] != from) {
+                return;
+            }
+            markSubtree(to, GraphSnapshot.NO_NODE, null, outgoing);
+            repair(outgoing, incoming);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Repairing the subtree below removed node, edges of the node are already detached from the graph
+     *
+     * @param removedOutgoing edges which left the removed node
+     */
+    void nodeRemoved(int node, AdjacencyList removedOutgoing, AdjacencyList[] outgoing, AdjacencyList[] incoming,
+                     long graphVersion) {
+        long stamp = lock.writeLock();
+        try {
+            version = graphVersion;
+            if (distance[node] == INFINITY) {
+                return;
+            }
+            markSubtree(node, node, removedOutgoing, outgoing);
+            //removed node stays marked, so that it is neither a predecessor nor reached again
+            repair(outgoing, incoming);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void allocateWorkingState(int capacity) {
+        unSettledNodes = new IndexedMinHeap(capacity);
+        affected = new boolean[capacity];
+        affectedNodes = new int[capacity];
+    }
+
+    /**
+     * Marking nodes whose tree path goes through root, root included. Tree edges are graph edges, so the subtree
+     * is found by following outgoing edges to nodes whose parent is the node the edge leaves.
+     */
+    private void markSubtree(int root, int removedNode, AdjacencyList removedOutgoing, AdjacencyList[] outgoing) {
+        affectedCount = 0;
+        affected[root] = true;
+        affectedNodes[affectedCount++] = root;
+        for (int next = 0; next < affectedCount; next++) {
+            int node = affectedNodes[next];
+            AdjacencyList edges = node == removedNode ? removedOutgoing : outgoing[node];
+            if (null == edges) {
+                continue;
+            }
+            for (int i = 0; i < edges.size(); i++) {
+                int child = edges.node(i);
+                if (!affected[child] && parents[child] == node) {
+                    affected[child] = true;
+                    affectedNodes[affectedCount++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputing distances of marked nodes from their unmarked predecessors, marks are cleared afterwards
+     */
+    private void repair(AdjacencyList[] outgoing, AdjacencyList[] incoming) {
+        for (int i = 0; i < affectedCount; i++) {
+            distance[affectedNodes[i]] = INFINITY;
+            parents[affectedNodes[i]] = GraphSnapshot.NO_NODE;
+        }
+        for (int i = 0; i < affectedCount; i++) {
+            int node = affectedNodes[i];
+            AdjacencyList edges = incoming[node];
+            if (null == edges) {
+                continue;
+            }
+            for (int e = 0; e < edges.size(); e++) {
+                int predecessor = edges.node(e);
+                if (affected[predecessor] || distance[predecessor] == INFINITY) {
+                    continue;
+                }
+                long candidate = (long) distance[predecessor] + edges.weight(e);
+                if (candidate < distance[node]) {
+                    distance[node] = (int) candidate;
+                    parents[node] = predecessor;
+                }
+            }
+            if (distance[node] != INFINITY) {
+                unSettledNodes.insertOrDecrease(node, distance[node]);
+            }
+        }
+        propagate(outgoing, true);
+        for (int i = 0; i < affectedCount; i++) {
+            affected[affectedNodes[i]] = false;
+        }
+        affectedCount = 0;
+    }
+
+    /**
+     * Dijkstra from the nodes in the heap, following only nodes whose distance improves
+     *
+     * @param onlyAffected true if only marked nodes may change their distance
+     */
+    private void propagate(AdjacencyList[] outgoing, boolean onlyAffected) {
+        while (!unSettledNodes.isEmpty()) {
+            int node = unSettledNodes.poll();
+            AdjacencyList edges = outgoing[node];
+            if (null == edges) {
+                continue;
+            }
+            int nodeDistance = distance[node];
+            for (int i = 0; i < edges.size(); i++) {
+                int next = edges.node(i);
+                long candidate = (long) nodeDistance + edges.weight(i);
+                if ((!onlyAffected || affected[next]) && candidate < distance[next]) {
+                    distance[next] = (int) candidate;
+                    parents[next] = node;
+                    unSettledNodes.insertOrDecrease(next, (int) candidate);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package org.collibra.challenge.algorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Parallel parser of edge-list files. The file is split into chunks of {@value #CHUNK_BYTES} bytes parsed by a
+ * pool of threads, a line belongs to the chunk it starts in. Every chunk interns node names into its own local ids
+ * so that workers share nothing; {@link DirectedGraph#importEdges(Path)} merges every chunk into the graph as soon
+ * as it is parsed and drops it. Only a few chunks per thread are parsed ahead of the merge, so memory used by the
+ * parser doesnt grow with the file.
+ * <p>
+ * Line is {@code source destination [weight]} with words separated by spaces, tabs, commas or semicolons, weight
+ * is 1 if missing. Single word adds just the node. Empty lines and lines starting with '#' or '%' are ignored,
+ * anything else (header line, negative weight, lines longer than {@value #MAX_LINE_BYTES} bytes) is skipped and
+ * counted.
+ */
+final class EdgeListImport {
+
+    static final int CHUNK_BYTES = 8 * 1024 * 1024;
+    static final int MAX_LINE_BYTES = 64 * 1024;
+    //marks a line with a node only in the targets of a chunk
+    static final int NO_TARGET = -1;
+    //chunks parsed ahead of the merge per parsing thread
+    private static final int CHUNKS_AHEAD = 2;
+
+    private EdgeListImport() { }
+
+    /**
+     * @param threads number of parsing threads
+     * @param merge   called by the calling thread with every parsed chunk in file order
+     */
+    static void parse(Path file, int threads, Consumer<Chunk> merge) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) ((size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+            int workerCount = Math.max(1, Math.min(threads, chunks));
+            ExecutorService workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+                Thread thread = new Thread(runnable, "edge-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                ArrayDeque<Future<Chunk>> parsed = new ArrayDeque<>();
+                int next = 0;
+                while (next < chunks || !parsed.isEmpty()) {
+                    while (next < chunks && parsed.size() < workerCount * CHUNKS_AHEAD) {
+                        long start = (long) next++ * CHUNK_BYTES;
+                        parsed.add(workers.submit(() -> parseChunk(channel, start, Math.min(size, start + CHUNK_BYTES))));
+                    }
+                    merge.accept(parsed.remove().get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import of " + file + " interrupted", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException("Import of " + file + " failed", e.getCause());
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Reading the chunk together with enough bytes after it to finish its last line
+     */
+    private static Chunk parseChunk(FileChannel channel, long start, long end) throws IOException {
+        //one byte before the chunk tells whether the chunk starts with a new line
+        long readStart = Math.max(0, start - 1);
+        int length = (int) (Math.min(channel.size(), end + MAX_LINE_BYTES) - readStart);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        //positional reads dont move the shared channel position, so chunks are read concurrently
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, readStart + buffer.position()) < 0) {
+                break;
+            }
+        }
+        byte[] bytes = buffer.array();
+        int limit = buffer.position();
+        int position = 0;
+        if (start > 0) {
+            while (position < limit && bytes[position] != '\n') {
+                position++;
+            }
+            position++;
+        }
+        int chunkEnd = (int) (end - readStart);
+        Chunk chunk = new Chunk();
+        while (position < chunkEnd && position < limit) {
+            int lineEnd = position;
+            while (lineEnd < limit && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == limit && readStart + limit < channel.size()) {
+                //line doesnt fit into the bytes read after the chunk
+                chunk.skippedLines++;
+                break;
+            }
+            if (lineEnd - position > MAX_LINE_BYTES) {
+                chunk.skippedLines++;
+            } else {
+                chunk.parseLine(bytes, position, lineEnd);
+            }
+            position = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == ',' || b == ';' || b == '\r';
+    }
+
+    /**
+     * Lines of one chunk: node names by local id and one entry per line with source, target and weight
+     */
+    static final class Chunk {
+
+        private final HashMap<String, Integer> localIds = new HashMap<>();
+        private String[] names = new String[1024];
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private int[] weights = new int[1024];
+        private int lines;
+        private long skippedLines;
+        private final int[] wordStarts = new int[3];
+        private final int[] wordEnds = new int[3];
+
+        private void parseLine(byte[] bytes, int start, int end) {
+            int words = 0;
+            int position = start;
+            while (position < end) {
+                while (position < end && isSeparator(bytes[position])) {
+                    position++;
+                }
+                if (position == end) {
+                    break;
+                }
+                if (words == 0 && (bytes[position] == '#' || bytes[position] == '%')) {
+                    return;
+                }
+                if (words == 3) {
+                    skippedLines++;
+                    return;
+                }
+                wordStarts[words] = position;
+                while (position < end && !isSeparator(bytes[position])) {
+                    position++;
+                }
+                wordEnds[words++] = position;
+            }
+            if (words == 0) {
+                return;
+            }
+            int weight = 1;
+            if (words == 3) {
+                weight = parseWeight(bytes, wordStarts[2], wordEnds[2]);
+                if (weight < 0) {
+                    skippedLines++;
+                    return;
+                }
+            }
+            if (lines == sources.length) {
+                sources = Arrays.copyOf(sources, lines * 2);
+                targets = Arrays.copyOf(targets, lines * 2);
+                weights = Arrays.copyOf(weights, lines * 2);
+            }
+            sources[lines] = intern(bytes, wordStarts[0], wordEnds[0]);
+            targets[lines] = words == 1 ? NO_TARGET : intern(bytes, wordStarts[1], wordEnds[1]);
+            weights[lines] = weight;
+            lines++;
+        }
+
+        /**
+         * @return weight or -1 if word is not a non negative int
+         */
+        private static int parseWeight(byte[] bytes, int start, int end) {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE) {
+                    return -1;
+                }
+            }
+            return (int) value;
+        }
+
+        private int intern(byte[] bytes, int start, int end) {
+            String name = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            Integer id = localIds.get(name);
+            if (null != id) {
+                return id;
+            }
+            int local = localIds.size();
+            if (local == names.length) {
+                names = Arrays.copyOf(names, local * 2);
+            }
+            names[local] = name;
+            localIds.put(name, local);
+            return local;
+        }
+
+        int nameCount() {
+            return localIds.size();
+        }
+
+        String name(int local) {
+            return names[local];
+        }
+
+        int lines() {
+            return lines;
+        }
+
+        int source(int line) {
+            return sources[line];
+        }
+
+        /**
+         * @return local id of the destination or {@link #NO_TARGET} if the line adds just a node
+         */
+        int target(int line) {
+            return targets[line];
+        }
+
+        int weight(int line) {
+            return weights[line];
+        }
+
+        long skippedLines() {
+            return skippedLines;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.collibra.challenge.algorithm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Named graphs of independent tenants. Every name maps to its own {@link DirectedGraph} with its own monitor,
+ * snapshots, caches and storage, so sessions working on different graphs never contend or invalidate each other.
+ * Graph named {@value #DEFAULT_GRAPH} is {@link DirectedGraph#getInstance()}, used by sessions which never select
+ * a graph; other graphs are created on first use.
+ * <p>
+ * With storage opened the default graph keeps its files directly in the data directory and every other graph in
+ * its own {@code graphs/<name>} subdirectory; all graphs found there are restored on open.
+ */
+public final class GraphRegistry {
+
+    public static final String DEFAULT_GRAPH = "default";
+    static final int MAX_GRAPHS = 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(GraphRegistry.class.getName());
+    //names are used as directory names, so only a safe subset of characters is allowed
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String GRAPHS_DIRECTORY = "graphs";
+
+    private final ConcurrentHashMap<String, DirectedGraph> graphs = new ConcurrentHashMap<>();
+    private volatile Path dataDirectory;
+    private volatile long queryMaxNodes;
+    private volatile long queryTimeout;
+
+    GraphRegistry(DirectedGraph defaultGraph) {
+        graphs.put(DEFAULT_GRAPH, defaultGraph);
+    }
+
+    /**
+     * @return true if graph of given name exists or can be created
+     */
+    public static boolean isValidName(String name) {
+        return NAME.matcher(name).matches();
+    }
+
+    /**
+     * Taking graph of given name, graph is created (and restored from storage if open) when used first time
+     *
+     * @param name graph name, see {@link #isValidName(String)}
+     * @return graph of given name
+     * @throws IllegalArgumentException if name is not valid or there are already {@value #MAX_GRAPHS} graphs
+     * @throws UncheckedIOException     if storage of a new graph cant be opened
+     */
+    public DirectedGraph graph(String name) {
+        DirectedGraph graph = graphs.get(name);
+        if (null != graph) {
+            return graph;
+        }
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid graph name: " + name);
+        }
+        //created under the registry monitor, so concurrent creations cant exceed the limit together
+        synchronized (this) {
+            graph = graphs.get(name);
+            if (null != graph) {
+                return graph;
+            }
+            if (graphs.size() >= MAX_GRAPHS) {
+                throw new IllegalArgumentException("Too many graphs");
+            }
+            graph = create(name);
+            graphs.put(name, graph);
+            return graph;
+        }
+    }
+
+    private DirectedGraph create(String name) {
+        DirectedGraph graph = new DirectedGraph();
+        graph.setQueryLimits(queryMaxNodes, queryTimeout);
+        Path directory = dataDirectory;
+        if (null != directory) {
+            try {
+                graph.openStorage(directory.resolve(GRAPHS_DIRECTORY).resolve(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        LOGGER.info("Graph created: " + name);
+        return graph;
+    }
+
+    /**
+     * @return all graphs created so far
+     */
+    public Collection<DirectedGraph> graphs() {
+        return graphs.values();
+    }
+
+    public int size() {
+        return graphs.size();
+    }
+
+    /**
+     * Limiting queries of every graph, including graphs created later, see
+     * {@link DirectedGraph#setQueryLimits(long, long)}
+     */
+    public synchronized void setQueryLimits(long maxNodes, long timeoutMillis) {
+        for (DirectedGraph graph : graphs.values()) {
+            graph.setQueryLimits(maxNodes, timeoutMillis);
+        }
+        queryMaxNodes = maxNodes;
+        queryTimeout = timeoutMillis;
+    }
+
+    /**
+     * Opening storage of the default graph in the data directory and restoring every other graph stored in it,
+     * graphs created later are stored there too
+     *
+     * @param directory data directory, created if missing
+     */
+    public synchronized void openStorage(Path directory) throws IOException {
+        if (null != dataDirectory) {
+            throw new IllegalStateException("Storage is already open");
+        }
+        graphs.get(DEFAULT_GRAPH).openStorage(directory);
+        Path graphsDirectory = directory.resolve(GRAPHS_DIRECTORY);
+        dataDirectory = directory;
+        if (Files.isDirectory(graphsDirectory)) {
+            List<Path> stored = new ArrayList<>();
+            try (Stream<Path> files = Files.list(graphsDirectory)) {
+                files.filter(Files::isDirectory).forEach(stored::add);
+            }
+            for (Path graphDirectory : stored) {
+                String name = graphDirectory.getFileName().toString();
+                if (isValidName(name)) {
+                    graph(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writing checkpoint of every graph, see {@link DirectedGraph#checkpoint()}
+     */
+    public void checkpoint() throws IOException {
+        if (null == dataDirectory) {
+            throw new IllegalStateException("Storage is not open");
+        }
+        for (DirectedGraph graph : graphs.values()) {
+            graph.checkpoint();
+        }
+    }
+
+    /**
+     * Writing out logs of all graphs and stopping logging
+     */
+    public synchronized void closeStorage() throws IOException {
+        for (DirectedGraph graph : graphs.values()) {
+            graph.closeStorage();
+        }
+        dataDirectory = null;
+    }
+
+    /**
+     * Registry shared by all sessions
+     *
+     * @return GraphRegistry INSTANCE
+     */
+    public static GraphRegistry getInstance() {
+        return InstanceHolder.GRAPH_REGISTRY_INSTANCE;
+    }
+
+    /**
+     * Lazily and safely initialized singleton holder
+     */
+    private static final class InstanceHolder {
+        private static final GraphRegistry GRAPH_REGISTRY_INSTANCE = new GraphRegistry(DirectedGraph.getInstance());
+    }
+}
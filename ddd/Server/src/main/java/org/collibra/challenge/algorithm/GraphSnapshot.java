@@ -0,0 +1,287 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable compressed sparse row (CSR) view of the graph which queries run against. Nodes are identified by
+ * dense int ids assigned by {@link DirectedGraph#addNode(String)}, edges leaving node {@code n} are stored at
+ * positions {@code [firstEdge(n), endEdge(n))} of the target and weight arrays, which are on the heap or off
+ * it depending on {@link SnapshotStorage}. Ids of removed nodes have no
+ * name and no edges until they are reused. Every snapshot belongs to one graph version and never changes, so
+ * it can be read by any number of threads without synchronization.
+ * <p>
+ * Snapshot is reference counted: the graph holds a reference while the snapshot is current and every query
+ * while it reads it, the last {@link #release()} frees off-heap edge arrays without waiting for the collector.
+ * <p>
+ * Incoming edges, needed by backward searches only, are a transposed CSR built from the outgoing one on first use.
+ * {@link ContractionHierarchy} of the snapshot is built on first use too and lives as long as the snapshot.
+ */
+final class GraphSnapshot {
+
+    static final int NO_NODE = -1;
+
+    private final Map<String, Integer> nodeIds;
+    private final String[] nodeNames;
+    private final IntArray offsets;
+    private final IntArray targets;
+    private final IntArray weights;
+    private final long version;
+    //built lazily, racing threads build identical copies and either of them may win
+    private volatile IncomingEdges incomingEdges;
+    //expensive to build, so built once under the snapshot monitor
+    private volatile ContractionHierarchy contractionHierarchy;
+    //computed on first use like incoming edges, -1 until then
+    private volatile long averageWeight = -1;
+    //reference of the creator, arrays are freed when it drops to zero
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private GraphSnapshot(Map<String, Integer> nodeIds, String[] nodeNames, IntArray offsets, IntArray targets,
+                          IntArray weights, long version) {
+        this.nodeIds = nodeIds;
+        this.nodeNames = nodeNames;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.version = version;
+    }
+
+    /**
+     * Building snapshot from adjacency lists in one pass, lists must not change while the snapshot is built
+     *
+     * @param nodeNames node names by id, null for unused ids, kept by the snapshot
+     * @param outgoing  outgoing edges by id, null if node has none
+     * @param nodeCount number of ids in use (highest id + 1)
+     * @param edgeCount total number of edges
+     * @param version   graph version the snapshot represents
+     * @param storage   memory the edge arrays are allocated in
+     */
+    static GraphSnapshot build(String[] nodeNames, AdjacencyList[] outgoing, int nodeCount, int edgeCount,
+                               long version, SnapshotStorage storage) {
+        IntArray offsets = storage.allocate(nodeCount + 1);
+        IntArray targets = storage.allocate(edgeCount);
+        IntArray weights = storage.allocate(edgeCount);
+        int position = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            offsets.set(node, position);
+            AdjacencyList edges = outgoing[node];
+            if (null == edges) {
+                continue;
+            }
+            for (int i = 0; i < edges.size(); i++) {
+                targets.set(position, edges.node(i));
+                weights.set(position, edges.weight(i));
+                position++;
+            }
+        }
+        offsets.set(nodeCount, position);
+        String[] names = nodeNames.length == nodeCount ? nodeNames : Arrays.copyOf(nodeNames, nodeCount);
+        return new GraphSnapshot(nodeIds(names), names, offsets, targets, weights, version);
+    }
+
+    /**
+     * Creating snapshot from CSR arrays read back from a {@link SnapshotFile}
+     *
+     * @param nodeNames node names by id, null for unused ids
+     */
+    static GraphSnapshot restore(String[] nodeNames, IntArray offsets, IntArray targets, IntArray weights,
+                                 long version) {
+        return new GraphSnapshot(nodeIds(nodeNames), nodeNames, offsets, targets, weights, version);
+    }
+
+    private static Map<String, Integer> nodeIds(String[] nodeNames) {
+        Map<String, Integer> nodeIds = new HashMap<>();
+        for (int node = 0; node < nodeNames.length; node++) {
+            if (null != nodeNames[node]) {
+                nodeIds.put(nodeNames[node], node);
+            }
+        }
+        return Collections.unmodifiableMap(nodeIds);
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Taking a reference which keeps the edge arrays allocated until it is released
+     *
+     * @return false if the arrays are freed already, the snapshot must not be read then
+     */
+    boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Dropping a reference, the last one frees the edge arrays and nothing may read them afterwards
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            offsets.free();
+            targets.free();
+            weights.free();
+            IncomingEdges incoming = incomingEdges;
+            if (null != incoming) {
+                incoming.sources.free();
+                incoming.weights.free();
+            }
+        }
+    }
+
+    /**
+     * @return node id or {@link #NO_NODE} if node doesnt exist
+     */
+    int nodeId(String nodeName) {
+        Integer id = nodeIds.get(nodeName);
+        return null == id ? NO_NODE : id;
+    }
+
+    String nodeName(int node) {
+        return nodeNames[node];
+    }
+
+    /**
+     * @return size of the id space, arrays indexed by node id need this length
+     */
+    int nodeCount() {
+        return nodeNames.length;
+    }
+
+    int edgeCount() {
+        return targets.length();
+    }
+
+    Set<String> nodes() {
+        return nodeIds.keySet();
+    }
+
+    int firstEdge(int node) {
+        return offsets.get(node);
+    }
+
+    int endEdge(int node) {
+        return offsets.get(node + 1);
+    }
+
+    int target(int edge) {
+        return targets.get(edge);
+    }
+
+    int weight(int edge) {
+        return weights.get(edge);
+    }
+
+    /**
+     * @return average edge weight rounded down, 0 for a graph without edges, computed once per snapshot
+     */
+    long averageWeight() {
+        long average = averageWeight;
+        if (average < 0) {
+            long total = 0;
+            for (int edge = 0; edge < edgeCount(); edge++) {
+                assert weights.get(edge) >= 0 : "negative weight of edge " + edge;
+                total += weights.get(edge);
+            }
+            average = edgeCount() == 0 ? 0 : total / edgeCount();
+            averageWeight = average;
+        }
+        return average;
+    }
+
+    int firstIncomingEdge(int node) {
+        return incoming().offsets[node];
+    }
+
+    int endIncomingEdge(int node) {
+        return incoming().offsets[node + 1];
+    }
+
+    /**
+     * @return node the incoming edge starts at
+     */
+    int incomingSource(int edge) {
+        return incoming().sources.get(edge);
+    }
+
+    int incomingWeight(int edge) {
+        return incoming().weights.get(edge);
+    }
+
+    /**
+     * @return contraction hierarchy of this snapshot, built by the first caller while others wait
+     */
+    ContractionHierarchy contractionHierarchy() {
+        ContractionHierarchy hierarchy = contractionHierarchy;
+        if (null != hierarchy) {
+            return hierarchy;
+        }
+        synchronized (this) {
+            if (null == contractionHierarchy) {
+                contractionHierarchy = ContractionHierarchy.build(this);
+            }
+            return contractionHierarchy;
+        }
+    }
+
+    /**
+     * @return contraction hierarchy of this snapshot or null if it was not built yet
+     */
+    ContractionHierarchy builtContractionHierarchy() {
+        return contractionHierarchy;
+    }
+
+    private IncomingEdges incoming() {
+        IncomingEdges incoming = incomingEdges;
+        if (null == incoming) {
+            incoming = new IncomingEdges(this);
+            incomingEdges = incoming;
+        }
+        return incoming;
+    }
+
+    /**
+     * Transposed CSR: edges entering node {@code n} are stored at positions {@code [offsets[n], offsets[n + 1])}
+     */
+    private static final class IncomingEdges {
+
+        private final int[] offsets;
+        private final IntArray sources;
+        private final IntArray weights;
+
+        private IncomingEdges(GraphSnapshot graph) {
+            int nodeCount = graph.nodeCount();
+            //edge arrays are kept in the same memory as the outgoing ones, offsets are per node and stay on heap
+            SnapshotStorage storage = graph.targets instanceof IntArray.OffHeap ? SnapshotStorage.OFF_HEAP
+                    : SnapshotStorage.HEAP;
+            offsets = new int[nodeCount + 1];
+            sources = storage.allocate(graph.edgeCount());
+            weights = storage.allocate(graph.edgeCount());
+            //counting edges per target, then placing every edge right after the ones of previous targets
+            for (int edge = 0; edge < graph.edgeCount(); edge++) {
+                offsets[graph.target(edge) + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                for (int edge = graph.firstEdge(node), end = graph.endEdge(node); edge < end; edge++) {
+                    int position = next[graph.target(edge)]++;
+                    sources.set(position, node);
+                    weights.set(position, graph.weight(edge));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Counts of one bulk import, see {@link DirectedGraph#importEdges(java.nio.file.Path)}
+ */
+public final class ImportResult {
+
+    private final int nodesAdded;
+    private final long edgesAdded;
+    private final long skippedLines;
+    private final long nanos;
+
+    ImportResult(int nodesAdded, long edgesAdded, long skippedLines, long nanos) {
+        this.nodesAdded = nodesAdded;
+        this.edgesAdded = edgesAdded;
+        this.skippedLines = skippedLines;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return number of nodes which didnt exist before the import
+     */
+    public int getNodesAdded() {
+        return nodesAdded;
+    }
+
+    public long getEdgesAdded() {
+        return edgesAdded;
+    }
+
+    /**
+     * @return number of lines which are neither an edge, a node, a comment nor empty
+     */
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    /**
+     * @return duration of parsing and building in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return nodesAdded + " nodes, " + edgesAdded + " edges, " + skippedLines + " lines skipped in "
+                + nanos / 1_000_000 + " ms";
+    }
+}
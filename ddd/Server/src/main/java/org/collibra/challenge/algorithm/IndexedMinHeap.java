@@ -0,0 +1,136 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of node ids ordered by int key with decrease-key support. Position of every node in the heap
+ * is tracked, so a node is never stored twice and its key can be lowered in O(log n).
+ */
+final class IndexedMinHeap {
+
+    private static final int ABSENT = -1;
+
+    private final int[] heap;
+    private final int[] keys;
+    private final int[] positions;
+    private int size;
+
+    /**
+     * @param capacity number of node ids, heap accepts ids in range [0, capacity)
+     */
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return minimal key, heap must not be empty
+     */
+    int minKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Inserting node with given key or lowering key of a node already in the heap
+     */
+    void insertOrDecrease(int node, int key) {
+        int position = positions[node];
+        if (position == ABSENT) {
+            position = size++;
+            heap[position] = node;
+            positions[node] = position;
+        } else if (key >= keys[node]) {
+            return;
+        }
+        keys[node] = key;
+        siftUp(position);
+    }
+
+    /**
+     * Inserting node with given key or setting key of a node already in the heap, the key may also grow
+     */
+    void insertOrUpdate(int node, int key) {
+        int position = positions[node];
+        if (position == ABSENT) {
+            insertOrDecrease(node, key);
+            return;
+        }
+        int previous = keys[node];
+        keys[node] = key;
+        if (key < previous) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * Removing all nodes, takes time proportional to the number of nodes left in the heap only
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return node with minimal key, removed from the heap
+     */
+    int poll() {
+        int node = heap[0];
+        positions[node] = ABSENT;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return node;
+    }
+
+    private void siftUp(int position) {
+        int node = heap[position];
+        int key = keys[node];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentNode = heap[parent];
+            if (keys[parentNode] <= key) {
+                break;
+            }
+            heap[position] = parentNode;
+            positions[parentNode] = position;
+            position = parent;
+        }
+        heap[position] = node;
+        positions[node] = position;
+    }
+
+    private void siftDown(int position) {
+        int node = heap[position];
+        int key = keys[node];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            int childNode = heap[child];
+            if (key <= keys[childNode]) {
+                break;
+            }
+            heap[position] = childNode;
+            positions[childNode] = position;
+            position = child;
+        }
+        heap[position] = node;
+        positions[node] = position;
+    }
+}
@@ -0,0 +1,166 @@
+package org.collibra.challenge.algorithm;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed length int array of a {@link GraphSnapshot}, either a Java array or off-heap memory, see
+ * {@link SnapshotStorage}
+ */
+abstract class IntArray {
+
+    abstract int get(int index);
+
+    abstract void set(int index, int value);
+
+    abstract int length();
+
+    /**
+     * Freeing memory of the array right away, it must not be read afterwards. Heap arrays are left to the collector.
+     */
+    void free() {
+    }
+
+    /**
+     * Array on the heap
+     */
+    static final class Heap extends IntArray {
+
+        private final int[] values;
+
+        Heap(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        @Override
+        int length() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Array split into segments of 2^{@value #SEGMENT_SHIFT} ints, as a single buffer cannot hold more than 2 GB
+     */
+    static final class OffHeap extends IntArray {
+
+        static final int SEGMENT_SHIFT = 27;
+        private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+        private static final Logger LOGGER = Logger.getLogger(OffHeap.class.getName());
+        //Unsafe.invokeCleaner, the only way to free a direct buffer before it is collected; null if not accessible
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Off-heap snapshot memory will be freed by the collector only", e);
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        //original buffers, the int views cannot be freed
+        private final ByteBuffer[] buffers;
+        private final IntBuffer[] segments;
+        private final int length;
+
+        private OffHeap(ByteBuffer[] buffers, ByteOrder order, int length) {
+            this.buffers = buffers;
+            this.segments = new IntBuffer[buffers.length];
+            for (int i = 0; i < buffers.length; i++) {
+                segments[i] = buffers[i].duplicate().order(order).asIntBuffer();
+            }
+            this.length = length;
+        }
+
+        /**
+         * @return zeroed array in direct buffers
+         */
+        static OffHeap allocate(int length) {
+            ByteBuffer[] buffers = new ByteBuffer[segmentCount(length)];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(4 * segmentLength(length, i));
+            }
+            return new OffHeap(buffers, ByteOrder.nativeOrder(), length);
+        }
+
+        /**
+         * Mapping little endian ints of a file read only, the mapping stays valid after the channel is closed
+         *
+         * @param position file position of the first int
+         */
+        static OffHeap map(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer[] buffers = new ByteBuffer[segmentCount(length)];
+            for (int i = 0; i < buffers.length; i++) {
+                long start = position + 4L * ((long) i << SEGMENT_SHIFT);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, 4L * segmentLength(length, i));
+            }
+            return new OffHeap(buffers, ByteOrder.LITTLE_ENDIAN, length);
+        }
+
+        private static int segmentCount(int length) {
+            return Math.max(1, (int) (((long) length + SEGMENT_MASK) >>> SEGMENT_SHIFT));
+        }
+
+        private static int segmentLength(int length, int segment) {
+            return (int) Math.min(1 << SEGMENT_SHIFT, length - ((long) segment << SEGMENT_SHIFT));
+        }
+
+        @Override
+        int get(int index) {
+            return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+        }
+
+        @Override
+        void set(int index, int value) {
+            segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        /**
+         * Freeing allocated buffers and unmapping mapped ones
+         */
+        @Override
+        void free() {
+            if (null == INVOKE_CLEANER) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.log(Level.WARNING, "Off-heap snapshot memory not freed", e);
+            }
+        }
+    }
+}
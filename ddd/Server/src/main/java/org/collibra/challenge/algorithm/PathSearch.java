@@ -0,0 +1,63 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Ways {@link DirectedGraph} answers a shortest path query between two nodes which has no cached tree. Search is
+ * taken from system property {@value #PROPERTY} (e.g. -Dsearch=TARGETED) or set with
+ * {@link DirectedGraph#setPathSearch(PathSearch)}. Except for {@link #TREE} and a ready
+ * {@link #CONTRACTION_HIERARCHY}, a full tree is still computed and cached when the same source is queried again,
+ * so repeated queries from one source are answered from the cache.
+ */
+public enum PathSearch {
+
+    /**
+     * Full single source search of the configured {@link AlgorithmType}, every tree is cached
+     */
+    TREE,
+    /**
+     * Single source search of the configured {@link AlgorithmType} stopping once destination is settled
+     */
+    TARGETED,
+    /**
+     * Searching from both ends at once, see {@link BidirectionalDijkstra}
+     */
+    BIDIRECTIONAL,
+    /**
+     * Bidirectional upward search in the {@link ContractionHierarchy} of the snapshot. {@link DirectedGraph} never
+     * waits for the hierarchy: until the hierarchy of the current version is built in the background it answers
+     * with {@link #BIDIRECTIONAL}, so mutations only slow queries down until the next rebuild.
+     */
+    CONTRACTION_HIERARCHY;
+
+    static final String PROPERTY = "search";
+
+    /**
+     * @return shortest distance, Integer.MAX_VALUE if destination is not reachable
+     */
+    int distance(GraphSnapshot graph, AlgorithmType algorithmType, int source, int destination) {
+        return distance(graph, algorithmType, source, destination, QueryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget limits of the query, hierarchy searches are small enough to run without checking it
+     * @return shortest distance, Integer.MAX_VALUE if destination is not reachable
+     */
+    int distance(GraphSnapshot graph, AlgorithmType algorithmType, int source, int destination, QueryBudget budget) {
+        if (this == CONTRACTION_HIERARCHY) {
+            return graph.contractionHierarchy().distance(source, destination);
+        }
+        if (this == BIDIRECTIONAL) {
+            return new BidirectionalDijkstra(graph, budget).distance(source, destination);
+        }
+        try (ShortestPathAlgorithm dijkstra = algorithmType.create(graph, budget)) {
+            dijkstra.execute(source, this == TARGETED ? destination : GraphSnapshot.NO_NODE);
+            return dijkstra.getShortestDistance(destination);
+        }
+    }
+
+    /**
+     * @return search configured by system property, {@link #BIDIRECTIONAL} if property is not set
+     */
+    static PathSearch fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, BIDIRECTIONAL.name()).toUpperCase());
+    }
+}
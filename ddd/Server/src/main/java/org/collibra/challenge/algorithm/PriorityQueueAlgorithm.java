@@ -0,0 +1,32 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Heap based implementation of Dijkstra’s Shortest Path Algorithm. Unsettled nodes are kept in an indexed binary
+ * heap ordered by tentative distance, so picking next node costs O(log V) instead of a scan over all unsettled
+ * nodes and whole search runs in O((V + E) log V). A shorter distance found for a node already in the heap
+ * lowers its key in place (decrease-key).
+ */
+final class PriorityQueueAlgorithm extends ShortestPathAlgorithm {
+
+    private IndexedMinHeap unSettledNodes;
+
+    PriorityQueueAlgorithm(GraphSnapshot graph, QueryBudget budget) {
+        super(graph, budget);
+    }
+
+    @Override
+    void startSearch(int sourceNode) {
+        unSettledNodes = workspace.forward().queue;
+        unSettledNodes.insertOrDecrease(sourceNode, 0);
+    }
+
+    @Override
+    void distanceDecreased(int node, int distance) {
+        unSettledNodes.insertOrDecrease(node, distance);
+    }
+
+    @Override
+    int nextUnsettledNode() {
+        return unSettledNodes.isEmpty() ? GraphSnapshot.NO_NODE : unSettledNodes.poll();
+    }
+}
@@ -0,0 +1,77 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Nodes one query may visit and time it may run, checked cooperatively by the searches every time they settle a
+ * node. The clock is read only every {@value #CLOCK_INTERVAL} nodes, so checking costs a counter increment. A
+ * budget belongs to one query and is used by one thread at a time.
+ */
+final class QueryBudget {
+
+    /**
+     * Budget of searches not run for a Client query, it never counts anything
+     */
+    static final QueryBudget UNLIMITED = new QueryBudget(0, 0);
+
+    static final int CLOCK_INTERVAL = 1024;
+
+    private final long maxNodes;
+    private final long timeoutMillis;
+    private final long deadline;
+    private final boolean limited;
+    private long visited;
+
+    /**
+     * @param maxNodes      nodes the query may settle, 0 for no limit
+     * @param timeoutMillis milliseconds the query may run from now, 0 for no limit
+     */
+    QueryBudget(long maxNodes, long timeoutMillis) {
+        this.maxNodes = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+        this.timeoutMillis = timeoutMillis;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        this.limited = maxNodes > 0 || timeoutMillis > 0;
+    }
+
+    /**
+     * @throws QueryLimitExceededException if the query has visited too many nodes or its time is up
+     */
+    void visit() {
+        if (!limited) {
+            return;
+        }
+        visited++;
+        check(visited % CLOCK_INTERVAL == 0);
+    }
+
+    /**
+     * Counting many nodes at once and reading the clock, for searches checking only between their phases
+     *
+     * @throws QueryLimitExceededException if the query has visited too many nodes or its time is up
+     */
+    void visit(int nodes) {
+        if (!limited) {
+            return;
+        }
+        visited += nodes;
+        check(true);
+    }
+
+    /**
+     * @return nanoseconds the query may still run, Long.MAX_VALUE if its time is not limited
+     */
+    long remainingNanos() {
+        return timeoutMillis > 0 ? Math.max(0, deadline - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    QueryLimitExceededException timeExceeded() {
+        return new QueryLimitExceededException("Query ran longer than " + timeoutMillis + " ms");
+    }
+
+    private void check(boolean readClock) {
+        if (visited > maxNodes) {
+            throw new QueryLimitExceededException("Query visited more than " + maxNodes + " nodes");
+        }
+        if (readClock && timeoutMillis > 0 && System.nanoTime() - deadline > 0) {
+            throw timeExceeded();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Thrown by a query of {@link DirectedGraph} which visited more nodes or ran longer than its graph allows, see
+ * {@link DirectedGraph#setQueryLimits(long, long)}. The search is abandoned, nothing it computed is cached.
+ */
+public class QueryLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    QueryLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,174 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reusable arrays of one search, borrowed from a bounded pool for the duration of a query, so that a search in
+ * steady state allocates nothing proportional to the graph. Labels of a node (tentative distance, parent, settled
+ * flag) are valid only where its stamp equals the current generation: every search starts a new generation, which
+ * clears all labels in O(1); only a wrap-around of the counter refills the stamp arrays.
+ * <p>
+ * Workspaces are pooled rather than kept per thread: with virtual threads every session runs on its own thread,
+ * so thread-local workspaces would multiply with sessions instead of with queries running at once. At most
+ * system property {@value #POOL_PROPERTY} (default number of processors) idle workspaces are kept, further
+ * concurrent queries get new workspaces which are dropped afterwards. Arrays are allocated on first use, a
+ * workspace of bidirectional searches holds about 56 bytes per node.
+ */
+final class SearchWorkspace {
+
+    static final String POOL_PROPERTY = "search.workspaces";
+
+    private static final ArrayBlockingQueue<SearchWorkspace> POOL = new ArrayBlockingQueue<>(
+            Math.max(1, Integer.getInteger(POOL_PROPERTY, Runtime.getRuntime().availableProcessors())));
+
+    private final int capacity;
+    private int generation;
+    private Side forward;
+    private Side backward;
+    //settled nodes in the order they were settled
+    private int[] order;
+    //list of nodes in no particular order with membership stamps, for engines without a heap
+    private int[] list;
+    private int[] listStamp;
+
+    private SearchWorkspace(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param nodeCount number of node ids the search may label
+     * @return idle workspace with all labels cleared, must be {@link #release() released} when its results have
+     * been read
+     */
+    static SearchWorkspace acquire(int nodeCount) {
+        SearchWorkspace workspace = POOL.poll();
+        //workspace too small for the graph is dropped
+        if (null == workspace || workspace.capacity < nodeCount) {
+            workspace = new SearchWorkspace(nodeCount);
+        }
+        workspace.restart();
+        return workspace;
+    }
+
+    /**
+     * Returning workspace to the pool, it must not be used afterwards
+     */
+    void release() {
+        POOL.offer(this);
+    }
+
+    /**
+     * Clearing all labels for the next search of the same holder
+     */
+    void restart() {
+        if (++generation == 0) {
+            for (Side side : new Side[]{forward, backward}) {
+                if (null != side) {
+                    Arrays.fill(side.reached, 0);
+                    Arrays.fill(side.settled, 0);
+                }
+            }
+            if (null != listStamp) {
+                Arrays.fill(listStamp, 0);
+            }
+            generation = 1;
+        }
+        //a cancelled search may leave nodes in the heaps
+        if (null != forward) {
+            forward.queue.clear();
+        }
+        if (null != backward) {
+            backward.queue.clear();
+        }
+    }
+
+    /**
+     * @return labels of a single source search or of the forward side of a bidirectional one
+     */
+    Side forward() {
+        if (null == forward) {
+            forward = new Side();
+        }
+        return forward;
+    }
+
+    /**
+     * @return labels of the backward side of a bidirectional search
+     */
+    Side backward() {
+        if (null == backward) {
+            backward = new Side();
+        }
+        return backward;
+    }
+
+    /**
+     * @return array of capacity ints without meaningful content
+     */
+    int[] order() {
+        if (null == order) {
+            order = new int[capacity];
+        }
+        return order;
+    }
+
+    /**
+     * @return array of capacity ints without meaningful content, see {@link #isListed(int)}
+     */
+    int[] list() {
+        if (null == list) {
+            list = new int[capacity];
+            listStamp = new int[capacity];
+        }
+        return list;
+    }
+
+    boolean isListed(int node) {
+        return listStamp[node] == generation;
+    }
+
+    void setListed(int node, boolean listed) {
+        listStamp[node] = listed ? generation : 0;
+    }
+
+    /**
+     * Labels of one search direction and its heap of unsettled nodes
+     */
+    final class Side {
+
+        final IndexedMinHeap queue = new IndexedMinHeap(capacity);
+        private final int[] distance = new int[capacity];
+        private final int[] parent = new int[capacity];
+        private final int[] reached = new int[capacity];
+        private final int[] settled = new int[capacity];
+
+        /**
+         * @return tentative distance, Integer.MAX_VALUE if node has not been reached
+         */
+        int distance(int node) {
+            return reached[node] == generation ? distance[node] : ShortestPathAlgorithm.INFINITY;
+        }
+
+        /**
+         * @return parent of the tentative path, {@link GraphSnapshot#NO_NODE} if node has not been reached
+         */
+        int parent(int node) {
+            return reached[node] == generation ? parent[node] : GraphSnapshot.NO_NODE;
+        }
+
+        void label(int node, int distance, int parent) {
+            reached[node] = generation;
+            this.distance[node] = distance;
+            this.parent[node] = parent;
+        }
+
+        boolean isSettled(int node) {
+            return settled[node] == generation;
+        }
+
+        void settle(int node) {
+            settled[node] = generation;
+        }
+    }
+}
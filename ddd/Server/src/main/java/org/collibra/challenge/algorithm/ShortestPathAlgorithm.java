@@ -0,0 +1,226 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Common part of Dijkstra’s Shortest Path Algorithm shared by all engines. Engines only differ in the way
+ * they keep track of unsettled nodes and pick the next node with minimal distance, relaxation of edges and
+ * reading of results is done here. All state is kept in primitive arrays indexed by node id of a pooled
+ * {@link SearchWorkspace}, held from the first search until {@link #close()}; an engine which is never closed
+ * simply leaves its workspace to the collector.
+ */
+abstract class ShortestPathAlgorithm implements AutoCloseable {
+
+    static final int INFINITY = Integer.MAX_VALUE;
+
+    final GraphSnapshot graph;
+    private final QueryBudget budget;
+    private int sourceNode;
+    SearchWorkspace workspace;
+    private SearchWorkspace.Side labels;
+    //settled nodes in the order they were settled, first settledCount entries are valid
+    private int[] settledOrder;
+    private int settledCount;
+    private int distanceLimit;
+    //distinct destinations the search stops after in ascending order, null unless running executeToAll
+    private int[] pendingDestinations;
+    private int destinationCount;
+    private int pendingCount;
+
+    /**
+     * @param budget limits of the query the engine runs for, checked for every settled node
+     */
+    ShortestPathAlgorithm(GraphSnapshot graph, QueryBudget budget) {
+        this.graph = graph;
+        this.budget = budget;
+    }
+
+    /**
+     * @param sourceNode sourceNode node id
+     */
+    void execute(int sourceNode) {
+        execute(sourceNode, GraphSnapshot.NO_NODE);
+    }
+
+    /**
+     * Searching only until destination node is settled, distances of nodes settled before it are final as well,
+     * all other distances are upper bounds and the result must not be turned into a {@link #toTree() tree}
+     *
+     * @param sourceNode      sourceNode node id
+     * @param destinationNode node id search stops at, {@link GraphSnapshot#NO_NODE} to settle all reachable nodes
+     */
+    void execute(int sourceNode, int destinationNode) {
+        search(sourceNode, destinationNode, INFINITY);
+    }
+
+    /**
+     * Searching only until all given destinations are settled, see {@link #execute(int, int)}
+     *
+     * @param sourceNode       sourceNode node id
+     * @param destinationNodes node ids, duplicates allowed
+     */
+    void executeToAll(int sourceNode, int[] destinationNodes) {
+        //sorted instead of flagged per node, so that only the destinations are allocated
+        pendingDestinations = destinationNodes.clone();
+        Arrays.sort(pendingDestinations);
+        destinationCount = 0;
+        for (int destinationNode : pendingDestinations) {
+            if (destinationCount == 0 || pendingDestinations[destinationCount - 1] != destinationNode) {
+                pendingDestinations[destinationCount++] = destinationNode;
+            }
+        }
+        pendingCount = destinationCount;
+        try {
+            search(sourceNode, GraphSnapshot.NO_NODE, INFINITY);
+        } finally {
+            pendingDestinations = null;
+        }
+    }
+
+    /**
+     * Searching only nodes closer to source than the limit: edges leading to a distance at or above the limit
+     * are not followed, so the search never leaves the neighborhood of the source. Distances of settled nodes
+     * are final, see {@link #getCloserThan(int)}.
+     *
+     * @param sourceNode    sourceNode node id
+     * @param distanceLimit exclusive distance limit
+     */
+    void executeWithin(int sourceNode, int distanceLimit) {
+        search(sourceNode, GraphSnapshot.NO_NODE, distanceLimit);
+    }
+
+    private void search(int sourceNode, int destinationNode, int distanceLimit) {
+        this.sourceNode = sourceNode;
+        this.distanceLimit = distanceLimit;
+        settledCount = 0;
+        if (null == workspace) {
+            workspace = SearchWorkspace.acquire(graph.nodeCount());
+        } else {
+            workspace.restart();
+        }
+        labels = workspace.forward();
+        settledOrder = workspace.order();
+        if (distanceLimit <= 0) {
+            return;
+        }
+        //putting first sourceNode node and distance 0 as starting point
+        labels.label(sourceNode, 0, GraphSnapshot.NO_NODE);
+        startSearch(sourceNode);
+
+        //loop until there are no unsettled nodes left
+        int node;
+        while ((node = nextUnsettledNode()) != GraphSnapshot.NO_NODE) {
+            budget.visit();
+            labels.settle(node);
+            settledOrder[settledCount++] = node;
+            if (node == destinationNode) {
+                break;
+            }
+            if (null != pendingDestinations && Arrays.binarySearch(pendingDestinations, 0, destinationCount, node) >= 0
+                    && --pendingCount == 0) {
+                break;
+            }
+            findMinimalDistances(node);
+        }
+    }
+
+    /**
+     * Resetting engine specific state and registering source node as first unsettled node
+     *
+     * @param sourceNode sourceNode node id
+     */
+    abstract void startSearch(int sourceNode);
+
+    /**
+     * Called when shorter distance to a node which is not settled yet has been found
+     *
+     * @param node     node id
+     * @param distance new shortest distance known for the node
+     */
+    abstract void distanceDecreased(int node, int distance);
+
+    /**
+     * Removing unsettled node with minimal distance
+     *
+     * @return node id or {@link GraphSnapshot#NO_NODE} if all reachable nodes are settled
+     */
+    abstract int nextUnsettledNode();
+
+    private void findMinimalDistances(int sourceNode) {
+        int sourceDistance = labels.distance(sourceNode);
+        //relax every edge leaving source node towards neighbors which are not settled yet
+        for (int edge = graph.firstEdge(sourceNode), end = graph.endEdge(sourceNode); edge < end; edge++) {
+            int destinationNode = graph.target(edge);
+            if (labels.isSettled(destinationNode)) {
+                continue;
+            }
+            int weight = graph.weight(edge);
+            if (labels.distance(destinationNode) > sourceDistance + weight && sourceDistance + weight < distanceLimit) {
+                //distance calculation for shortest path
+                labels.label(destinationNode, sourceDistance + weight, sourceNode);
+                distanceDecreased(destinationNode, sourceDistance + weight);
+            }
+        }
+    }
+
+    /**
+     * @return number of nodes settled by the last search
+     */
+    int getSettledCount() {
+        return settledCount;
+    }
+
+    boolean isSettled(int node) {
+        return labels.isSettled(node);
+    }
+
+    /**
+     * @return current distance to destination node, Integer.MAX_VALUE if connection doesnt exist
+     */
+    int getShortestDistance(int destinationNode) {
+        return labels.distance(destinationNode);
+    }
+
+    /**
+     * @return result of the last {@link #execute(int)} copied out of the workspace as an immutable tree
+     */
+    ShortestPathTree toTree() {
+        int nodeCount = graph.nodeCount();
+        int[] distance = new int[nodeCount];
+        int[] parents = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            distance[node] = labels.distance(node);
+            parents[node] = labels.parent(node);
+        }
+        return new ShortestPathTree(sourceNode, distance, parents);
+    }
+
+    /**
+     * @return names of all nodes settled by the last {@link #executeWithin(int, int)}, which are exactly the nodes
+     * closer to source than the limit, source itself excluded, sorted by name
+     */
+    Set<String> getCloserThan() {
+        Set<String> closerNodes = new TreeSet<>();
+        for (int i = 0; i < settledCount; i++) {
+            if (settledOrder[i] != sourceNode) {
+                closerNodes.add(graph.nodeName(settledOrder[i]));
+            }
+        }
+        return closerNodes;
+    }
+
+    /**
+     * Returning the workspace to the pool, results of the last search cannot be read afterwards
+     */
+    @Override
+    public void close() {
+        if (null != workspace) {
+            workspace.release();
+            workspace = null;
+            labels = null;
+            settledOrder = null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded LRU cache of single source shortest path trees keyed by source node id. Cache is stamped with the
+ * graph version its entries are valid for and serves them only to queries running on that version. Mutations are reported by
+ * {@link DirectedGraph} while it holds its monitor: entries which the mutation provably doesnt change are moved to
+ * the new version, all others are dropped. Cache is bounded both by number of trees and by total number of node
+ * slots held, least recently used trees are evicted first. It also remembers recently queried sources without
+ * tree, see {@link #admit(int)}.
+ */
+final class ShortestPathCache {
+
+    static final String SIZE_PROPERTY = "cache.size";
+    static final String SLOTS_PROPERTY = "cache.slots";
+
+    private final int maxEntries;
+    private final long maxSlots;
+    private final LinkedHashMap<Integer, ShortestPathTree> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //sources queried recently without cached tree, tree of such source is worth caching when it is queried again
+    private final LinkedHashMap<Integer, Boolean> candidates;
+    private long version;
+    private long slots;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of cached trees, 0 disables the cache
+     * @param maxSlots   maximum number of node slots held by all cached trees together
+     */
+    ShortestPathCache(int maxEntries, long maxSlots) {
+        this.maxEntries = maxEntries;
+        this.maxSlots = maxSlots;
+        int maxCandidates = maxEntries * 4;
+        this.candidates = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return size() > maxCandidates;
+            }
+        };
+    }
+
+    /**
+     * @return cache sized by system properties {@value #SIZE_PROPERTY} (default 64 trees) and
+     * {@value #SLOTS_PROPERTY} (default 16M node slots, about 128MB)
+     */
+    static ShortestPathCache fromSystemProperties() {
+        return new ShortestPathCache(Integer.getInteger(SIZE_PROPERTY, 64), Long.getLong(SLOTS_PROPERTY, 16L << 20));
+    }
+
+    /**
+     * @return cached tree for source valid in given graph version or null
+     */
+    synchronized ShortestPathTree get(int source, long graphVersion) {
+        ShortestPathTree tree = graphVersion == version ? entries.get(source) : null;
+        if (null == tree) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return tree;
+    }
+
+    /**
+     * Deciding whether full tree of a source should be computed and cached instead of a point-to-point search,
+     * which is when the source has already been queried recently. Candidates survive mutations, they only
+     * predict which sources are queried repeatedly.
+     *
+     * @return true if source was queried recently
+     */
+    synchronized boolean admit(int source) {
+        if (null != candidates.remove(source)) {
+            return true;
+        }
+        if (maxEntries > 0) {
+            candidates.put(source, Boolean.TRUE);
+        }
+        return false;
+    }
+
+    /**
+     * Storing tree computed on given graph version, ignored if graph has been mutated meanwhile
+     */
+    synchronized void put(ShortestPathTree tree, long graphVersion) {
+        if (graphVersion != version || maxEntries == 0 || tree.size() > maxSlots) {
+            return;
+        }
+        ShortestPathTree previous = entries.put(tree.source(), tree);
+        if (null != previous) {
+            slots -= previous.size();
+        }
+        slots += tree.size();
+        Iterator<ShortestPathTree> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || slots > maxSlots) {
+            slots -= eldest.next().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * New isolated node doesnt change any distance
+     */
+    synchronized void nodeAdded(long graphVersion) {
+        version = graphVersion;
+    }
+
+    /**
+     * Tree stays valid if new edge doesnt offer shorter path to its destination
+     */
+    synchronized void edgeAdded(int source, int destination, int weight, long graphVersion) {
+        invalidate(graphVersion, tree -> {
+            int sourceDistance = tree.distance(source);
+            return sourceDistance == ShortestPathAlgorithm.INFINITY
+                    || (long) sourceDistance + weight >= tree.distance(destination);
+        });
+    }
+
+    /**
+     * Tree stays valid if removed edges are not part of it
+     */
+    synchronized void edgesRemoved(int source, int destination, long graphVersion) {
+        invalidate(graphVersion, tree -> tree.parent(destination) != source);
+    }
+
+    /**
+     * Tree stays valid if removed node was not reachable from its source, id of such node can be safely reused
+     */
+    synchronized void nodeRemoved(int node, long graphVersion) {
+        invalidate(graphVersion, tree -> tree.distance(node) == ShortestPathAlgorithm.INFINITY);
+    }
+
+    /**
+     * Bulk import can change any distance
+     */
+    synchronized void edgesImported(long graphVersion) {
+        invalidate(graphVersion, tree -> false);
+    }
+
+    private void invalidate(long graphVersion, Predicate<ShortestPathTree> stillValid) {
+        version = graphVersion;
+        Iterator<ShortestPathTree> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            ShortestPathTree tree = iterator.next();
+            if (!stillValid.test(tree)) {
+                slots -= tree.size();
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
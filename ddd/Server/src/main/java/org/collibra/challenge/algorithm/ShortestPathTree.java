@@ -0,0 +1,44 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Immutable result of a single source shortest path search: distance and parent on the shortest path for every
+ * node id of the snapshot the search ran on. Ids added to the graph later are outside of the arrays and are
+ * reported as unreachable.
+ */
+final class ShortestPathTree {
+
+    private final int source;
+    private final int[] distance;
+    private final int[] parents;
+
+    ShortestPathTree(int source, int[] distance, int[] parents) {
+        this.source = source;
+        this.distance = distance;
+        this.parents = parents;
+    }
+
+    int source() {
+        return source;
+    }
+
+    /**
+     * @return shortest distance from source, Integer.MAX_VALUE if node is not reachable
+     */
+    int distance(int node) {
+        return node < distance.length ? distance[node] : ShortestPathAlgorithm.INFINITY;
+    }
+
+    /**
+     * @return previous node on the shortest path, {@link GraphSnapshot#NO_NODE} for source and unreachable nodes
+     */
+    int parent(int node) {
+        return node < parents.length ? parents[node] : GraphSnapshot.NO_NODE;
+    }
+
+    /**
+     * @return number of node slots held by this tree
+     */
+    int size() {
+        return distance.length;
+    }
+}
@@ -0,0 +1,122 @@
+package org.collibra.challenge.algorithm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing concurrent computations of the same key: the first caller runs the computation, callers arriving
+ * while it runs wait for it and get the same result instead of repeating the work. Nothing is kept once the
+ * computation finishes, so keys must include the graph version the result is valid for. Computations never
+ * return null.
+ * <p>
+ * The computation runs under the budget of the caller which started it. Waiting callers wait no longer than their
+ * own budget allows, and when the computation exceeded the limits of its caller they run it again themselves.
+ *
+ * @param <K> key identifying the computation
+ * @param <V> result of the computation
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * @param computation run by the calling thread unless a computation of the same key is already running
+     * @return result of the running computation or of given one, exception of the computation is rethrown to all
+     * callers waiting for it
+     */
+    V execute(K key, Supplier<V> computation) {
+        return execute(key, computation, QueryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param computation run by the calling thread unless a computation of the same key is already running, or
+     *                    if the running one exceeded the limits of its caller
+     * @param budget      of the calling query, limiting how long it waits for a running computation
+     * @return result of the running computation or of given one, other exceptions of the computation are
+     * rethrown to all callers waiting for it
+     * @throws QueryLimitExceededException if the time of budget is up before the running computation finishes
+     */
+    V execute(K key, Supplier<V> computation, QueryBudget budget) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = calls.putIfAbsent(key, call);
+        if (null != running) {
+            shared.increment();
+            V value = await(running, budget);
+            return null != value ? value : computation.get();
+        }
+        try {
+            V value = computation.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * @return result of the computation of key running at the moment, null if none is running
+     */
+    V join(K key) {
+        return join(key, QueryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget of the calling query, limiting how long it waits for the running computation
+     * @return result of the computation of key running at the moment, null if none is running or if it exceeded
+     * the limits of its caller
+     * @throws QueryLimitExceededException if the time of budget is up before the running computation finishes
+     */
+    V join(K key, QueryBudget budget) {
+        CompletableFuture<V> running = calls.get(key);
+        if (null == running) {
+            return null;
+        }
+        shared.increment();
+        return await(running, budget);
+    }
+
+    /**
+     * @return result of running, null if it exceeded the limits of its caller
+     */
+    private static <V> V await(CompletableFuture<V> running, QueryBudget budget) {
+        Throwable failure;
+        try {
+            long remaining = budget.remainingNanos();
+            return remaining == Long.MAX_VALUE ? running.join() : running.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw budget.timeExceeded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (CompletionException | ExecutionException e) {
+            failure = e.getCause();
+        }
+        if (failure instanceof QueryLimitExceededException) {
+            return null;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new CompletionException(failure);
+    }
+
+    /**
+     * @return number of callers which got the result of a computation run by another caller
+     */
+    long getSharedCount() {
+        return shared.sum();
+    }
+}
@@ -0,0 +1,186 @@
+package org.collibra.challenge.algorithm;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary image of a {@link GraphSnapshot}, written and read through memory-mapped files so that large
+ * graphs are restored with bulk copies instead of parsing:
+ * <pre>
+ * magic, format, version, id space size, edge count
+ * per id: name length (-1 for unused id) and UTF-8 name
+ * CSR offsets, targets and weights as little endian int arrays
+ * </pre>
+ * File is written under a temporary name and renamed when complete, so a crash never leaves a partial snapshot.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x47524150;
+    private static final int FORMAT = 1;
+    private static final String SUFFIX = ".snapshot";
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+
+    private SnapshotFile() { }
+
+    /**
+     * Writing snapshot of the graph into the data directory, the file and its directory entry are on disk once
+     * this returns
+     *
+     * @return path of the written file
+     */
+    static Path write(Path directory, GraphSnapshot graph) throws IOException {
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+        byte[][] names = new byte[nodeCount][];
+        long namesBytes = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            String name = graph.nodeName(node);
+            names[node] = null == name ? null : name.getBytes(StandardCharsets.UTF_8);
+            namesBytes += 4 + (null == name ? 0 : names[node].length);
+        }
+        long arraysStart = HEADER_BYTES + namesBytes;
+
+        Path temporary = directory.resolve(fileName(graph.version()) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, arraysStart);
+            header.putInt(MAGIC).putInt(FORMAT).putLong(graph.version()).putInt(nodeCount).putInt(edgeCount);
+            for (byte[] name : names) {
+                if (null == name) {
+                    header.putInt(-1);
+                } else {
+                    header.putInt(name.length).put(name);
+                }
+            }
+            header.force();
+
+            MappedByteBuffer offsetsSection = mapInts(channel, FileChannel.MapMode.READ_WRITE, arraysStart,
+                    nodeCount + 1);
+            IntBuffer offsets = offsetsSection.asIntBuffer();
+            for (int node = 0; node < nodeCount; node++) {
+                offsets.put(graph.firstEdge(node));
+            }
+            offsets.put(edgeCount);
+            long targetsStart = arraysStart + 4L * (nodeCount + 1);
+            MappedByteBuffer targetsSection = mapInts(channel, FileChannel.MapMode.READ_WRITE, targetsStart, edgeCount);
+            MappedByteBuffer weightsSection = mapInts(channel, FileChannel.MapMode.READ_WRITE,
+                    targetsStart + 4L * edgeCount, edgeCount);
+            IntBuffer targets = targetsSection.asIntBuffer();
+            IntBuffer weights = weightsSection.asIntBuffer();
+            for (int edge = 0; edge < edgeCount; edge++) {
+                targets.put(graph.target(edge));
+                weights.put(graph.weight(edge));
+            }
+            offsetsSection.force();
+            targetsSection.force();
+            weightsSection.force();
+        }
+        Path file = directory.resolve(fileName(graph.version()));
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        //the rename is durable only once the directory is forced, older files must not be deleted before
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        return file;
+    }
+
+    /**
+     * @return snapshot of the latest version in the data directory, null if there is none
+     */
+    static GraphSnapshot loadLatest(Path directory, SnapshotStorage storage) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        return snapshots.isEmpty() ? null : load(snapshots.get(snapshots.size() - 1), storage);
+    }
+
+    /**
+     * @param storage {@link SnapshotStorage#OFF_HEAP} to use the mapped file as edge arrays without copying them
+     */
+    static GraphSnapshot load(Path file, SnapshotStorage storage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            long version = header.getLong();
+            int nodeCount = header.getInt();
+            int edgeCount = header.getInt();
+
+            //names section length is not stored, it is mapped up to the arrays which are at least this far away
+            long arraysBytes = 4L * (nodeCount + 1) + 8L * edgeCount;
+            MappedByteBuffer namesSection = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    channel.size() - HEADER_BYTES - arraysBytes);
+            String[] names = new String[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int length = namesSection.getInt();
+                if (length >= 0) {
+                    byte[] bytes = new byte[length];
+                    namesSection.get(bytes);
+                    names[node] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+            long arraysStart = HEADER_BYTES + namesSection.position();
+            long targetsStart = arraysStart + 4L * (nodeCount + 1);
+            long weightsStart = targetsStart + 4L * edgeCount;
+            if (storage == SnapshotStorage.OFF_HEAP) {
+                //file of a replaced snapshot is deleted by the next checkpoint, its mapping stays readable
+                return GraphSnapshot.restore(names, IntArray.OffHeap.map(channel, arraysStart, nodeCount + 1),
+                        IntArray.OffHeap.map(channel, targetsStart, edgeCount),
+                        IntArray.OffHeap.map(channel, weightsStart, edgeCount), version);
+            }
+            int[] offsets = new int[nodeCount + 1];
+            int[] targets = new int[edgeCount];
+            int[] weights = new int[edgeCount];
+            mapInts(channel, FileChannel.MapMode.READ_ONLY, arraysStart, offsets.length).asIntBuffer().get(offsets);
+            mapInts(channel, FileChannel.MapMode.READ_ONLY, targetsStart, edgeCount).asIntBuffer().get(targets);
+            mapInts(channel, FileChannel.MapMode.READ_ONLY, weightsStart, edgeCount).asIntBuffer().get(weights);
+            return GraphSnapshot.restore(names, new IntArray.Heap(offsets), new IntArray.Heap(targets),
+                    new IntArray.Heap(weights), version);
+        }
+    }
+
+    /**
+     * Deleting snapshots older than given version
+     */
+    static void deleteBefore(Path directory, long version) throws IOException {
+        for (Path snapshot : snapshots(directory)) {
+            if (version(snapshot) < version) {
+                Files.delete(snapshot);
+            }
+        }
+    }
+
+    private static MappedByteBuffer mapInts(FileChannel channel, FileChannel.MapMode mode, long position, int count)
+            throws IOException {
+        MappedByteBuffer section = channel.map(mode, position, 4L * count);
+        section.order(ByteOrder.LITTLE_ENDIAN);
+        return section;
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    private static String fileName(long version) {
+        return String.format("graph-%020d%s", version, SUFFIX);
+    }
+
+    private static long version(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring("graph-".length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,39 @@
+package org.collibra.challenge.algorithm;
+
+/**
+ * Memory the edge arrays of a {@link GraphSnapshot} are kept in. Storage is taken from system property
+ * {@value #PROPERTY} (e.g. -Dsnapshot.storage=OFF_HEAP) or set with
+ * {@link DirectedGraph#setSnapshotStorage(SnapshotStorage)}, it applies to snapshots built or restored afterwards.
+ * <p>
+ * Only snapshots are affected: the {@link AdjacencyList}s every mutation writes to stay on the heap, so the heap
+ * always holds one copy of every edge and off-heap storage at most halves what edges take of it.
+ */
+public enum SnapshotStorage {
+
+    /**
+     * Java int arrays
+     */
+    HEAP,
+    /**
+     * Direct byte buffers, or the mapped snapshot file itself when restored from storage. Edges dont count
+     * against the heap and are never copied by the collector, which keeps heaps small and pauses short for very
+     * large graphs. Memory of a replaced snapshot is freed as soon as the last query reading it finishes.
+     */
+    OFF_HEAP;
+
+    static final String PROPERTY = "snapshot.storage";
+
+    /**
+     * @param length number of ints, all zero
+     */
+    IntArray allocate(int length) {
+        return this == HEAP ? new IntArray.Heap(new int[length]) : IntArray.OffHeap.allocate(length);
+    }
+
+    /**
+     * @return storage configured by system property, {@link #HEAP} if property is not set
+     */
+    static SnapshotStorage fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, HEAP.name()).toUpperCase().replace('-', '_'));
+    }
+}
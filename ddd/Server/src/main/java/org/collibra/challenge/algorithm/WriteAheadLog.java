@@ -0,0 +1,340 @@
+package org.collibra.challenge.algorithm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of graph mutations. Log is split into segments named by the graph version they start at, a new
+ * segment is started at every checkpoint so that segments older than the latest snapshot can be deleted.
+ * <p>
+ * Every record is {@code [payload length][CRC32C of payload][payload]}, payload is the operation code followed
+ * by node names (length prefixed UTF-8) and weight. A torn or corrupted record ends the replay of its segment.
+ * <p>
+ * Appends only copy the record into a memory buffer and return its end position. A single flusher thread writes
+ * and forces everything appended since its previous round in one go (group commit), so any number of writers
+ * waiting in {@link #awaitDurable(long)} share one fsync.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+    private static final String SUFFIX = ".wal";
+    private static final int HEADER_BYTES = 8;
+    private static final byte ADD_NODE = 1;
+    private static final byte ADD_EDGE = 2;
+    private static final byte REMOVE_NODE = 3;
+    private static final byte REMOVE_EDGE = 4;
+
+    private final Path directory;
+    private final Thread flusher;
+    private final CRC32C checksum = new CRC32C();
+    private FileChannel channel;
+    private long segmentVersion;
+    //records appended and not yet taken by the flusher, swapped with the one being written
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Starting a new segment, a segment of the same version left by a previous run is replaced
+     *
+     * @param directory data directory
+     * @param version   graph version the first appended record applies to
+     */
+    WriteAheadLog(Path directory, long version) throws IOException {
+        this.directory = directory;
+        this.segmentVersion = version;
+        this.channel = openSegment(version);
+        this.flusher = new Thread(this::flushLoop, "wal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    long appendAddNode(String nodeName) {
+        return append(ADD_NODE, nodeName, null, 0);
+    }
+
+    long appendAddEdge(String sourceNode, String destinationNode, int weight) {
+        return append(ADD_EDGE, sourceNode, destinationNode, weight);
+    }
+
+    long appendRemoveNode(String nodeName) {
+        return append(REMOVE_NODE, nodeName, null, 0);
+    }
+
+    long appendRemoveEdge(String sourceNode, String destinationNode) {
+        return append(REMOVE_EDGE, sourceNode, destinationNode, 0);
+    }
+
+    /**
+     * @return end position of everything appended so far
+     */
+    synchronized long appendedPosition() {
+        return appended;
+    }
+
+    private synchronized long append(byte operation, String first, String second, int weight) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        byte[] firstBytes = first.getBytes(StandardCharsets.UTF_8);
+        byte[] secondBytes = null == second ? null : second.getBytes(StandardCharsets.UTF_8);
+        int payload = 1 + 4 + firstBytes.length + (null == secondBytes ? 0 : 4 + secondBytes.length + 4);
+        ensureCapacity(HEADER_BYTES + payload);
+        int start = pending.position();
+        pending.position(start + HEADER_BYTES);
+        pending.put(operation);
+        pending.putInt(firstBytes.length).put(firstBytes);
+        if (null != secondBytes) {
+            pending.putInt(secondBytes.length).put(secondBytes);
+            pending.putInt(weight);
+        }
+        checksum.reset();
+        checksum.update(pending.array(), start + HEADER_BYTES, payload);
+        pending.putInt(start, payload);
+        pending.putInt(start + 4, (int) checksum.getValue());
+        appended += HEADER_BYTES + payload;
+        if (start == 0) {
+            //flusher waits only while there is nothing to write
+            notifyAll();
+        }
+        return appended;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    /**
+     * Blocking until the log is forced to disk up to given position
+     *
+     * @param position value returned by an append
+     * @throws UncheckedIOException if the log could not be written
+     */
+    synchronized void awaitDurable(long position) {
+        boolean interrupted = false;
+        while (durable < position && null == failure) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durable < position) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            FileChannel segment;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                target = appended;
+                segment = channel;
+            }
+            //written without the lock so that writers keep appending the next group meanwhile
+            IOException error = null;
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    segment.write(writing);
+                }
+                segment.force(false);
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error writing write-ahead log", e);
+                error = e;
+            }
+            writing.clear();
+            synchronized (this) {
+                if (null == error) {
+                    durable = target;
+                } else {
+                    failure = error;
+                }
+                notifyAll();
+                if (null != error) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starting a new segment at given version once everything appended so far is durable. Caller holds the graph
+     * monitor, so nothing is appended meanwhile.
+     */
+    void rotate(long version) throws IOException {
+        if (version == segmentVersion) {
+            return;
+        }
+        awaitDurable(appendedPosition());
+        synchronized (this) {
+            channel.close();
+            channel = openSegment(version);
+            segmentVersion = version;
+        }
+    }
+
+    /**
+     * Deleting segments which only contain versions covered by a snapshot of given version
+     */
+    static void deleteSegmentsBefore(Path directory, long version) throws IOException {
+        for (Path segment : segments(directory)) {
+            if (version(segment) < version) {
+                Files.delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Writing out everything appended and stopping the flusher
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private FileChannel openSegment(long version) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(version)), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Applying all records of segments starting at or after graph version to the graph, segments are replayed in
+     * version order and each must start exactly where the previous one ended
+     *
+     * @return number of records applied
+     */
+    static long replay(Path directory, DirectedGraph graph) throws IOException {
+        long records = 0;
+        for (Path segment : segments(directory)) {
+            long segmentVersion = version(segment);
+            if (segmentVersion < graph.getVersion()) {
+                continue;
+            }
+            if (segmentVersion > graph.getVersion()) {
+                LOGGER.severe("Write-ahead log segment " + segment + " doesnt follow graph version "
+                        + graph.getVersion() + ", remaining segments skipped");
+                break;
+            }
+            records += replaySegment(segment, graph);
+        }
+        return records;
+    }
+
+    private static long replaySegment(Path segment, DirectedGraph graph) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32C checksum = new CRC32C();
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int payload = buffer.getInt();
+                int expected = buffer.getInt();
+                if (payload <= 0 || payload > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), payload);
+                checksum.reset();
+                checksum.update(record.duplicate());
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+                buffer.position(buffer.position() + payload);
+                if (!apply(record, graph)) {
+                    LOGGER.severe("Write-ahead log record " + records + " of " + segment + " doesnt apply");
+                }
+                records++;
+            }
+            if (buffer.hasRemaining()) {
+                LOGGER.warning("Torn record at the end of " + segment + " ignored");
+            }
+        }
+        return records;
+    }
+
+    private static boolean apply(ByteBuffer record, DirectedGraph graph) {
+        switch (record.get()) {
+            case ADD_NODE:
+                return graph.addNode(string(record));
+            case ADD_EDGE:
+                return graph.addEdge(string(record), string(record), record.getInt());
+            case REMOVE_NODE:
+                return graph.removeNode(string(record));
+            case REMOVE_EDGE:
+                return graph.removeEdge(string(record), string(record));
+            default:
+                return false;
+        }
+    }
+
+    private static String string(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static String fileName(long version) {
+        return String.format("graph-%020d%s", version, SUFFIX);
+    }
+
+    private static long version(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("graph-".length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,120 @@
+package org.collibra.challenge.server;
+
+/**
+ * Reusable parsed command. {@link #parse(String)} tokenizes a line in place by remembering word boundaries, no
+ * regex, arrays or substrings are created while parsing; only arguments actually used are materialized.
+ * <p>
+ * Rules are the same as the original regex and {@code String.split(" ")} based validation: a line is a command if
+ * it contains a command keyword anywhere and has no line terminator, it starts with the keyword and splitting it on
+ * single spaces (ignoring trailing empty words) gives exactly the number of words the command expects.
+ */
+final class Command {
+
+    private static final CommandType[] COMMANDS = {CommandType.ADD_NODE, CommandType.REMOVE_NODE,
+            CommandType.ADD_EDGE, CommandType.REMOVE_EDGE, CommandType.SHORTEST_PATH, CommandType.CLOSER_THAN,
+            CommandType.IMPORT_EDGES, CommandType.DISTANCES};
+    private static final int MAX_WORDS = 5;
+
+    private final int[] wordStarts = new int[MAX_WORDS];
+    private final int[] wordEnds = new int[MAX_WORDS];
+    private String line;
+    private CommandType type = CommandType.UNKNOWN;
+
+    /**
+     * @param line line received from Client
+     * @return recognized command type, {@link CommandType#UNKNOWN} if line is not a valid command
+     */
+    CommandType parse(String line) {
+        this.line = line;
+        this.type = CommandType.UNKNOWN;
+        if (!containsKeyword(line) || containsLineTerminator(line)) {
+            return type;
+        }
+        int words = tokenize(line);
+        for (CommandType command : COMMANDS) {
+            if (line.startsWith(command.keyword()) && words == command.words()) {
+                type = command;
+                break;
+            }
+        }
+        return type;
+    }
+
+    CommandType type() {
+        return type;
+    }
+
+    String line() {
+        return line;
+    }
+
+    /**
+     * @param index word index, 0 is first word of the keyword
+     * @return word as String
+     */
+    String argument(int index) {
+        return line.substring(wordStarts[index], wordEnds[index]);
+    }
+
+    /**
+     * @param index word index, 0 is first word of the keyword
+     * @return word parsed as Integer
+     * @throws NumberFormatException if word is not an Integer
+     */
+    int intArgument(int index) {
+        return Integer.parseInt(line, wordStarts[index], wordEnds[index], 10);
+    }
+
+    private static boolean containsKeyword(String line) {
+        for (CommandType command : COMMANDS) {
+            if (line.contains(command.keyword())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Regex dot doesnt match line terminators, so the original validation rejected lines containing any of them
+     */
+    private static boolean containsLineTerminator(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splitting line on single spaces like {@code String.split(" ")}: empty words between spaces count,
+     * trailing empty words dont, line without any space is one word
+     *
+     * @return number of words, boundaries of the first {@value #MAX_WORDS} are remembered
+     */
+    private int tokenize(String line) {
+        int words = 0;
+        int nonEmptyWords = 0;
+        int start = 0;
+        boolean split = false;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i < line.length() && line.charAt(i) != ' ') {
+                continue;
+            }
+            if (i < line.length()) {
+                split = true;
+            }
+            if (words < MAX_WORDS) {
+                wordStarts[words] = start;
+                wordEnds[words] = i;
+            }
+            words++;
+            if (i > start) {
+                nonEmptyWords = words;
+            }
+            start = i + 1;
+        }
+        return split ? nonEmptyWords : 1;
+    }
+}
@@ -0,0 +1,44 @@
+package org.collibra.challenge.server;
+
+/**
+ * Commands understood by the Server with their keyword and number of space separated words (including keyword)
+ */
+enum CommandType {
+
+    ADD_NODE("ADD NODE", 3),
+    REMOVE_NODE("REMOVE NODE", 3),
+    ADD_EDGE("ADD EDGE", 5),
+    REMOVE_EDGE("REMOVE EDGE", 4),
+    SHORTEST_PATH("SHORTEST PATH", 4),
+    CLOSER_THAN("CLOSER THAN", 4),
+    IMPORT_EDGES("IMPORT EDGES", 3),
+    DISTANCES("DISTANCES FROM", 5),
+    UNKNOWN("", 0);
+
+    private final String keyword;
+    private final int words;
+
+    CommandType(String keyword, int words) {
+        this.keyword = keyword;
+        this.words = words;
+    }
+
+    String keyword() {
+        return keyword;
+    }
+
+    int words() {
+        return words;
+    }
+
+    /**
+     * @return true for commands running a search on the graph
+     */
+    boolean isQuery() {
+        return this == SHORTEST_PATH || this == CLOSER_THAN || this == DISTANCES;
+    }
+
+    boolean isMutation() {
+        return this == ADD_NODE || this == REMOVE_NODE || this == ADD_EDGE || this == REMOVE_EDGE;
+    }
+}
@@ -1,132 +1,320 @@
 package org.collibra.challenge.server;
 
 import org.collibra.challenge.algorithm.DirectedGraph;
+import org.collibra.challenge.algorithm.ImportResult;
+import org.collibra.challenge.algorithm.QueryLimitExceededException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 /**
  * This class represent commands logic with validation to be executed
  */
 class MessagesFromClient {
 
-    private static DirectedGraph directedGraphInstance = DirectedGraph.getInstance();
+    private static final ServerMetrics METRICS = ServerMetrics.getInstance();
     private static final Logger LOGGER = Logger.getLogger(MessagesFromClient.class.getName());
     private static final String UNRECOGNIZED_WORD = "SORRY, I DIDN'T UNDERSTAND THAT";
+    private static final String BATCH_ONLY_MUTATIONS = "ERROR: ONLY ADD AND REMOVE COMMANDS ALLOWED IN BATCH";
+    private static final String TOO_MANY_QUERIES = "ERROR: TOO MANY QUERIES";
+    private static final String QUERY_LIMIT_EXCEEDED = "ERROR: QUERY LIMIT EXCEEDED";
+    private static final String NEGATIVE_WEIGHT = "ERROR: NEGATIVE WEIGHT";
+    //IMPORT EDGES reads files of this directory only, null disables the command
+    private static volatile Path importDirectory;
+    //permits of queries running at once, null for no limit
+    private static volatile Semaphore queryPermits;
 
     /**
-     * Method to handle all Commands and execute proper method, otherwise fault message is returned
+     * Method to handle all Commands and execute proper method on the default graph, otherwise fault message is
+     * returned
      *
      * @return response for Client
      */
     static String processResponse(String inputMessage) {
+        return processResponse(inputMessage, new Command(), DirectedGraph.getInstance());
+    }
+
+    /**
+     * Method to handle all Commands and execute proper method, otherwise fault message is returned. Latency and
+     * outcome of every command are recorded in {@link ServerMetrics}.
+     *
+     * @param inputMessage line received from Client
+     * @param command      reusable command of the session the line is parsed into
+     * @param graph        graph selected by the session
+     * @return response for Client
+     */
+    static String processResponse(String inputMessage, Command command, DirectedGraph graph) {
         if (null == inputMessage || inputMessage.contains("BYE MATE!")) {
            return "";
         }
 
+        long start = System.nanoTime();
+        String response = execute(inputMessage, command, graph);
+        METRICS.record(command.type(), System.nanoTime() - start,
+                response == UNRECOGNIZED_WORD || response.startsWith("ERROR"));
+        return response;
+    }
+
+    /**
+     * Queries are admitted only while a permit is free, Client gets an error instead of waiting behind others
+     */
+    private static String execute(String inputMessage, Command command, DirectedGraph graph) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Client: " + inputMessage);
+        }
+        CommandType type = command.parse(inputMessage);
+        Semaphore permits = queryPermits;
+        if (!type.isQuery() || null == permits) {
+            return execute(type, inputMessage, command, graph);
+        }
+        if (!permits.tryAcquire()) {
+            return TOO_MANY_QUERIES;
+        }
         try {
-            LOGGER.info("Client: " + inputMessage);
-            //regex validation of hardcoded commands which are valid
-            String inputValidation = ".*ADD NODE.*|.*REMOVE NODE.*|.*ADD EDGE.*|.*REMOVE EDGE.*|.*SHORTEST PATH.*|.*CLOSER THAN.*";
-            //default message is return if message is not matching validation
-            if (!Pattern.matches(inputValidation, inputMessage)) {
-                LOGGER.info("Validation failed for message: " + inputMessage);
-                return UNRECOGNIZED_WORD;
-            } else {
-                //splitting the word by spaces to get values provided after command
-                String[] splitInputWord = inputMessage.split(" ");
-                //length of splitInputWord to validated afterwards
-                int splitInputWordLength = splitInputWord.length;
+            return execute(type, inputMessage, command, graph);
+        } finally {
+            permits.release();
+        }
+    }
 
+    private static String execute(CommandType type, String inputMessage, Command command, DirectedGraph graph) {
+        try {
+            switch (type) {
                 //logic for adding node with argument (node name)
-                if (inputMessage.startsWith("ADD NODE") && (splitInputWordLength == 3)) {
-                    return addNode(splitInputWord[2]);
-                }
+                case ADD_NODE:
+                    return addNode(graph, command.argument(2));
                 //logic for removing node with argument (node name)
-                if (inputMessage.startsWith("REMOVE NODE") && (splitInputWordLength == 3)) {
-                    return removeNode(splitInputWord[2]);
-                }
+                case REMOVE_NODE:
+                    return removeNode(graph, command.argument(2));
                 //logic for adding edge with arguments (source node name, destination node name, weight)
-                if (inputMessage.startsWith("ADD EDGE") && (splitInputWordLength == 5)) {
-                    return addEdge(splitInputWord[2], splitInputWord[3], Integer.parseInt(splitInputWord[4]));
-                }
+                case ADD_EDGE:
+                    return addEdge(graph, command.argument(2), command.argument(3), command.intArgument(4));
                 //logic for removing edge with arguments (source node name, destination node name)
-                if (inputMessage.startsWith("REMOVE EDGE") && (splitInputWordLength == 4)) {
-                    return removeEdge(splitInputWord[2], splitInputWord[3]);
-                }
+                case REMOVE_EDGE:
+                    return removeEdge(graph, command.argument(2), command.argument(3));
                 //logic for finding shortest path with arguments (source node name, destination node name)
-                if (inputMessage.startsWith("SHORTEST PATH") && (splitInputWordLength == 4)) {
-                    return String.valueOf(shortestPath(splitInputWord[2], splitInputWord[3]));
-                }
+                case SHORTEST_PATH:
+                    return shortestPath(graph, command.argument(2), command.argument(3));
                 //logic for finding closer than with arguments (weight, destination node name)
-                if (inputMessage.startsWith("CLOSER THAN") && (splitInputWordLength == 4)) {
-                    return closerThan(Integer.parseInt(splitInputWord[2]), splitInputWord[3]);
-                }
+                case CLOSER_THAN:
+                    return closerThan(graph, command.intArgument(2), command.argument(3));
+                //logic for bulk import with argument (file name relative to the import directory)
+                case IMPORT_EDGES:
+                    return importEdges(graph, command.argument(2));
+                //logic for distance matrix with arguments (source node names, TO, destination node names)
+                case DISTANCES:
+                    return distances(graph, command.argument(2), command.argument(3), command.argument(4));
+                default:
+                    break;
             }
+        } catch (QueryLimitExceededException e) {
+            LOGGER.info(e.getMessage() + ": " + inputMessage);
+            return QUERY_LIMIT_EXCEEDED;
         } catch (Exception e) {
-            LOGGER.info("Validation failed for message: " + inputMessage);
+            logValidationFailure(inputMessage);
             return UNRECOGNIZED_WORD;
         }
-        LOGGER.info("Validation failed for message: " + inputMessage);
+        logValidationFailure(inputMessage);
         return UNRECOGNIZED_WORD;
     }
 
+    private static void logValidationFailure(String inputMessage) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Validation failed for message: " + inputMessage);
+        }
+    }
+
+    /**
+     * Applying queued batch commands under one graph write, only ADD and REMOVE commands are allowed
+     *
+     * @param commands commands in order they were received
+     * @param command  reusable command of the session the lines are parsed into
+     * @param graph    graph selected by the session
+     * @return response for every command in the same order
+     */
+    static List<String> processBatch(List<String> commands, Command command, DirectedGraph graph) {
+        List<String> responses = new ArrayList<>(commands.size() + 1);
+        graph.batch(() -> {
+            for (String line : commands) {
+                CommandType type = command.parse(line);
+                responses.add(type.isMutation() || type == CommandType.UNKNOWN
+                        ? processResponse(line, command, graph) : BATCH_ONLY_MUTATIONS);
+            }
+        });
+        return responses;
+    }
+
     /**
+     * @param graph    graph selected by the session
      * @param nodeName String word to be added as node name
      * @return message if the operation is successful
      */
-    private static String addNode(String nodeName) {
-        return directedGraphInstance.addNode(nodeName) ? "NODE ADDED" : "ERROR: NODE ALREADY EXISTS";
+    private static String addNode(DirectedGraph graph, String nodeName) {
+        return graph.addNode(nodeName) ? "NODE ADDED" : "ERROR: NODE ALREADY EXISTS";
     }
 
     /**
+     * @param graph           graph selected by the session
      * @param sourceNode      source node name
      * @param destinationNode destination node name
      * @param weight          Integer value (weight) of link between two nodes
      * @return message if the operation is successful
      */
-    private static String addEdge(String sourceNode, String destinationNode, int weight) {
-        return directedGraphInstance.addEdge(
-                directedGraphInstance.getNodes().get(sourceNode),
-                directedGraphInstance.getNodes().get(destinationNode),
-                weight) ? "EDGE ADDED" : "ERROR: NODE NOT FOUND";
+    private static String addEdge(DirectedGraph graph, String sourceNode, String destinationNode, int weight) {
+        if (weight < 0) {
+            return NEGATIVE_WEIGHT;
+        }
+        return graph.addEdge(sourceNode, destinationNode, weight) ? "EDGE ADDED" : "ERROR: NODE NOT FOUND";
     }
 
     /**
+     * @param graph    graph selected by the session
      * @param nodeName node name
      * @return message if the operation is successful
      */
-    private static String removeNode(String nodeName) {
-        return directedGraphInstance.removeNode(nodeName) ? "NODE REMOVED" : "ERROR: NODE NOT FOUND";
+    private static String removeNode(DirectedGraph graph, String nodeName) {
+        return graph.removeNode(nodeName) ? "NODE REMOVED" : "ERROR: NODE NOT FOUND";
     }
 
     /**
+     * @param graph           graph selected by the session
      * @param sourceNode      source node name
      * @param destinationNode destination node name
      * @return message if the operation is successful
      */
-    private static String removeEdge(String sourceNode, String destinationNode) {
-        return directedGraphInstance.removeEdge(sourceNode, destinationNode) ? "EDGE REMOVED" : "ERROR: NODE NOT FOUND";
+    private static String removeEdge(DirectedGraph graph, String sourceNode, String destinationNode) {
+        return graph.removeEdge(sourceNode, destinationNode) ? "EDGE REMOVED" : "ERROR: NODE NOT FOUND";
     }
 
     /**
+     * @param graph           graph selected by the session
      * @param sourceNode      source node name
      * @param destinationNode destination node name
      * @return shortest path between provided nodes (number)
      */
-    private static String shortestPath(String sourceNode, String destinationNode) {
-        String result = String.valueOf(directedGraphInstance.getShortestPath(sourceNode, destinationNode));
-        return  result.equals("0") ? "ERROR: NODE NOT FOUND" : result;
+    private static String shortestPath(DirectedGraph graph, String sourceNode, String destinationNode) {
+        int result = graph.getShortestPath(sourceNode, destinationNode);
+        return result == 0 ? "ERROR: NODE NOT FOUND" : String.valueOf(result);
     }
 
     /**
+     * @param graph      graph selected by the session
      * @param weight     combined weight of links (number)
      * @param sourceNode source node name
      * @return comma separated list of the found nodes, sorted alphabetically by name
      */
-    private static String closerThan(int weight, String sourceNode) {
-        Set<String> result = directedGraphInstance.getCloserThan(weight, sourceNode);
-        return null == result ? "ERROR: NODE NOT FOUND" : result.toString().replaceAll("[\\[\\]\\s]", "");
+    private static String closerThan(DirectedGraph graph, int weight, String sourceNode) {
+        Set<String> result = graph.getCloserThan(weight, sourceNode);
+        return null == result ? "ERROR: NODE NOT FOUND" : joinNodeNames(result);
+    }
+
+    /**
+     * @param graph            graph selected by the session
+     * @param sourceNodes      comma separated source node names
+     * @param separator        word between the lists, must be TO
+     * @param destinationNodes comma separated destination node names
+     * @return one row per source separated by semicolons, distances within a row separated by commas in order of
+     * destinations, e.g. {@code 5,7,12;3,2147483647,4}
+     */
+    private static String distances(DirectedGraph graph, String sourceNodes, String separator,
+                                     String destinationNodes) {
+        if (!"TO".equals(separator)) {
+            throw new IllegalArgumentException("Expected TO: " + separator);
+        }
+        int[][] matrix = graph.getDistances(splitNodeNames(sourceNodes), splitNodeNames(destinationNodes));
+        if (null == matrix) {
+            return "ERROR: NODE NOT FOUND";
+        }
+        StringBuilder response = new StringBuilder();
+        for (int i = 0; i < matrix.length; i++) {
+            if (i > 0) {
+                response.append(';');
+            }
+            for (int j = 0; j < matrix[i].length; j++) {
+                if (j > 0) {
+                    response.append(',');
+                }
+                response.append(matrix[i][j]);
+            }
+        }
+        return response.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the list contains an empty name
+     */
+    private static List<String> splitNodeNames(String nodeNames) {
+        List<String> names = Arrays.asList(nodeNames.split(",", -1));
+        if (names.contains("")) {
+            throw new IllegalArgumentException("Empty node name in " + nodeNames);
+        }
+        return names;
+    }
+
+    /**
+     * @param graph    graph selected by the session
+     * @param fileName edge-list file, relative to the import directory
+     * @return counts of imported nodes, edges and skipped lines
+     */
+    private static String importEdges(DirectedGraph graph, String fileName) {
+        Path directory = importDirectory;
+        if (null == directory) {
+            return "ERROR: IMPORT DISABLED";
+        }
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            return "ERROR: FILE NOT FOUND";
+        }
+        try {
+            ImportResult result = graph.importEdges(file);
+            return "IMPORTED " + result.getNodesAdded() + " NODES, " + result.getEdgesAdded() + " EDGES, "
+                    + result.getSkippedLines() + " LINES SKIPPED";
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Import of " + file + " failed", e);
+            return "ERROR: IMPORT FAILED";
+        }
+    }
+
+    /**
+     * @param directory directory IMPORT EDGES may read files from, null disables the command
+     */
+    static void setImportDirectory(Path directory) {
+        importDirectory = null == directory ? null : directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * @param maxQueries queries running at once, further queries are answered with an error, 0 for no limit
+     */
+    static void setMaxQueries(int maxQueries) {
+        queryPermits = maxQueries > 0 ? new Semaphore(maxQueries) : null;
+    }
+
+    /**
+     * Joining names with commas, brackets and whitespace inside names are dropped as the list is a single word
+     */
+    private static String joinNodeNames(Set<String> nodeNames) {
+        StringBuilder joined = new StringBuilder();
+        boolean first = true;
+        for (String nodeName : nodeNames) {
+            if (!first) {
+                joined.append(',');
+            }
+            first = false;
+            for (int i = 0; i < nodeName.length(); i++) {
+                char c = nodeName.charAt(i);
+                if (c != '[' && c != ']' && c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') {
+                    joined.append(c);
+                }
+            }
+        }
+        return joined.toString();
     }
 }
\ No newline at end of file
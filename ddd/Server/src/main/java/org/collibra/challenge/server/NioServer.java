@@ -0,0 +1,477 @@
+package org.collibra.challenge.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Event loop based connection handling. Connections are accepted by the calling thread and spread over a small
+ * fixed set of I/O threads, each multiplexing its non-blocking channels with own {@link Selector}. Every
+ * connection has its own read and write buffers, incoming bytes are split to lines and handed to the same
+ * {@link SessionProtocol} as blocking {@link Session} uses, so both modes speak exactly the same protocol.
+ * <p>
+ * I/O threads only read, split lines and write, commands run on a fixed pool of worker threads so a slow query
+ * or a mutation waiting for the log doesnt stall the other connections of its selector. Commands of one
+ * connection run one at a time in the order they arrived, the worker hands every response back to the I/O
+ * thread which writes it. Reading from a connection is paused while it has too many commands waiting.
+ * Connections over the {@link SessionLimit} are answered and closed by the accepting thread.
+ */
+final class NioServer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final long TIMEOUT_CHECK_INTERVAL = 1000;
+    //commands of one connection waiting for a worker before its reading is paused
+    private static final int MAX_PENDING_COMMANDS = 1024;
+    //commands one worker runs for a connection before it lets other connections go first
+    private static final int COMMANDS_PER_TURN = 64;
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(CHARSET);
+    private static final Logger LOGGER = Logger.getLogger(NioServer.class.getName());
+    private static final ServerMetrics METRICS = ServerMetrics.getInstance();
+
+    private final EventLoop[] eventLoops;
+    private final ExecutorService workers;
+    private final SessionLimit sessionLimit;
+    private volatile boolean running = true;
+
+    NioServer(int ioThreads, int workerThreads, SessionLimit sessionLimit) {
+        eventLoops = new EventLoop[ioThreads];
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "nio-worker-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sessionLimit = sessionLimit;
+    }
+
+    /**
+     * Accepting connections until server channel is closed
+     */
+    void serve(ServerSocketChannel serverChannel) throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop();
+            Thread thread = new Thread(eventLoops[i], "nio-session-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            int next = 0;
+            while (running) {
+                SocketChannel channel = serverChannel.accept();
+                if (sessionLimit.tryAcquire()) {
+                    eventLoops[next++ % eventLoops.length].register(channel);
+                } else {
+                    reject(channel);
+                }
+            }
+        } finally {
+            stop();
+        }
+    }
+
+    void stop() {
+        running = false;
+        for (EventLoop eventLoop : eventLoops) {
+            if (null != eventLoop) {
+                eventLoop.selector.wakeup();
+            }
+        }
+        workers.shutdown();
+    }
+
+    /**
+     * One I/O thread with its selector, new channels and connections with new responses are handed over through
+     * queues
+     */
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> responded = new ConcurrentLinkedQueue<>();
+
+        private EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        private void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Called by a worker which queued responses of the connection
+         */
+        private void responded(Connection connection) {
+            responded.add(connection);
+            selector.wakeup();
+        }
+
+        private void execute(Runnable task) {
+            workers.execute(task);
+        }
+
+        @Override
+        public void run() {
+            long lastTimeoutCheck = System.currentTimeMillis();
+            try {
+                while (running) {
+                    selector.select(TIMEOUT_CHECK_INTERVAL);
+                    registerPending();
+                    writeResponses();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastTimeoutCheck >= TIMEOUT_CHECK_INTERVAL) {
+                        closeIdleConnections(now);
+                        lastTimeoutCheck = now;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(SEVERE, "Event loop failed: ", e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    LOGGER.log(SEVERE, "Error closing selector: ", e);
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                Connection connection = new Connection(channel, UUID.randomUUID().toString(), sessionLimit, this);
+                try {
+                    channel.configureBlocking(false);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    METRICS.sessionOpened();
+                    connection.send(connection.protocol.greeting());
+                    connection.flush();
+                } catch (IOException e) {
+                    LOGGER.info("Client disconnected!");
+                    connection.close();
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    connection.read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+            } catch (IOException | CancelledKeyException | RejectedExecutionException e) {
+                LOGGER.info("Client disconnected: " + connection.protocol.getUserName());
+                connection.close();
+            }
+        }
+
+        private void writeResponses() {
+            Connection connection;
+            while ((connection = responded.poll()) != null) {
+                if (!connection.key.isValid()) {
+                    continue;
+                }
+                try {
+                    connection.writeResponses();
+                } catch (IOException | CancelledKeyException e) {
+                    LOGGER.info("Client disconnected: " + connection.protocol.getUserName());
+                    connection.close();
+                }
+            }
+        }
+
+        private void closeIdleConnections(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (!connection.closing && !connection.timedOut
+                        && now - connection.lastActivity >= SessionProtocol.TIMEOUT) {
+                    connection.timedOut = true;
+                    //last message to Client is sent by a worker after the commands still waiting
+                    try {
+                        connection.submit(() -> {
+                            if (!connection.protocol.isClosed()) {
+                                LOGGER.info("Client timed out: " + connection.protocol.getUserName());
+                                connection.respond(connection.protocol.goodbye());
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * State of one connection: line framing of incoming bytes, commands waiting for a worker and queue of outgoing
+     * responses. Buffers are used by the I/O thread only, the protocol by one worker at a time.
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        private final SessionProtocol protocol;
+        private final EventLoop eventLoop;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        //responses not written yet, buffer is kept in write mode between flushes
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private byte[] line = new byte[128];
+        private int lineLength;
+        private boolean skipLineFeed;
+        private long lastActivity = System.currentTimeMillis();
+        private boolean timedOut;
+        private boolean readPaused;
+        private SelectionKey key;
+        private SessionLimit sessionLimit;
+        //commands waiting in arrival order and whether a worker runs them, guarded by the connection
+        private final Queue<Runnable> commands = new ArrayDeque<>();
+        private boolean scheduled;
+        //responses of the workers not yet taken by the I/O thread
+        private final Queue<String> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean responded = new AtomicBoolean();
+        //set by the worker which ran the last command, connection is closed once the responses are written
+        private volatile boolean closing;
+
+        private Connection(SocketChannel channel, String sessionKey, SessionLimit sessionLimit, EventLoop eventLoop) {
+            this.channel = channel;
+            this.protocol = new SessionProtocol(sessionKey);
+            this.sessionLimit = sessionLimit;
+            this.eventLoop = eventLoop;
+        }
+
+        private void read() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                if (!protocol.isClosed()) {
+                    LOGGER.info("Client disconnected: " + protocol.getUserName());
+                }
+                close();
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+            readBuffer.flip();
+            //lines are terminated by \n, \r or \r\n just like BufferedReader.readLine
+            while (readBuffer.hasRemaining() && !closing) {
+                byte b = readBuffer.get();
+                if (b == '\n' && skipLineFeed) {
+                    skipLineFeed = false;
+                    continue;
+                }
+                skipLineFeed = b == '\r';
+                if (b == '\n' || b == '\r') {
+                    String command = new String(line, 0, lineLength, CHARSET);
+                    readPaused = submit(() -> {
+                        //lines after the goodbye are not answered
+                        if (!protocol.isClosed()) {
+                            respond(protocol.handle(command));
+                        }
+                    }) >= MAX_PENDING_COMMANDS;
+                    lineLength = 0;
+                } else {
+                    append(b);
+                }
+            }
+            readBuffer.clear();
+            updateInterest();
+        }
+
+        /**
+         * Queuing a command behind the earlier ones of this connection, a worker is scheduled unless one is
+         * running them already
+         *
+         * @return number of commands waiting
+         */
+        private int submit(Runnable command) {
+            int waiting;
+            synchronized (this) {
+                commands.add(command);
+                waiting = commands.size();
+                if (scheduled) {
+                    return waiting;
+                }
+                scheduled = true;
+            }
+            eventLoop.execute(this::runCommands);
+            return waiting;
+        }
+
+        /**
+         * Running waiting commands on a worker, after a few of them the rest is scheduled again behind the commands
+         * of other connections
+         */
+        private void runCommands() {
+            for (int run = 0; run < COMMANDS_PER_TURN; run++) {
+                Runnable command;
+                synchronized (this) {
+                    command = commands.poll();
+                    if (null == command) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                command.run();
+            }
+            try {
+                eventLoop.execute(this::runCommands);
+            } catch (RejectedExecutionException e) {
+                LOGGER.info("Server stopped, commands of " + protocol.getUserName() + " dropped");
+            }
+        }
+
+        /**
+         * Handing a response of a worker to the I/O thread
+         */
+        private void respond(String response) {
+            if (null != response) {
+                responses.add(response);
+            }
+            if (protocol.isClosed()) {
+                closing = true;
+            }
+            if (responded.compareAndSet(false, true)) {
+                eventLoop.responded(this);
+            }
+        }
+
+        /**
+         * Writing responses queued by the workers, reading is resumed once the workers caught up
+         */
+        private void writeResponses() throws IOException {
+            responded.set(false);
+            String response;
+            while ((response = responses.poll()) != null) {
+                send(response);
+            }
+            if (readPaused) {
+                synchronized (this) {
+                    readPaused = commands.size() >= MAX_PENDING_COMMANDS / 2;
+                }
+            }
+            flush();
+        }
+
+        private void append(byte b) throws IOException {
+            if (lineLength == line.length) {
+                if (lineLength >= MAX_LINE_LENGTH) {
+                    throw new IOException("Line too long");
+                }
+                line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = b;
+        }
+
+        private void send(String response) {
+            if (null == response) {
+                return;
+            }
+            byte[] bytes = response.getBytes(CHARSET);
+            int needed = bytes.length + LINE_SEPARATOR.length;
+            if (writeBuffer.remaining() < needed) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + needed));
+                writeBuffer.flip();
+                writeBuffer = larger.put(writeBuffer);
+            }
+            writeBuffer.put(bytes).put(LINE_SEPARATOR);
+        }
+
+        /**
+         * Writing all buffered responses with as few writes as the socket allows, rest is written when channel
+         * becomes writable again. Reading is paused until then so a Client not reading responses is slowed down.
+         */
+        private void flush() throws IOException {
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            boolean pending = writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (pending) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (closing && responses.isEmpty()) {
+                //a goodbye still queued by the worker comes with another signal
+                close();
+            } else {
+                updateInterest();
+            }
+        }
+
+        /**
+         * Reading unless responses wait to be written or too many commands wait for a worker
+         */
+        private void updateInterest() {
+            if (writeBuffer.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(readPaused ? 0 : SelectionKey.OP_READ);
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                commands.clear();
+            }
+            if (null != key) {
+                if (key.isValid()) {
+                    METRICS.sessionClosed();
+                }
+                key.cancel();
+            }
+            //released once, close is called again for connections already closed
+            if (null != sessionLimit) {
+                sessionLimit.release();
+                sessionLimit = null;
+            }
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Answering a connection over the session limit, accepted channels are still blocking
+     */
+    private static void reject(SocketChannel channel) {
+        LOGGER.warning("Connection rejected, too many sessions");
+        try {
+            channel.write(ByteBuffer.wrap((SessionLimit.REJECTED + System.lineSeparator()).getBytes(CHARSET)));
+        } catch (IOException e) {
+            LOGGER.info("Client disconnected!");
+        }
+        closeQuietly(channel);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "Error closing connection: ", e);
+        }
+    }
+}
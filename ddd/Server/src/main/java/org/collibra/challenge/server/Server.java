@@ -1,53 +1,239 @@
 package org.collibra.challenge.server;
 
+import org.collibra.challenge.algorithm.DirectedGraph;
+import org.collibra.challenge.algorithm.GraphRegistry;
+
+import java.io.Closeable;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.SEVERE;
 
 /**
  * The Server class which includes main() for running the server that listens
- * for incoming connections and adding to Thread pool for multiple instances
+ * for incoming connections and adding to Thread pool (or virtual threads with {@code --mode=virtual-threads})
+ * for multiple instances, or handing them to {@link NioServer} when started with {@code --mode=nio}
  */
 public class Server {
 
-    private static final int PORT = 50000;
     private static final Logger LOGGER = Logger.getLogger(Server.class.getName());
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final ServerOptions options;
+    private final ExecutorService executorService;
+    private final SessionLimit sessionLimit;
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private volatile Closeable listener;
+    private volatile NioServer nioServer;
+    private volatile boolean stopped;
 
     public Server() {
-        LOGGER.info("Starting server on port: " + PORT);
-        //Opening server on port 50000
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            acceptClient(serverSocket);
+        this(new ServerOptions());
+    }
+
+    public Server(ServerOptions options) {
+        this.options = options;
+        this.executorService = options.getMode() == ServerMode.VIRTUAL_THREADS
+                ? newVirtualThreadExecutor() : Executors.newCachedThreadPool();
+        this.sessionLimit = new SessionLimit(options.getMaxSessions());
+    }
+
+    /**
+     * @param args startup options, see {@link ServerOptions}
+     */
+    public static void main(String[] args) {
+        new Server(ServerOptions.parse(args)).start();
+    }
+
+    /**
+     * Opening server on configured port and handling connections until {@link #stop()} is called
+     */
+    public void start() {
+        LOGGER.info("Starting server on port: " + options.getPort() + ", mode: " + options.getMode());
+        DirectedGraph graph = DirectedGraph.getInstance();
+        GraphRegistry registry = GraphRegistry.getInstance();
+        if (null != options.getDataDirectory()) {
+            try {
+                registry.openStorage(options.getDataDirectory());
+            } catch (IOException e) {
+                LOGGER.log(SEVERE, "Error restoring graph from " + options.getDataDirectory() + ": ", e);
+                listening.countDown();
+                return;
+            }
+        }
+        if (null != options.getImportFile()) {
+            try {
+                graph.importEdges(options.getImportFile());
+            } catch (IOException e) {
+                LOGGER.log(SEVERE, "Error importing " + options.getImportFile() + ": ", e);
+                if (null != options.getDataDirectory()) {
+                    closeStorage(registry);
+                }
+                listening.countDown();
+                return;
+            }
+        }
+        if (null != options.getHotSources()) {
+            graph.setHotSources(options.getHotSources());
+        }
+        MessagesFromClient.setImportDirectory(options.getImportDirectory());
+        MessagesFromClient.setMaxQueries(options.getMaxQueries());
+        SessionProtocol.setMaxBatch(options.getMaxBatch());
+        registry.setQueryLimits(options.getQueryMaxNodes(), options.getQueryTimeout());
+        ScheduledExecutorService background = startBackgroundTasks();
+        try {
+            if (options.getMode() == ServerMode.NIO) {
+                try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+                    serverChannel.bind(new InetSocketAddress(options.getPort()));
+                    nioServer = new NioServer(options.getIoThreads(), options.getWorkers(), sessionLimit);
+                    listener = serverChannel;
+                    listening.countDown();
+                    if (!stopped) {
+                        nioServer.serve(serverChannel);
+                    }
+                }
+            } else {
+                try (ServerSocket serverSocket = new ServerSocket(options.getPort())) {
+                    listener = serverSocket;
+                    listening.countDown();
+                    acceptClient(serverSocket);
+                }
+            }
         } catch (IOException e) {
-            LOGGER.log(SEVERE, "Error starting server: ", e);
+            if (!stopped) {
+                LOGGER.log(SEVERE, "Error starting server: ", e);
+            }
+        } finally {
+            listening.countDown();
+            executorService.shutdown();
+            background.shutdown();
+            if (null != options.getDataDirectory()) {
+                closeStorage(registry);
+            }
         }
     }
 
     /**
-     * @param args
+     * @return executor logging Server counters every {@code --stats-interval} seconds and writing graph
+     * checkpoints every {@code --checkpoint-interval} seconds if the graph is durable
      */
-    public static void main(String[] args) {
-        new Server();
+    private ScheduledExecutorService startBackgroundTasks() {
+        ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "server-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (options.getStatsInterval() > 0) {
+            background.scheduleAtFixedRate(() -> LOGGER.info(ServerMetrics.getInstance().report()),
+                    options.getStatsInterval(), options.getStatsInterval(), TimeUnit.SECONDS);
+        }
+        if (null != options.getDataDirectory() && options.getCheckpointInterval() > 0) {
+            background.scheduleWithFixedDelay(Server::checkpoint,
+                    options.getCheckpointInterval(), options.getCheckpointInterval(), TimeUnit.SECONDS);
+        }
+        return background;
+    }
+
+    private static void checkpoint() {
+        try {
+            GraphRegistry.getInstance().checkpoint();
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "Error writing graph checkpoint: ", e);
+        }
+    }
+
+    private static void closeStorage(GraphRegistry registry) {
+        try {
+            registry.closeStorage();
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "Error closing graph storage: ", e);
+        }
+    }
+
+    /**
+     * Waiting until {@link #start()} opened the listening socket, so that clients can connect
+     *
+     * @return true if the server is listening, false if it failed to start, was stopped or timeout elapsed
+     */
+    public boolean awaitListening(long timeout, TimeUnit unit) throws InterruptedException {
+        return listening.await(timeout, unit) && null != listener && !stopped;
+    }
+
+    /**
+     * Closing the listening socket, sessions already running finish on their own
+     */
+    public void stop() {
+        stopped = true;
+        try {
+            if (null != listener) {
+                listener.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(SEVERE, "Error stopping server: ", e);
+        }
+        if (null != nioServer) {
+            nioServer.stop();
+        }
+    }
+
+    /**
+     * Virtual threads are created through reflection so that the Server still compiles for Java 17, the mode
+     * itself is refused by {@link ServerOptions#mode(ServerMode)} on older runtimes
+     *
+     * @return executor starting new virtual thread per task
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or newer", e);
+        }
     }
 
     /**
-     * Accepting all incoming connections and adding them to Thread pool
+     * Accepting all incoming connections and adding them to Thread pool, connections over the session limit are
+     * rejected
      */
     private void acceptClient(ServerSocket serverSocket) {
-        while (true) {
+        while (!stopped) {
             try {
-                //adding connection to thread pool
-                this.executorService.submit(new Session(serverSocket.accept(), UUID.randomUUID().toString()));
+                Socket socket = serverSocket.accept();
+                if (!sessionLimit.tryAcquire()) {
+                    reject(socket);
+                    continue;
+                }
+                try {
+                    //adding connection to thread pool
+                    this.executorService.submit(new Session(socket, UUID.randomUUID().toString(), sessionLimit));
+                } catch (IOException | RuntimeException e) {
+                    sessionLimit.release();
+                    socket.close();
+                    throw e;
+                }
             } catch (IOException e) {
-                LOGGER.log(SEVERE, "Error listening to client: ", e);
+                if (!stopped) {
+                    LOGGER.log(SEVERE, "Error listening to client: ", e);
+                }
                 break;
             }
         }
     }
-}
\ No newline at end of file
+
+    private static void reject(Socket socket) {
+        try (Socket rejected = socket) {
+            LOGGER.warning("Connection rejected, too many sessions");
+            rejected.getOutputStream().write((SessionLimit.REJECTED + System.lineSeparator()).getBytes());
+        } catch (IOException e) {
+            LOGGER.info("Client disconnected!");
+        }
+    }
+}
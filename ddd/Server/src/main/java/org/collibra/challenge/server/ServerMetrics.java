@@ -0,0 +1,141 @@
+package org.collibra.challenge.server;
+
+import org.collibra.challenge.algorithm.DirectedGraph;
+import org.collibra.challenge.algorithm.GraphRegistry;
+import org.collibra.challenge.metrics.LatencyHistogram;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the whole Server: latency histogram and error count of every command type, number of open sessions
+ * and time writers wait for the monitors of all graphs. All of them are updated without locks from the session threads.
+ * Collector pauses and memory in use on and off the heap are read from the JVM, to compare runs with different
+ * {@link org.collibra.challenge.algorithm.SnapshotStorage}.
+ * <p>
+ * {@link #report()} gives everything as one line of space separated {@code name=value} pairs, latencies are in
+ * nanoseconds, e.g. {@code STATS sessions=2 lock_wait.count=10 ... graphs=1 gc_pause.count=4 gc_pause.ms=31
+ * heap_mb=112 direct_mb=0 mapped_mb=0 add_node.count=7 add_node.p50_ns=1500
+ * add_node.p99_ns=4100 add_node.p999_ns=4100 add_node.errors=1 ...}
+ */
+final class ServerMetrics {
+
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50_ns", "p99_ns", "p999_ns"};
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[CommandType.values().length];
+    private final LongAdder[] errors = new LongAdder[CommandType.values().length];
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    private ServerMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param type  executed command
+     * @param nanos time it took to execute the command
+     * @param error true if Client got an error instead of a result
+     */
+    void record(CommandType type, long nanos, boolean error) {
+        latencies[type.ordinal()].record(nanos);
+        if (error) {
+            errors[type.ordinal()].increment();
+        }
+    }
+
+    void sessionOpened() {
+        activeSessions.incrementAndGet();
+    }
+
+    void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * @return latencies of given command type
+     */
+    LatencyHistogram getLatencies(CommandType type) {
+        return latencies[type.ordinal()];
+    }
+
+    /**
+     * @return number of commands of given type answered with an error
+     */
+    long getErrors(CommandType type) {
+        return errors[type.ordinal()].sum();
+    }
+
+    /**
+     * @return all counters as one line
+     */
+    String report() {
+        StringBuilder report = new StringBuilder("STATS sessions=").append(activeSessions.get());
+        LatencyHistogram lockWait = new LatencyHistogram();
+        for (DirectedGraph graph : GraphRegistry.getInstance().graphs()) {
+            lockWait.add(graph.getLockWaitHistogram());
+        }
+        appendHistogram(report, "lock_wait", lockWait);
+        report.append(" graphs=").append(GraphRegistry.getInstance().size());
+        appendMemory(report);
+        for (CommandType type : CommandType.values()) {
+            String name = type.name().toLowerCase();
+            appendHistogram(report, name, latencies[type.ordinal()]);
+            report.append(' ').append(name).append(".errors=").append(errors[type.ordinal()].sum());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Collections and their accumulated time since start as reported by the collectors, with stop-the-world
+     * collectors (young and mixed G1 collections, Parallel, Serial) this is the time the application was paused
+     */
+    private static void appendMemory(StringBuilder report) {
+        long collections = 0;
+        long collectionMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            collectionMillis += Math.max(0, collector.getCollectionTime());
+        }
+        report.append(" gc_pause.count=").append(collections).append(" gc_pause.ms=").append(collectionMillis);
+        report.append(" heap_mb=").append(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName()) || "mapped".equals(pool.getName())) {
+                report.append(' ').append(pool.getName()).append("_mb=").append(pool.getMemoryUsed() >> 20);
+            }
+        }
+    }
+
+    private static void appendHistogram(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(' ').append(name).append(".count=").append(histogram.getCount());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            report.append(' ').append(name).append('.').append(PERCENTILE_NAMES[i]).append('=')
+                    .append(histogram.getValueAtPercentile(PERCENTILES[i]));
+        }
+    }
+
+    /**
+     * Metrics shared by all sessions
+     *
+     * @return ServerMetrics INSTANCE
+     */
+    static ServerMetrics getInstance() {
+        return InstanceHolder.SERVER_METRICS_INSTANCE;
+    }
+
+    /**
+     * Lazily and safely initialized singleton holder
+     */
+    private static final class InstanceHolder {
+        private static final ServerMetrics SERVER_METRICS_INSTANCE = new ServerMetrics();
+    }
+}
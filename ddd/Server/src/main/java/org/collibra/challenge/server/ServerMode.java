@@ -0,0 +1,28 @@
+package org.collibra.challenge.server;
+
+/**
+ * Ways the Server can handle client connections
+ */
+public enum ServerMode {
+
+    /**
+     * Every connection is a blocking {@link Session} running on its own pooled thread
+     */
+    THREAD_PER_CONNECTION,
+    /**
+     * Every connection is a blocking {@link Session} running on its own virtual thread, so a session waiting for
+     * Client input doesnt hold a platform thread. Needs Java 21 runtime, see {@link #isAvailable()}
+     */
+    VIRTUAL_THREADS,
+    /**
+     * Connections are multiplexed over a small fixed set of selector threads by {@link NioServer}
+     */
+    NIO;
+
+    /**
+     * @return false if the running Java version cannot run this mode
+     */
+    public boolean isAvailable() {
+        return this != VIRTUAL_THREADS || Runtime.version().feature() >= 21;
+    }
+}
@@ -0,0 +1,308 @@
+package org.collibra.challenge.server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Startup options of the Server given on command line as {@code --name=value}, e.g.
+ * {@code --port=50000 --mode=nio --io-threads=4 --workers=8 --stats-interval=60 --hot-sources=a,b --data-dir=/var/graph
+ * --checkpoint-interval=300 --import=/data/edges.csv --import-dir=/data --max-sessions=1000 --max-queries=64
+ * --query-max-nodes=5000000 --query-timeout=2000 --max-batch=100000}
+ */
+public final class ServerOptions {
+
+    static final int DEFAULT_PORT = 50000;
+    static final int DEFAULT_MAX_BATCH = 100000;
+
+    private int port = DEFAULT_PORT;
+    private ServerMode mode = ServerMode.THREAD_PER_CONNECTION;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int statsInterval;
+    private List<String> hotSources;
+    private Path dataDirectory;
+    private int checkpointInterval = 300;
+    private Path importFile;
+    private Path importDirectory;
+    private int maxSessions;
+    private int maxQueries;
+    private long queryMaxNodes;
+    private long queryTimeout;
+    private int maxBatch = DEFAULT_MAX_BATCH;
+
+    /**
+     * @param args command line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException if option is unknown or its value is invalid
+     */
+    public static ServerOptions parse(String... args) {
+        ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "port":
+                    options.port(Integer.parseInt(value));
+                    break;
+                case "mode":
+                    options.mode(ServerMode.valueOf(value.toUpperCase().replace('-', '_')));
+                    break;
+                case "io-threads":
+                    options.ioThreads(Integer.parseInt(value));
+                    break;
+                case "workers":
+                    options.workers(Integer.parseInt(value));
+                    break;
+                case "stats-interval":
+                    options.statsInterval(Integer.parseInt(value));
+                    break;
+                case "hot-sources":
+                    options.hotSources(Arrays.asList(value.split(",")));
+                    break;
+                case "data-dir":
+                    options.dataDirectory(Paths.get(value));
+                    break;
+                case "checkpoint-interval":
+                    options.checkpointInterval(Integer.parseInt(value));
+                    break;
+                case "import":
+                    options.importFile(Paths.get(value));
+                    break;
+                case "import-dir":
+                    options.importDirectory(Paths.get(value));
+                    break;
+                case "max-sessions":
+                    options.maxSessions(Integer.parseInt(value));
+                    break;
+                case "max-queries":
+                    options.maxQueries(Integer.parseInt(value));
+                    break;
+                case "query-max-nodes":
+                    options.queryMaxNodes(Long.parseLong(value));
+                    break;
+                case "query-timeout":
+                    options.queryTimeout(Long.parseLong(value));
+                    break;
+                case "max-batch":
+                    options.maxBatch(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        return options;
+    }
+
+    public ServerOptions port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public ServerOptions mode(ServerMode mode) {
+        if (!mode.isAvailable()) {
+            throw new IllegalArgumentException("Mode " + mode + " needs Java 21 or newer");
+        }
+        this.mode = mode;
+        return this;
+    }
+
+    public ServerOptions ioThreads(int ioThreads) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("At least one I/O thread is needed");
+        }
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * @param workers threads running commands of nio connections, the I/O threads only read and write
+     */
+    public ServerOptions workers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker thread is needed");
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * @param statsInterval seconds between Server counters are written to the log, 0 (default) turns it off
+     */
+    public ServerOptions statsInterval(int statsInterval) {
+        if (statsInterval < 0) {
+            throw new IllegalArgumentException("Stats interval cannot be negative");
+        }
+        this.statsInterval = statsInterval;
+        return this;
+    }
+
+    /**
+     * @param hotSources names of nodes whose shortest path trees are kept live, replaces system property
+     *                   "hot.sources"
+     */
+    public ServerOptions hotSources(List<String> hotSources) {
+        this.hotSources = hotSources;
+        return this;
+    }
+
+    /**
+     * @param dataDirectory directory the graph is restored from and logged to, graph is in memory only if not set
+     */
+    public ServerOptions dataDirectory(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+        return this;
+    }
+
+    /**
+     * @param checkpointInterval seconds between snapshots written to the data directory, 0 turns them off
+     */
+    public ServerOptions checkpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative");
+        }
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    /**
+     * @param importFile edge-list file imported on startup, after the graph is restored from the data directory
+     */
+    public ServerOptions importFile(Path importFile) {
+        this.importFile = importFile;
+        return this;
+    }
+
+    /**
+     * @param importDirectory directory Clients may import files from with IMPORT EDGES, disabled if not set
+     */
+    public ServerOptions importDirectory(Path importDirectory) {
+        this.importDirectory = importDirectory;
+        return this;
+    }
+
+    /**
+     * @param maxSessions sessions open at once, further connections are rejected, 0 (default) for no limit
+     */
+    public ServerOptions maxSessions(int maxSessions) {
+        if (maxSessions < 0) {
+            throw new IllegalArgumentException("Maximum sessions cannot be negative");
+        }
+        this.maxSessions = maxSessions;
+        return this;
+    }
+
+    /**
+     * @param maxQueries queries of all sessions running at once, further queries are rejected, 0 (default) for
+     *                   no limit
+     */
+    public ServerOptions maxQueries(int maxQueries) {
+        if (maxQueries < 0) {
+            throw new IllegalArgumentException("Maximum queries cannot be negative");
+        }
+        this.maxQueries = maxQueries;
+        return this;
+    }
+
+    /**
+     * @param maxBatch commands one session may queue between BEGIN BATCH and END BATCH, a larger batch is
+     *                 discarded, 0 for no limit, {@value #DEFAULT_MAX_BATCH} by default
+     */
+    public ServerOptions maxBatch(int maxBatch) {
+        if (maxBatch < 0) {
+            throw new IllegalArgumentException("Maximum batch size cannot be negative");
+        }
+        this.maxBatch = maxBatch;
+        return this;
+    }
+
+    /**
+     * @param queryMaxNodes nodes one query may settle, 0 (default) for no limit
+     */
+    public ServerOptions queryMaxNodes(long queryMaxNodes) {
+        if (queryMaxNodes < 0) {
+            throw new IllegalArgumentException("Query node limit cannot be negative");
+        }
+        this.queryMaxNodes = queryMaxNodes;
+        return this;
+    }
+
+    /**
+     * @param queryTimeout milliseconds one query may run, 0 (default) for no limit
+     */
+    public ServerOptions queryTimeout(long queryTimeout) {
+        if (queryTimeout < 0) {
+            throw new IllegalArgumentException("Query timeout cannot be negative");
+        }
+        this.queryTimeout = queryTimeout;
+        return this;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    ServerMode getMode() {
+        return mode;
+    }
+
+    int getIoThreads() {
+        return ioThreads;
+    }
+
+    int getWorkers() {
+        return workers;
+    }
+
+    int getStatsInterval() {
+        return statsInterval;
+    }
+
+    /**
+     * @return hot sources given on command line, null if not given
+     */
+    List<String> getHotSources() {
+        return hotSources;
+    }
+
+    Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    Path getImportFile() {
+        return importFile;
+    }
+
+    Path getImportDirectory() {
+        return importDirectory;
+    }
+
+    int getMaxSessions() {
+        return maxSessions;
+    }
+
+    int getMaxQueries() {
+        return maxQueries;
+    }
+
+    long getQueryMaxNodes() {
+        return queryMaxNodes;
+    }
+
+    long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    int getMaxBatch() {
+        return maxBatch;
+    }
+}
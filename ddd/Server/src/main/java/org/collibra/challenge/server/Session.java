@@ -1,67 +1,76 @@
 package org.collibra.challenge.server;
 
-import com.sun.scenario.effect.impl.sw.sse.SSEBlend_SRC_OUTPeer;
-
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.logging.Level;
+import java.net.SocketTimeoutException;
 import java.util.logging.Logger;
 
 /**
- * Single Threaded class for one connection to the Server
+ * Single Threaded class for one connection to the Server, blocking on reads from the socket. Protocol itself is
+ * implemented by {@link SessionProtocol} and shared with {@link NioServer}. Commands are pipelined: while the
+ * Client has more lines waiting in the input buffer they are processed in order and their responses are buffered,
+ * responses are flushed once all received input is answered.
  */
 public class Session implements Runnable {
 
-    private static final int TIMEOUT = 30000;
-
     private Socket clientSocket;
-    private String sessionKey;
-    private long startedConnectionTime = System.currentTimeMillis();
+    private SessionProtocol protocol;
+    private final SessionLimit sessionLimit;
     private static final Logger LOGGER = Logger.getLogger(Session.class.getName());
 
-    Session(Socket clientSocket, String sessionKey) throws SocketException {
+    /**
+     * @param sessionLimit limit this session has been admitted by, released when the session ends
+     */
+    Session(Socket clientSocket, String sessionKey, SessionLimit sessionLimit) throws SocketException {
         LOGGER.info("Adding connection to Thread pool");
+        this.sessionLimit = sessionLimit;
         this.clientSocket = clientSocket;
-        this.clientSocket.setSoTimeout(TIMEOUT);
-        this.sessionKey = sessionKey;
+        this.clientSocket.setSoTimeout(SessionProtocol.TIMEOUT);
+        this.protocol = new SessionProtocol(sessionKey);
     }
 
     @Override
     public void run() {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-             PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)) {
+        ServerMetrics.getInstance().sessionOpened();
+        try (Socket socket = clientSocket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())))) {
 
             //sending first message to Client when he connects
-            out.println("HI, I'M " + sessionKey);
-            String wordFromClient = in.readLine();
-            LOGGER.info("Client: " + wordFromClient);
-            //printing Client name
-            System.out.println(wordFromClient);
-            String userName = wordFromClient.substring(8);
-            //sending second message to Client
-            out.println("HI, " + userName);
-
-            while (true) {
-                try {
-                    //loop response to Client for each input Client provides
-                    out.println(MessagesFromClient.processResponse(in.readLine()));
-                    if (in.readLine() == null || in.readLine().equals("BYE MATE!")) {
-                        out.println("BYE " + userName + ", WE SPOKE FOR " + (System.currentTimeMillis() - startedConnectionTime) + " MS");
-                        break;
+            out.println(protocol.greeting());
+            out.flush();
+            try {
+                String wordFromClient;
+                //loop response to Client for each input Client provides until he says goodbye
+                while (!protocol.isClosed() && (wordFromClient = in.readLine()) != null) {
+                    String response = protocol.handle(wordFromClient);
+                    if (null != response) {
+                        out.println(response);
                     }
-                } catch (Exception e) {
-                    LOGGER.info("Client disconnected: " + userName);
-                    //send last message to Client
-                    out.println("BYE " + userName + ", WE SPOKE FOR " + (System.currentTimeMillis() - startedConnectionTime) + " MS");
-                    break;
+                    //flushing only when Client waits for responses, not while pipelined commands are pending
+                    if (!in.ready()) {
+                        out.flush();
+                    }
+                }
+                if (!protocol.isClosed()) {
+                    LOGGER.info("Client disconnected: " + protocol.getUserName());
                 }
+            } catch (SocketTimeoutException e) {
+                LOGGER.info("Client timed out: " + protocol.getUserName());
+                //send last message to Client
+                out.println(protocol.goodbye());
             }
         } catch (IOException e) {
             LOGGER.info("Client disconnected!");
+        } finally {
+            ServerMetrics.getInstance().sessionClosed();
+            sessionLimit.release();
         }
     }
-}
\ No newline at end of file
+}
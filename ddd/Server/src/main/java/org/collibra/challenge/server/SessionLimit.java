@@ -0,0 +1,42 @@
+package org.collibra.challenge.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maximum number of sessions open at once, shared by all connection handling modes. A connection accepted over
+ * the limit is answered with {@value #REJECTED} and closed right away, so a flood of connections cannot exhaust
+ * threads or memory of the Server.
+ */
+final class SessionLimit {
+
+    static final String REJECTED = "ERROR: TOO MANY SESSIONS";
+
+    private final int maxSessions;
+    private final AtomicInteger open = new AtomicInteger();
+
+    /**
+     * @param maxSessions sessions open at once, 0 for no limit
+     */
+    SessionLimit(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * @return true if the session may be opened, it must be {@link #release() released} when closed
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = open.get();
+            if (maxSessions > 0 && current >= maxSessions) {
+                return false;
+            }
+            if (open.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        open.decrementAndGet();
+    }
+}
@@ -0,0 +1,150 @@
+package org.collibra.challenge.server;
+
+import org.collibra.challenge.algorithm.DirectedGraph;
+import org.collibra.challenge.algorithm.GraphRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Text protocol of one connection, independent of the way lines are read and written. Server greets the Client
+ * with its session key, Client introduces itself with "HI, I'M name", every following line is a command answered
+ * with exactly one line until Client says "BYE MATE!" or the connection times out.
+ * <p>
+ * Mutations between "BEGIN BATCH" and "END BATCH" are queued and applied as one graph write when the batch ends,
+ * so other sessions see either none or all of them. "BEGIN BATCH" is answered with "BATCH STARTED", queued
+ * commands get no immediate answer; "END BATCH" answers every queued command in order followed by "BATCH APPLIED".
+ * A batch longer than the configured maximum is discarded as soon as it exceeds it, following commands up to
+ * "END BATCH" are ignored and "END BATCH" is answered with "ERROR: BATCH TOO LARGE" alone.
+ * <p>
+ * "STATS" is answered with one line of Server counters, see {@link ServerMetrics#report()}.
+ * <p>
+ * Commands work on the default graph until "USE GRAPH name" selects another graph of the {@link GraphRegistry}
+ * for the rest of the session, it is answered with "GRAPH SELECTED".
+ */
+final class SessionProtocol {
+
+    static final int TIMEOUT = 30000;
+
+    private static final String CLIENT_GREETING = "HI, I'M ";
+    private static final String CLIENT_GOODBYE = "BYE MATE!";
+    private static final String BEGIN_BATCH = "BEGIN BATCH";
+    private static final String END_BATCH = "END BATCH";
+    private static final String STATS = "STATS";
+    private static final String USE_GRAPH = "USE GRAPH ";
+    private static final String BATCH_TOO_LARGE = "ERROR: BATCH TOO LARGE";
+    private static final Logger LOGGER = Logger.getLogger(SessionProtocol.class.getName());
+    private static volatile int maxBatch = ServerOptions.DEFAULT_MAX_BATCH;
+
+    private final String sessionKey;
+    private final long startedConnectionTime = System.currentTimeMillis();
+    private String userName;
+    private boolean closed;
+    private List<String> batch;
+    private boolean batchTooLarge;
+    private final Command command = new Command();
+    private DirectedGraph graph = DirectedGraph.getInstance();
+
+    SessionProtocol(String sessionKey) {
+        this.sessionKey = sessionKey;
+    }
+
+    /**
+     * @return first message sent to Client when he connects
+     */
+    String greeting() {
+        return CLIENT_GREETING + sessionKey;
+    }
+
+    /**
+     * Handling one line received from Client
+     *
+     * @param line line without line terminator
+     * @return response for Client, several lines when a batch ends, null while commands are queued in a batch
+     */
+    String handle(String line) {
+        if (null == userName) {
+            LOGGER.info("Client: " + line);
+            userName = line.startsWith(CLIENT_GREETING) ? line.substring(CLIENT_GREETING.length()) : line;
+            return "HI, " + userName;
+        }
+        if (line.equals(CLIENT_GOODBYE)) {
+            return goodbye();
+        }
+        if (null != batch) {
+            if (line.equals(END_BATCH)) {
+                List<String> commands = batch;
+                batch = null;
+                if (batchTooLarge) {
+                    batchTooLarge = false;
+                    return BATCH_TOO_LARGE;
+                }
+                List<String> responses = MessagesFromClient.processBatch(commands, command, graph);
+                responses.add("BATCH APPLIED");
+                return String.join(System.lineSeparator(), responses);
+            }
+            if (batchTooLarge) {
+                return null;
+            }
+            int limit = maxBatch;
+            if (limit > 0 && batch.size() >= limit) {
+                //queued commands are dropped right away, memory of a session stays bounded
+                LOGGER.warning("Batch of " + userName + " discarded, more than " + limit + " commands");
+                batchTooLarge = true;
+                batch = new ArrayList<>(0);
+                return null;
+            }
+            batch.add(line);
+            return null;
+        }
+        if (line.equals(STATS)) {
+            return ServerMetrics.getInstance().report();
+        }
+        if (line.equals(BEGIN_BATCH)) {
+            batch = new ArrayList<>();
+            return "BATCH STARTED";
+        }
+        if (line.startsWith(USE_GRAPH)) {
+            return useGraph(line.substring(USE_GRAPH.length()));
+        }
+        return MessagesFromClient.processResponse(line, command, graph);
+    }
+
+    /**
+     * @param commands commands one session may queue in a batch, 0 for no limit
+     */
+    static void setMaxBatch(int commands) {
+        maxBatch = commands;
+    }
+
+    private String useGraph(String name) {
+        if (!GraphRegistry.isValidName(name)) {
+            return "ERROR: INVALID GRAPH NAME";
+        }
+        try {
+            graph = GraphRegistry.getInstance().graph(name);
+        } catch (IllegalArgumentException e) {
+            return "ERROR: TOO MANY GRAPHS";
+        }
+        return "GRAPH SELECTED";
+    }
+
+    /**
+     * Closing the session, used also when Client disconnects or times out
+     *
+     * @return last message for Client
+     */
+    String goodbye() {
+        closed = true;
+        return "BYE " + userName + ", WE SPOKE FOR " + (System.currentTimeMillis() - startedConnectionTime) + " MS";
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    String getUserName() {
+        return userName;
+    }
+}
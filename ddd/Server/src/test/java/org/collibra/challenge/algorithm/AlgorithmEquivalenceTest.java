@@ -0,0 +1,135 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checking that every engine, every point-to-point search and the radius bounded search return same distances as
+ * {@link AlgorithmImplementation} on randomized graphs
+ */
+public class AlgorithmEquivalenceTest {
+
+    private static final int GRAPHS = 30;
+    private static final int SOURCES_PER_GRAPH = 5;
+
+    @Test
+    public void testSparseGraphs() {
+        verifyRandomGraphs(new Random(42), 60, 2);
+    }
+
+    @Test
+    public void testDenseGraphs() {
+        verifyRandomGraphs(new Random(7), 25, 12);
+    }
+
+    @Test
+    public void testParallelEdgesAndSelfLoops() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addNode("c");
+        graph.addEdge("a", "b", 9);
+        graph.addEdge("a", "b", 2);
+        graph.addEdge("a", "a", 1);
+        graph.addEdge("b", "c", 0);
+        GraphSnapshot snapshot = graph.getSnapshot();
+        for (AlgorithmType type : AlgorithmType.values()) {
+            ShortestPathAlgorithm algorithm = type.create(snapshot);
+            algorithm.execute(snapshot.nodeId("a"));
+            assertEquals(type.name(), 2, algorithm.getShortestDistance(snapshot.nodeId("b")));
+            assertEquals(type.name(), 2, algorithm.getShortestDistance(snapshot.nodeId("c")));
+        }
+    }
+
+    private void verifyRandomGraphs(Random random, int nodeCount, int averageDegree) {
+        for (int i = 0; i < GRAPHS; i++) {
+            GraphSnapshot graph = randomGraph(random, nodeCount, averageDegree).getSnapshot();
+            for (int j = 0; j < SOURCES_PER_GRAPH; j++) {
+                int source = random.nextInt(nodeCount);
+                ShortestPathAlgorithm reference = AlgorithmType.LINEAR_SCAN.create(graph);
+                reference.execute(source);
+                for (AlgorithmType type : AlgorithmType.values()) {
+                    ShortestPathAlgorithm algorithm = type.create(graph);
+                    algorithm.execute(source);
+                    for (int n = 0; n < nodeCount; n++) {
+                        assertEquals(type.name() + " from " + source + " to " + n,
+                                reference.getShortestDistance(n), algorithm.getShortestDistance(n));
+                    }
+                    int limit = random.nextInt(150);
+                    ShortestPathAlgorithm bounded = type.create(graph);
+                    bounded.executeWithin(source, limit);
+                    Set<String> closer = new TreeSet<>();
+                    for (int n = 0; n < nodeCount; n++) {
+                        if (n != source && reference.getShortestDistance(n) < limit) {
+                            closer.add(graph.nodeName(n));
+                        }
+                    }
+                    assertEquals(type.name() + " closer than " + limit + " from " + source, closer, bounded.getCloserThan());
+                    for (PathSearch search : PathSearch.values()) {
+                        for (int n = 0; n < nodeCount; n++) {
+                            assertEquals(search.name() + " " + type.name() + " from " + source + " to " + n,
+                                    reference.getShortestDistance(n), search.distance(graph, type, source, n));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPointToPointSearchesSettleFewerNodes() {
+        //100 x 100 grid with edges both ways, destination is next to the source
+        int width = 100;
+        DirectedGraph graph = new DirectedGraph();
+        for (int n = 0; n < width * width; n++) {
+            graph.addNode(node(n));
+        }
+        for (int n = 0; n < width * width; n++) {
+            if ((n + 1) % width != 0) {
+                graph.addEdge(node(n), node(n + 1), 1);
+                graph.addEdge(node(n + 1), node(n), 1);
+            }
+            if (n + width < width * width) {
+                graph.addEdge(node(n), node(n + width), 1);
+                graph.addEdge(node(n + width), node(n), 1);
+            }
+        }
+        GraphSnapshot snapshot = graph.getSnapshot();
+        int source = snapshot.nodeId(node(width * width / 2 + width / 2));
+        int destination = snapshot.nodeId(node(width * width / 2 + width / 2 + 5));
+
+        ShortestPathAlgorithm full = AlgorithmType.PRIORITY_QUEUE.create(snapshot);
+        full.execute(source);
+        ShortestPathAlgorithm targeted = AlgorithmType.PRIORITY_QUEUE.create(snapshot);
+        targeted.execute(source, destination);
+        BidirectionalDijkstra bidirectional = new BidirectionalDijkstra(snapshot);
+
+        assertEquals(5, full.getShortestDistance(destination));
+        assertEquals(5, targeted.getShortestDistance(destination));
+        assertEquals(5, bidirectional.distance(source, destination));
+        assertEquals(width * width, full.getSettledCount());
+        assertTrue(targeted.getSettledCount() < width * width / 50);
+        assertTrue(bidirectional.getSettledCount() < targeted.getSettledCount());
+    }
+
+    static DirectedGraph randomGraph(Random random, int nodeCount, int averageDegree) {
+        DirectedGraph graph = new DirectedGraph();
+        for (int n = 0; n < nodeCount; n++) {
+            graph.addNode(node(n));
+        }
+        for (int e = 0; e < nodeCount * averageDegree; e++) {
+            graph.addEdge(node(random.nextInt(nodeCount)), node(random.nextInt(nodeCount)), random.nextInt(100));
+        }
+        return graph;
+    }
+
+    static String node(int index) {
+        return "node-" + index;
+    }
+}
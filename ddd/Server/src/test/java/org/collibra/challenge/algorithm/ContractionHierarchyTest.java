@@ -0,0 +1,143 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.node;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ContractionHierarchyTest {
+
+    @Test
+    public void testGridDistancesMatchBidirectionalSearch() {
+        int width = 60;
+        Random random = new Random(11);
+        DirectedGraph graph = new DirectedGraph();
+        for (int n = 0; n < width * width; n++) {
+            graph.addNode(node(n));
+        }
+        for (int n = 0; n < width * width; n++) {
+            if ((n + 1) % width != 0) {
+                graph.addEdge(node(n), node(n + 1), 1 + random.nextInt(20));
+                graph.addEdge(node(n + 1), node(n), 1 + random.nextInt(20));
+            }
+            if (n + width < width * width) {
+                graph.addEdge(node(n), node(n + width), 1 + random.nextInt(20));
+                graph.addEdge(node(n + width), node(n), 1 + random.nextInt(20));
+            }
+        }
+        GraphSnapshot snapshot = graph.getSnapshot();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(snapshot);
+        //planar graph needs about as many shortcuts as it has edges
+        assertTrue(String.valueOf(hierarchy.shortcutCount()), hierarchy.shortcutCount() < 3 * snapshot.edgeCount());
+        BidirectionalDijkstra reference = new BidirectionalDijkstra(snapshot);
+        for (int i = 0; i < 500; i++) {
+            int source = random.nextInt(width * width);
+            int destination = random.nextInt(width * width);
+            assertEquals(source + " to " + destination, reference.distance(source, destination),
+                    hierarchy.distance(source, destination));
+        }
+    }
+
+    @Test
+    public void testZeroWeightsAndUnreachableNodes() {
+        DirectedGraph graph = new DirectedGraph();
+        for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+            graph.addNode(name);
+        }
+        graph.addEdge("a", "b", 0);
+        graph.addEdge("b", "c", 0);
+        graph.addEdge("a", "c", 5);
+        graph.addEdge("c", "a", 0);
+        graph.addEdge("d", "a", Integer.MAX_VALUE - 1);
+        graph.addEdge("a", "d", 3);
+        graph.removeNode("e");
+        GraphSnapshot snapshot = graph.getSnapshot();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(snapshot);
+
+        assertEquals(0, hierarchy.distance(snapshot.nodeId("a"), snapshot.nodeId("c")));
+        assertEquals(3, hierarchy.distance(snapshot.nodeId("b"), snapshot.nodeId("d")));
+        assertEquals(Integer.MAX_VALUE - 1, hierarchy.distance(snapshot.nodeId("d"), snapshot.nodeId("c")));
+        graph.removeEdge("d", "a");
+        GraphSnapshot mutated = graph.getSnapshot();
+        assertEquals(ShortestPathAlgorithm.INFINITY,
+                ContractionHierarchy.build(mutated).distance(mutated.nodeId("d"), mutated.nodeId("b")));
+    }
+
+    @Test
+    public void testGraphFallsBackUntilHierarchyOfCurrentVersionIsBuilt() throws InterruptedException {
+        DirectedGraph graph = AlgorithmEquivalenceTest.randomGraph(new Random(17), 200, 3);
+        graph.setPathSearch(PathSearch.CONTRACTION_HIERARCHY);
+        GraphSnapshot before = graph.getSnapshot();
+        BidirectionalDijkstra reference = new BidirectionalDijkstra(before);
+        assertEquals(Integer.valueOf(reference.distance(before.nodeId(node(0)), before.nodeId(node(1)))),
+                graph.getShortestPath(node(0), node(1)));
+        assertNotNull(awaitHierarchy(before));
+
+        //hierarchy of the old version is never used for the new one, answer is correct right after the mutation
+        graph.addEdge(node(0), node(1), 0);
+        assertEquals(Integer.valueOf(0), graph.getShortestPath(node(0), node(1)));
+        GraphSnapshot after = graph.getSnapshot();
+        assertNotNull(awaitHierarchy(after));
+        assertEquals(Integer.valueOf(0), graph.getShortestPath(node(0), node(1)));
+    }
+
+    @Test
+    public void testDistanceMatrixMatchesPointToPointQueries() throws InterruptedException {
+        Random random = new Random(19);
+        DirectedGraph graph = AlgorithmEquivalenceTest.randomGraph(random, 400, 3);
+        GraphSnapshot snapshot = graph.getSnapshot();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(snapshot);
+        int[] sources = new int[12];
+        int[] destinations = new int[30];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(400);
+        }
+        for (int i = 0; i < destinations.length; i++) {
+            destinations[i] = random.nextInt(400);
+        }
+        //repeated source and destination
+        sources[1] = sources[0];
+        destinations[2] = sources[0];
+        int[][] matrix = hierarchy.distances(sources, destinations);
+        BidirectionalDijkstra reference = new BidirectionalDijkstra(snapshot);
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < destinations.length; j++) {
+                assertEquals(sources[i] + " to " + destinations[j],
+                        reference.distance(sources[i], destinations[j]), matrix[i][j]);
+            }
+        }
+
+        //graph answers from one search per source until its hierarchy is built, then from buckets
+        graph.setPathSearch(PathSearch.CONTRACTION_HIERARCHY);
+        List<String> sourceNames = names(snapshot, sources);
+        List<String> destinationNames = names(snapshot, destinations);
+        assertArrayEquals(matrix, graph.getDistances(sourceNames, destinationNames));
+        assertNotNull(awaitHierarchy(snapshot));
+        assertArrayEquals(matrix, graph.getDistances(sourceNames, destinationNames));
+        assertNull(graph.getDistances(sourceNames, Arrays.asList(node(0), "missing")));
+    }
+
+    private static List<String> names(GraphSnapshot snapshot, int[] nodes) {
+        List<String> names = new ArrayList<>();
+        for (int node : nodes) {
+            names.add(snapshot.nodeName(node));
+        }
+        return names;
+    }
+
+    private static ContractionHierarchy awaitHierarchy(GraphSnapshot snapshot) throws InterruptedException {
+        for (int i = 0; i < 500 && null == snapshot.builtContractionHierarchy(); i++) {
+            Thread.sleep(10);
+        }
+        return snapshot.builtContractionHierarchy();
+    }
+}
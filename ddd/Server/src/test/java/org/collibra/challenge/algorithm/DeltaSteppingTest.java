@@ -0,0 +1,156 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.node;
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.randomGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeltaSteppingTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterClass
+    public static void shutDown() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void testDistancesMatchSequentialEngine() {
+        Random random = new Random(23);
+        for (int delta : new int[]{1, 10, 50, 1000}) {
+            GraphSnapshot graph = randomGraph(random, 5000, 6).getSnapshot();
+            for (int i = 0; i < 3; i++) {
+                verify(graph, random.nextInt(graph.nodeCount()), delta);
+            }
+        }
+    }
+
+    @Test
+    public void testZeroWeightCyclesKeepParentsATree() {
+        Random random = new Random(31);
+        DirectedGraph graph = new DirectedGraph();
+        for (int n = 0; n < 3000; n++) {
+            graph.addNode(node(n));
+        }
+        for (int e = 0; e < 20000; e++) {
+            graph.addEdge(node(random.nextInt(3000)), node(random.nextInt(3000)), random.nextInt(3));
+        }
+        verify(graph.getSnapshot(), 0, 1);
+    }
+
+    @Test
+    public void testUnreachableTargetsStayInfinite() {
+        //two components and isolated nodes, source reaches only its own component
+        Random random = new Random(41);
+        DirectedGraph graph = new DirectedGraph();
+        for (int n = 0; n < 1000; n++) {
+            graph.addNode(node(n));
+        }
+        for (int e = 0; e < 4000; e++) {
+            int component = random.nextInt(2) * 450;
+            graph.addEdge(node(component + random.nextInt(450)), node(component + random.nextInt(450)), random.nextInt(20));
+        }
+        GraphSnapshot snapshot = graph.getSnapshot();
+        for (int delta : new int[]{1, 5, 100}) {
+            verify(snapshot, snapshot.nodeId(node(0)), delta);
+        }
+        ShortestPathTree tree = DeltaStepping.create(snapshot).execute(snapshot.nodeId(node(0)));
+        for (int n = 450; n < 1000; n++) {
+            assertEquals(ShortestPathAlgorithm.INFINITY, tree.distance(snapshot.nodeId(node(n))));
+        }
+    }
+
+    @Test
+    public void testZeroWeightsGiveBucketWidthOfOne() {
+        Random random = new Random(43);
+        DirectedGraph graph = new DirectedGraph();
+        for (int n = 0; n < 2000; n++) {
+            graph.addNode(node(n));
+        }
+        for (int e = 0; e < 8000; e++) {
+            graph.addEdge(node(random.nextInt(2000)), node(random.nextInt(2000)), 0);
+        }
+        GraphSnapshot snapshot = graph.getSnapshot();
+        assertEquals(0, snapshot.averageWeight());
+        verify(snapshot, 0, DeltaStepping.create(snapshot));
+        verify(snapshot, 0, 1);
+
+        //mostly zero weights, average rounds down to 0
+        for (int e = 0; e < 2000; e++) {
+            graph.addEdge(node(random.nextInt(2000)), node(random.nextInt(2000)), 1);
+        }
+        snapshot = graph.getSnapshot();
+        assertEquals(0, snapshot.averageWeight());
+        for (int source = 0; source < 2000; source += 499) {
+            verify(snapshot, source, DeltaStepping.create(snapshot));
+        }
+    }
+
+    @Test
+    public void testBucketWidthIsAverageWeight() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addEdge("a", "b", 2);
+        graph.addEdge("b", "a", 5);
+        assertEquals(3, graph.getSnapshot().averageWeight());
+        assertEquals(0, new DirectedGraph().getSnapshot().averageWeight());
+        try {
+            new DeltaStepping(graph.getSnapshot(), POOL, 0);
+            fail("Bucket width 0 must be rejected");
+        } catch (IllegalArgumentException expected) {
+            //buckets of width 0 would divide by zero
+        }
+    }
+
+    @Test
+    public void testGraphAboveThresholdSearchesInParallel() {
+        DirectedGraph graph = randomGraph(new Random(37), 2000, 4);
+        graph.setPathSearch(PathSearch.TREE);
+        graph.setParallelThreshold(1);
+        DirectedGraph sequential = randomGraph(new Random(37), 2000, 4);
+        sequential.setPathSearch(PathSearch.TREE);
+        for (int n = 0; n < 2000; n += 37) {
+            assertEquals(sequential.getShortestPath(node(1), node(n)), graph.getShortestPath(node(1), node(n)));
+        }
+    }
+
+    /**
+     * Comparing distances with the sequential engine and checking that every parent chain leads to the source
+     * over edges whose weights add up to the distance
+     */
+    private static void verify(GraphSnapshot graph, int source, int delta) {
+        verify(graph, source, new DeltaStepping(graph, POOL, delta));
+    }
+
+    private static void verify(GraphSnapshot graph, int source, DeltaStepping search) {
+        ShortestPathAlgorithm reference = AlgorithmType.PRIORITY_QUEUE.create(graph);
+        reference.execute(source);
+        ShortestPathTree tree = search.execute(source);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            assertEquals("from " + source + " to " + node, reference.getShortestDistance(node), tree.distance(node));
+            if (node == source || tree.distance(node) == ShortestPathAlgorithm.INFINITY) {
+                assertEquals(GraphSnapshot.NO_NODE, tree.parent(node));
+                continue;
+            }
+            int parent = tree.parent(node);
+            boolean edgeFound = false;
+            for (int edge = graph.firstEdge(parent); edge < graph.endEdge(parent); edge++) {
+                edgeFound |= graph.target(edge) == node
+                        && tree.distance(parent) + graph.weight(edge) == tree.distance(node);
+            }
+            assertTrue("parent edge of " + node, edgeFound);
+            int steps = 0;
+            for (int ancestor = node; ancestor != source; ancestor = tree.parent(ancestor)) {
+                assertTrue("parent chain of " + node + " is a cycle", steps++ < graph.nodeCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DirectedGraphTest {
+
+    private final DirectedGraph graph = DirectedGraph.getInstance();
+
+    @Test
+    public void testShortestPathFollowsCheapestRoute() {
+        addNodes("sp-a", "sp-b", "sp-c", "sp-d");
+        graph.addEdge("sp-a", "sp-b", 1);
+        graph.addEdge("sp-b", "sp-c", 2);
+        graph.addEdge("sp-a", "sp-c", 5);
+        graph.addEdge("sp-c", "sp-d", 1);
+
+        assertEquals(Integer.valueOf(4), graph.getShortestPath("sp-a", "sp-d"));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), graph.getShortestPath("sp-d", "sp-a"));
+    }
+
+    @Test
+    public void testRemoveEdgeDropsOnlyMatchingEdges() {
+        addNodes("re-a", "re-b", "re-c");
+        graph.addEdge("re-a", "re-b", 1);
+        graph.addEdge("re-a", "re-c", 3);
+        graph.addEdge("re-c", "re-b", 1);
+
+        assertTrue(graph.removeEdge("re-a", "re-b"));
+        assertEquals(Integer.valueOf(4), graph.getShortestPath("re-a", "re-b"));
+        assertEquals(1, outDegree("re-a"));
+        assertEquals(1, outDegree("re-c"));
+    }
+
+    @Test
+    public void testRemoveNodeDetachesAllEdges() {
+        addNodes("rn-a", "rn-b", "rn-c");
+        graph.addEdge("rn-a", "rn-b", 1);
+        graph.addEdge("rn-b", "rn-c", 1);
+        graph.addEdge("rn-b", "rn-b", 1);
+
+        assertTrue(graph.removeNode("rn-b"));
+        assertFalse(graph.removeNode("rn-b"));
+        assertEquals(0, outDegree("rn-a"));
+        assertFalse(graph.getNodes().contains("rn-b"));
+
+        //re-adding node reuses freed id but must not bring old edges back
+        assertTrue(graph.addNode("rn-b"));
+        assertEquals(0, outDegree("rn-b"));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), graph.getShortestPath("rn-a", "rn-c"));
+    }
+
+    @Test
+    public void testCloserThanReturnsWholeNeighborhood() {
+        DirectedGraph tree = new DirectedGraph();
+        for (String node : new String[]{"ct-a", "ct-b", "ct-c", "ct-d", "ct-e", "ct-f"}) {
+            tree.addNode(node);
+        }
+        //two branches from ct-a, ct-f is too far away
+        tree.addEdge("ct-a", "ct-b", 2);
+        tree.addEdge("ct-a", "ct-c", 3);
+        tree.addEdge("ct-b", "ct-d", 2);
+        tree.addEdge("ct-c", "ct-e", 1);
+        tree.addEdge("ct-e", "ct-f", 5);
+        tree.addEdge("ct-d", "ct-a", 1);
+
+        assertEquals(new TreeSet<>(Arrays.asList("ct-b", "ct-c", "ct-d", "ct-e")), tree.getCloserThan(5, "ct-a"));
+        //distance equal to the limit is not closer than the limit
+        assertEquals(new TreeSet<>(Arrays.asList("ct-b", "ct-c")), tree.getCloserThan(4, "ct-a"));
+        assertEquals(new TreeSet<>(), tree.getCloserThan(2, "ct-a"));
+        assertEquals(new TreeSet<>(), tree.getCloserThan(0, "ct-a"));
+        assertEquals(null, tree.getCloserThan(5, "ct-x"));
+    }
+
+    @Test
+    public void testQueriesRunConcurrentlyWithMutations() throws Exception {
+        DirectedGraph chain = new DirectedGraph();
+        chain.addNode("c-0");
+        for (int i = 1; i <= 200; i++) {
+            chain.addNode("c-" + i);
+            chain.addEdge("c-" + (i - 1), "c-" + i, 1);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    for (int q = 0; q < 200; q++) {
+                        //shortcut edges only ever make the path shorter, every version is a consistent graph
+                        int distance = chain.getShortestPath("c-0", "c-200");
+                        assertTrue(distance >= 1 && distance <= 200);
+                    }
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 200; i += 2) {
+                    chain.addEdge("c-" + i, "c-" + (i + 2), 1);
+                }
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(Integer.valueOf(100), chain.getShortestPath("c-0", "c-200"));
+    }
+
+    @Test
+    public void testSnapshotsBuiltDuringMutationsShowOneVersion() throws Exception {
+        DirectedGraph toggled = new DirectedGraph();
+        toggled.addNode("t-a");
+        toggled.addNode("t-b");
+        long base = toggled.getVersion();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            //edge exists exactly in versions after an odd number of toggles
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    toggled.addEdge("t-a", "t-b", 1);
+                    toggled.removeEdge("t-a", "t-b");
+                }
+            });
+            Future<?> reader = executor.submit(() -> {
+                while (!writer.isDone()) {
+                    GraphSnapshot snapshot = toggled.getSnapshot();
+                    int node = snapshot.nodeId("t-a");
+                    int expected = (int) ((snapshot.version() - base) % 2);
+                    assertEquals(expected, snapshot.edgeCount());
+                    assertEquals(expected, snapshot.endEdge(node) - snapshot.firstEdge(node));
+                }
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            reader.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, toggled.getSnapshot().edgeCount());
+    }
+
+    @Test
+    public void testQueriesDontWaitForRunningBatch() throws Exception {
+        DirectedGraph batched = new DirectedGraph();
+        batched.addNode("b-a");
+        batched.addNode("b-b");
+        batched.addEdge("b-a", "b-b", 5);
+        long before = batched.getVersion();
+        CountDownLatch applied = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> batch = executor.submit(() -> batched.batch(() -> {
+                batched.removeEdge("b-a", "b-b");
+                batched.addEdge("b-a", "b-b", 2);
+                applied.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(applied.await(10, TimeUnit.SECONDS));
+            //batch is still running, queries see the version before it
+            assertEquals(Integer.valueOf(5), batched.getShortestPath("b-a", "b-b"));
+            assertEquals(before, batched.getVersion());
+            release.countDown();
+            batch.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(Integer.valueOf(2), batched.getShortestPath("b-a", "b-b"));
+        assertEquals(before + 2, batched.getVersion());
+    }
+
+    @Test
+    public void testNegativeWeightsAreRejected() {
+        DirectedGraph hot = new DirectedGraph();
+        for (String nodeName : Arrays.asList("nw-s", "nw-x", "nw-y")) {
+            hot.addNode(nodeName);
+        }
+        hot.setHotSources(Arrays.asList("nw-s"));
+        hot.addEdge("nw-s", "nw-x", 1);
+        hot.addEdge("nw-x", "nw-y", 1);
+        long version = hot.getVersion();
+
+        //would close a negative cycle reachable from the hot source
+        try {
+            hot.addEdge("nw-y", "nw-x", -5);
+            fail("Negative weight should be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(version, hot.getVersion());
+        }
+        assertTrue(hot.addEdge("nw-y", "nw-x", 0));
+        assertEquals(Integer.valueOf(2), hot.getShortestPath("nw-s", "nw-y"));
+    }
+
+    @Test
+    public void testHotSourceQueriesDontBuildSnapshots() throws Exception {
+        DirectedGraph hot = new DirectedGraph();
+        for (String nodeName : Arrays.asList("h-a", "h-b", "h-c")) {
+            hot.addNode(nodeName);
+        }
+        hot.addEdge("h-a", "h-b", 3);
+        hot.setHotSources(Arrays.asList("h-a"));
+        assertEquals(Integer.valueOf(3), hot.getShortestPath("h-a", "h-b"));
+
+        hot.addEdge("h-b", "h-c", 4);
+        assertEquals(Integer.valueOf(7), hot.getShortestPath("h-a", "h-c"));
+        assertEquals(Integer.valueOf(3), hot.getShortestPath("h-a", "h-b"));
+        assertNull(hot.builtSnapshot());
+        assertEquals(3, hot.getHotHitCount());
+
+        //other sources still need the snapshot
+        assertEquals(Integer.valueOf(4), hot.getShortestPath("h-b", "h-c"));
+        assertNotNull(hot.builtSnapshot());
+        assertEquals(Integer.valueOf(0), hot.getShortestPath("h-a", "h-missing"));
+
+        //node added by a running batch doesnt exist for other threads yet
+        CountDownLatch added = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread batch = new Thread(() -> hot.batch(() -> {
+            hot.addNode("h-d");
+            added.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        batch.start();
+        try {
+            assertTrue(added.await(10, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(0), hot.getShortestPath("h-a", "h-d"));
+        } finally {
+            release.countDown();
+            batch.join();
+        }
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), hot.getShortestPath("h-a", "h-d"));
+    }
+
+    @Test
+    public void testVersionChangesOnlyOnMutation() {
+        DirectedGraph versioned = new DirectedGraph();
+        long initial = versioned.getVersion();
+        versioned.addNode("v-a");
+        assertEquals(initial + 1, versioned.getVersion());
+        assertFalse(versioned.addNode("v-a"));
+        versioned.removeEdge("v-a", "v-a");
+        assertEquals(initial + 1, versioned.getVersion());
+    }
+
+    @Test
+    public void testQueriesOverLimitAreCancelled() {
+        DirectedGraph chain = new DirectedGraph();
+        for (int i = 0; i < 1000; i++) {
+            chain.addNode("ql-" + i);
+            if (i > 0) {
+                chain.addEdge("ql-" + (i - 1), "ql-" + i, 1);
+            }
+        }
+        chain.setQueryLimits(100, 0);
+        assertEquals(Integer.valueOf(3), chain.getShortestPath("ql-0", "ql-3"));
+        //second query from the same source computes its full tree
+        for (int i = 0; i < 2; i++) {
+            assertLimitExceeded(() -> chain.getShortestPath("ql-0", "ql-999"));
+        }
+        assertLimitExceeded(() -> chain.getCloserThan(500, "ql-0"));
+        assertLimitExceeded(() -> chain.getDistances(Arrays.asList("ql-0"), Arrays.asList("ql-999")));
+
+        chain.setQueryLimits(0, 0);
+        assertEquals(Integer.valueOf(999), chain.getShortestPath("ql-0", "ql-999"));
+        assertEquals(499, chain.getCloserThan(500, "ql-0").size());
+    }
+
+    @Test
+    public void testQueryBudgetChecksDeadlineEveryClockInterval() throws InterruptedException {
+        QueryBudget budget = new QueryBudget(0, 1);
+        Thread.sleep(5);
+        for (int i = 1; i < QueryBudget.CLOCK_INTERVAL; i++) {
+            budget.visit();
+        }
+        assertLimitExceeded(budget::visit);
+    }
+
+    private static void assertLimitExceeded(Runnable query) {
+        try {
+            query.run();
+            fail("Query limit exceeded expected");
+        } catch (QueryLimitExceededException expected) {
+            //query has been cancelled
+        }
+    }
+
+    private int outDegree(String nodeName) {
+        GraphSnapshot snapshot = graph.getSnapshot();
+        int node = snapshot.nodeId(nodeName);
+        return snapshot.endEdge(node) - snapshot.firstEdge(node);
+    }
+
+    private void addNodes(String... nodeNames) {
+        for (String nodeName : nodeNames) {
+            graph.addNode(nodeName);
+        }
+    }
+}
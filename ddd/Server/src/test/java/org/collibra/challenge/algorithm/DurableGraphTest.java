@@ -0,0 +1,228 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checking that a graph restored from snapshot and write-ahead log equals the graph which wrote them
+ */
+public class DurableGraphTest {
+
+    private static final int NODES = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoreFromLogOnly() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        mutate(graph, new Random(3), 500);
+        graph.closeStorage();
+
+        verifyRestored(graph, directory);
+    }
+
+    @Test
+    public void testRestoreFromSnapshotAndLogTail() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        Random random = new Random(5);
+        mutate(graph, random, 500);
+        graph.checkpoint();
+        mutate(graph, random, 300);
+        graph.checkpoint();
+        mutate(graph, random, 100);
+        graph.closeStorage();
+
+        //only the latest snapshot and the log written after it are kept
+        assertEquals(2, files(directory).size());
+        verifyRestored(graph, directory);
+    }
+
+    @Test
+    public void testTornRecordAtLogEndIsIgnored() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addEdge("a", "b", 4);
+        graph.closeStorage();
+        Path log = files(directory).get(0);
+        Files.write(log, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        DirectedGraph restored = verifyRestored(graph, directory);
+        //log continues in a new segment after the torn one
+        restored.addEdge("b", "a", 1);
+        restored.closeStorage();
+        DirectedGraph again = new DirectedGraph();
+        again.openStorage(directory);
+        assertEquals(Integer.valueOf(1), again.getShortestPath("b", "a"));
+        again.closeStorage();
+    }
+
+    @Test
+    public void testConcurrentWritersAreAllDurable() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 8; w++) {
+            int writer = w;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    graph.addNode("w" + writer + "-" + i);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        graph.closeStorage();
+
+        assertEquals(800, verifyRestored(graph, directory).getNodes().size());
+    }
+
+    @Test
+    public void testOffHeapSnapshotsAnswerLikeHeapOnes() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        Random random = new Random(13);
+        mutate(graph, random, 500);
+        graph.checkpoint();
+        graph.closeStorage();
+
+        //edges of the restored graph are the mapped snapshot file, edges of the copy are built in direct buffers
+        DirectedGraph restored = new DirectedGraph();
+        restored.setSnapshotStorage(SnapshotStorage.OFF_HEAP);
+        restored.openStorage(directory);
+        assertEquals(graph.getVersion(), restored.getVersion());
+        for (DirectedGraph offHeap : new DirectedGraph[]{restored, copyOffHeap(graph)}) {
+            for (String source : graph.getNodes()) {
+                for (String destination : graph.getNodes()) {
+                    assertEquals(source + " to " + destination, graph.getShortestPath(source, destination),
+                            offHeap.getShortestPath(source, destination));
+                }
+            }
+        }
+        restored.closeStorage();
+    }
+
+    @Test
+    public void testReplacedOffHeapSnapshotIsFreedOnceReleased() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.setSnapshotStorage(SnapshotStorage.OFF_HEAP);
+        graph.batch(() -> {
+            for (int n = 0; n < 1000; n++) {
+                graph.addNode(node(n));
+            }
+            for (int edge = 0; edge < 100_000; edge++) {
+                graph.addEdge(node(edge % 1000), node(edge % 997), 1);
+            }
+        });
+        GraphSnapshot reading = graph.getSnapshot();
+        long direct = directMemoryUsed();
+        graph.addNode("new");
+
+        //still read by a query after the mutation
+        assertTrue(reading.retain());
+        reading.release();
+        assertEquals(100_000, reading.edgeCount());
+        assertEquals(1, reading.target(reading.firstEdge(1)));
+        reading.release();
+        assertFalse(reading.retain());
+        //both 400 kB edge arrays freed without a collection
+        assertTrue(directMemoryUsed() <= direct - 800_000);
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        throw new IllegalStateException("No direct buffer pool");
+    }
+
+    private static DirectedGraph copyOffHeap(DirectedGraph graph) {
+        DirectedGraph copy = new DirectedGraph();
+        copy.setSnapshotStorage(SnapshotStorage.OFF_HEAP);
+        copy.batch(() -> {
+            GraphSnapshot snapshot = graph.getSnapshot();
+            for (String node : graph.getNodes()) {
+                copy.addNode(node);
+            }
+            for (int node = 0; node < snapshot.nodeCount(); node++) {
+                for (int edge = snapshot.firstEdge(node); edge < snapshot.endEdge(node); edge++) {
+                    copy.addEdge(snapshot.nodeName(node), snapshot.nodeName(snapshot.target(edge)), snapshot.weight(edge));
+                }
+            }
+        });
+        return copy;
+    }
+
+    private static void mutate(DirectedGraph graph, Random random, int mutations) {
+        for (int i = 0; i < mutations; i++) {
+            String from = node(random.nextInt(NODES));
+            String to = node(random.nextInt(NODES));
+            int mutation = random.nextInt(10);
+            if (mutation < 4) {
+                graph.addNode(from);
+            } else if (mutation < 8) {
+                graph.addEdge(from, to, random.nextInt(100));
+            } else if (mutation < 9) {
+                graph.removeEdge(from, to);
+            } else {
+                graph.removeNode(from);
+            }
+        }
+    }
+
+    private static DirectedGraph verifyRestored(DirectedGraph graph, Path directory) throws IOException {
+        DirectedGraph restored = new DirectedGraph();
+        restored.openStorage(directory);
+        assertEquals(graph.getVersion(), restored.getVersion());
+        assertEquals(graph.getNodes(), restored.getNodes());
+        assertEquals(graph.getSnapshot().edgeCount(), restored.getSnapshot().edgeCount());
+        for (String source : graph.getNodes()) {
+            for (String destination : graph.getNodes()) {
+                assertEquals(source + " to " + destination, graph.getShortestPath(source, destination),
+                        restored.getShortestPath(source, destination));
+            }
+        }
+        return restored;
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> list = files.sorted().collect(Collectors.toList());
+            assertTrue(list.toString(), list.stream().noneMatch(file -> file.toString().endsWith(".tmp")));
+            return list;
+        }
+    }
+}
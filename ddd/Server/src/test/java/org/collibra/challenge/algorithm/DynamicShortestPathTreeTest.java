@@ -0,0 +1,105 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.node;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checking that live trees of hot sources answer same distances as a fresh search after every mutation
+ */
+public class DynamicShortestPathTreeTest {
+
+    private static final int NODES = 40;
+    private static final int MUTATIONS = 2000;
+
+    @Test
+    public void testTreesFollowRandomMutations() {
+        Random random = new Random(11);
+        DirectedGraph graph = AlgorithmEquivalenceTest.randomGraph(random, NODES, 3);
+        List<String> hotSources = Arrays.asList(node(0), node(1), node(2));
+        graph.setHotSources(hotSources);
+        for (int i = 0; i < MUTATIONS; i++) {
+            String from = node(random.nextInt(NODES));
+            String to = node(random.nextInt(NODES));
+            int mutation = random.nextInt(10);
+            if (mutation < 5) {
+                graph.addEdge(from, to, random.nextInt(100));
+            } else if (mutation < 8) {
+                graph.removeEdge(from, to);
+            } else if (mutation < 9) {
+                graph.removeNode(from);
+            } else {
+                graph.addNode(from);
+            }
+            verifyHotSources(graph, hotSources, "after mutation " + i);
+        }
+    }
+
+    @Test
+    public void testRemovedTreeEdgeIsReplacedByLongerPath() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addNode("c");
+        graph.addNode("d");
+        graph.addEdge("a", "b", 1);
+        graph.addEdge("b", "c", 1);
+        graph.addEdge("c", "d", 1);
+        graph.addEdge("a", "c", 5);
+        graph.setHotSources(Collections.singleton("a"));
+        assertEquals(Integer.valueOf(3), graph.getShortestPath("a", "d"));
+
+        graph.removeEdge("a", "b");
+        assertEquals(Integer.valueOf(6), graph.getShortestPath("a", "d"));
+        graph.removeNode("c");
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), graph.getShortestPath("a", "d"));
+        graph.addNode("c");
+        graph.addEdge("a", "c", 2);
+        graph.addEdge("c", "d", 2);
+        assertEquals(Integer.valueOf(4), graph.getShortestPath("a", "d"));
+        assertEquals(4, graph.getHotHitCount());
+        assertEquals(0, graph.getCacheMissCount());
+    }
+
+    @Test
+    public void testRemovedHotSourceIsRebuiltWhenAddedAgain() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.setHotSources(Collections.singleton("a"));
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addEdge("a", "b", 3);
+        assertEquals(Integer.valueOf(3), graph.getShortestPath("a", "b"));
+
+        graph.removeNode("a");
+        graph.addNode("a");
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), graph.getShortestPath("a", "b"));
+        graph.addEdge("a", "b", 8);
+        assertEquals(Integer.valueOf(8), graph.getShortestPath("a", "b"));
+        assertEquals(3, graph.getHotHitCount());
+    }
+
+    private void verifyHotSources(DirectedGraph graph, List<String> hotSources, String message) {
+        GraphSnapshot snapshot = graph.getSnapshot();
+        for (String hotSource : hotSources) {
+            int source = snapshot.nodeId(hotSource);
+            if (GraphSnapshot.NO_NODE == source) {
+                continue;
+            }
+            ShortestPathAlgorithm reference = AlgorithmType.LINEAR_SCAN.create(snapshot);
+            reference.execute(source);
+            for (String destination : snapshot.nodes()) {
+                long hits = graph.getHotHitCount();
+                assertEquals(message + " from " + hotSource + " to " + destination,
+                        Integer.valueOf(reference.getShortestDistance(snapshot.nodeId(destination))),
+                        graph.getShortestPath(hotSource, destination));
+                assertEquals(message, hits + 1, graph.getHotHitCount());
+            }
+        }
+    }
+}
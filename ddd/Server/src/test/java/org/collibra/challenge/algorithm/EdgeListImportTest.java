@@ -0,0 +1,155 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EdgeListImportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLineFormats() throws IOException {
+        Path file = folder.newFile("edges.csv").toPath();
+        Files.write(file, ("source,target,weight\n"
+                + "# comment, with, more, than, three, words\n"
+                + "a,b,3\r\n"
+                + "b\tc\t4\n"
+                + "c d\n"
+                + "\n"
+                + "lonely\n"
+                + "a;d;-1\n"
+                + "a b c d\n"
+                + "d a 2").getBytes(StandardCharsets.UTF_8));
+        DirectedGraph graph = new DirectedGraph();
+        graph.addNode("a");
+
+        ImportResult result = graph.importEdges(file);
+        assertEquals(4, result.getNodesAdded());
+        assertEquals(4, result.getEdgesAdded());
+        assertEquals(3, result.getSkippedLines());
+        assertEquals(Integer.valueOf(8), graph.getShortestPath("a", "d"));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), graph.getShortestPath("a", "lonely"));
+        assertEquals(2, graph.getVersion());
+    }
+
+    @Test
+    public void testOverLongLinesAreSkipped() throws IOException {
+        char[] name = new char[EdgeListImport.MAX_LINE_BYTES + 1];
+        Arrays.fill(name, 'x');
+        Path file = folder.newFile("long.txt").toPath();
+        //over-long line in the middle of a chunk, not at its end
+        Files.write(file, ("a b 1\n" + new String(name) + " b 2\nb c 3\n").getBytes(StandardCharsets.UTF_8));
+        DirectedGraph graph = new DirectedGraph();
+
+        ImportResult result = graph.importEdges(file);
+        assertEquals(3, result.getNodesAdded());
+        assertEquals(2, result.getEdgesAdded());
+        assertEquals(1, result.getSkippedLines());
+        assertEquals(Integer.valueOf(4), graph.getShortestPath("a", "c"));
+    }
+
+    @Test
+    public void testImportSpanningSeveralChunks() throws IOException {
+        int nodes = 20000;
+        int edges = 1_000_000;
+        Random random = new Random(9);
+        Path file = folder.newFile("large.txt").toPath();
+        DirectedGraph expected = new DirectedGraph();
+        for (int n = 0; n < nodes; n++) {
+            expected.addNode(node(n));
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int e = 0; e < edges; e++) {
+                String source = node(random.nextInt(nodes));
+                String destination = node(random.nextInt(nodes));
+                int weight = random.nextInt(100);
+                expected.addEdge(source, destination, weight);
+                writer.write(source + " " + destination + " " + weight + "\n");
+            }
+        }
+        //several chunks, lines cut by chunk boundaries belong to the chunk they start in
+        assertTrue(Files.size(file) > 2L * EdgeListImport.CHUNK_BYTES);
+
+        DirectedGraph imported = new DirectedGraph();
+        ImportResult result = imported.importEdges(file);
+        assertEquals(nodes, result.getNodesAdded());
+        assertEquals(edges, result.getEdgesAdded());
+        assertEquals(0, result.getSkippedLines());
+        assertEquals(expected.getSnapshot().edgeCount(), imported.getSnapshot().edgeCount());
+        for (int i = 0; i < 20; i++) {
+            String source = node(random.nextInt(nodes));
+            String destination = node(random.nextInt(nodes));
+            assertEquals(expected.getShortestPath(source, destination), imported.getShortestPath(source, destination));
+        }
+    }
+
+    @Test
+    public void testImportIsDurable() throws IOException {
+        Path directory = folder.newFolder("data").toPath();
+        Path file = folder.newFile("edges.txt").toPath();
+        Files.write(file, "a b 1\nb c 2\n".getBytes(StandardCharsets.UTF_8));
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        graph.addNode("z");
+        graph.importEdges(file);
+        graph.addEdge("c", "z", 4);
+        graph.closeStorage();
+
+        DirectedGraph restored = new DirectedGraph();
+        restored.openStorage(directory);
+        assertEquals(Integer.valueOf(7), restored.getShortestPath("a", "z"));
+        assertEquals(graph.getVersion(), restored.getVersion());
+        restored.closeStorage();
+    }
+
+    @Test
+    public void testImportWithFailedCheckpointIsRolledBack() throws IOException {
+        Path directory = folder.newFolder("data").toPath();
+        Path file = folder.newFile("edges.txt").toPath();
+        Files.write(file, "a b 1\nb c 2\n".getBytes(StandardCharsets.UTF_8));
+        DirectedGraph graph = new DirectedGraph();
+        graph.openStorage(directory);
+        graph.addNode("a");
+        graph.addNode("z");
+        long version = graph.getVersion();
+        //snapshot of the import cannot be written where a directory is in the way
+        Files.createDirectory(directory.resolve(String.format("graph-%020d.snapshot.tmp", version + 1)));
+
+        try {
+            graph.importEdges(file);
+            fail("Import should fail without its checkpoint");
+        } catch (IOException expected) {
+            assertEquals(version, graph.getVersion());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("a", "z")), graph.getNodes());
+        assertEquals(Integer.valueOf(0), graph.getShortestPath("a", "b"));
+        //mutations after the failed import are logged and restored
+        graph.addNode("b");
+        graph.addEdge("a", "b", 3);
+        graph.addEdge("b", "z", 4);
+        graph.closeStorage();
+
+        DirectedGraph restored = new DirectedGraph();
+        restored.openStorage(directory);
+        assertEquals(graph.getVersion(), restored.getVersion());
+        assertEquals(Integer.valueOf(7), restored.getShortestPath("a", "z"));
+        assertEquals(Integer.valueOf(0), restored.getShortestPath("a", "c"));
+        restored.closeStorage();
+    }
+}
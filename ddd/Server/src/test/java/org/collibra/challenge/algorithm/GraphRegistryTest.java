@@ -0,0 +1,105 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GraphRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGraphsAreIndependent() {
+        DirectedGraph defaultGraph = new DirectedGraph();
+        GraphRegistry registry = new GraphRegistry(defaultGraph);
+        DirectedGraph tenant = registry.graph("tenant-1");
+
+        assertSame(defaultGraph, registry.graph(GraphRegistry.DEFAULT_GRAPH));
+        assertSame(tenant, registry.graph("tenant-1"));
+        assertNotSame(defaultGraph, tenant);
+        tenant.addNode("a");
+        assertTrue(defaultGraph.addNode("a"));
+        assertEquals(1, tenant.getVersion());
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testInvalidNames() {
+        assertTrue(GraphRegistry.isValidName("Tenant_2-b"));
+        assertFalse(GraphRegistry.isValidName(""));
+        assertFalse(GraphRegistry.isValidName(".."));
+        assertFalse(GraphRegistry.isValidName("a/b"));
+        assertFalse(GraphRegistry.isValidName("a b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNameIsRejected() {
+        new GraphRegistry(new DirectedGraph()).graph("../data");
+    }
+
+    @Test
+    public void testConcurrentCreationsStayWithinLimit() throws Exception {
+        GraphRegistry registry = new GraphRegistry(new DirectedGraph());
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService creators = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> creations = new ArrayList<>();
+            for (int i = 0; i < GraphRegistry.MAX_GRAPHS + 100; i++) {
+                String name = "tenant-" + i;
+                creations.add(creators.submit(() -> {
+                    try {
+                        registry.graph(name);
+                    } catch (IllegalArgumentException expected) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> creation : creations) {
+                creation.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            creators.shutdownNow();
+        }
+        assertEquals(GraphRegistry.MAX_GRAPHS, registry.size());
+        assertEquals(101, rejected.get());
+    }
+
+    @Test
+    public void testNamedGraphsAreRestored() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        GraphRegistry registry = new GraphRegistry(new DirectedGraph());
+        registry.openStorage(directory);
+        registry.graph(GraphRegistry.DEFAULT_GRAPH).addNode("d");
+        registry.graph("tenant").addNode("t");
+        registry.graph("tenant").addNode("u");
+        registry.graph("tenant").addEdge("t", "u", 5);
+        registry.checkpoint();
+        registry.graph("tenant").addEdge("u", "t", 1);
+        registry.closeStorage();
+
+        GraphRegistry restored = new GraphRegistry(new DirectedGraph());
+        restored.openStorage(directory);
+        assertEquals(2, restored.size());
+        assertEquals(1, restored.graph(GraphRegistry.DEFAULT_GRAPH).getNodes().size());
+        assertEquals(Integer.valueOf(5), restored.graph("tenant").getShortestPath("t", "u"));
+        assertEquals(Integer.valueOf(1), restored.graph("tenant").getShortestPath("u", "t"));
+        restored.closeStorage();
+    }
+}
@@ -0,0 +1,68 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.randomGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SearchWorkspaceTest {
+
+    @Test
+    public void testNewGenerationHidesLabelsOfPreviousSearch() {
+        SearchWorkspace workspace = SearchWorkspace.acquire(10);
+        SearchWorkspace.Side forward = workspace.forward();
+        forward.label(3, 7, 2);
+        forward.settle(3);
+        forward.queue.insertOrDecrease(4, 9);
+
+        //same arrays are used again, cleared
+        workspace.restart();
+        assertSame(forward, workspace.forward());
+        assertEquals(ShortestPathAlgorithm.INFINITY, forward.distance(3));
+        assertEquals(GraphSnapshot.NO_NODE, forward.parent(3));
+        assertFalse(forward.isSettled(3));
+        assertTrue(forward.queue.isEmpty());
+        forward.label(3, 1, 0);
+        assertEquals(1, forward.distance(3));
+        workspace.release();
+    }
+
+    @Test
+    public void testReusedWorkspacesAnswerLikeFreshSearches() {
+        Random random = new Random(41);
+        GraphSnapshot graph = randomGraph(random, 800, 4).getSnapshot();
+        //cancelled searches leave labels and heap entries behind for the next search to ignore
+        for (int i = 0; i < 20; i++) {
+            try {
+                new BidirectionalDijkstra(graph, new QueryBudget(5, 0)).distance(0, 1 + i);
+                fail("Query limit exceeded expected");
+            } catch (QueryLimitExceededException expected) {
+                //search abandoned midway
+            }
+            try (ShortestPathAlgorithm cancelled = AlgorithmType.PRIORITY_QUEUE.create(graph, new QueryBudget(5, 0))) {
+                cancelled.execute(i);
+                fail("Query limit exceeded expected");
+            } catch (QueryLimitExceededException expected) {
+                //search abandoned midway
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            int source = random.nextInt(800);
+            int destination = random.nextInt(800);
+            int expected;
+            try (ShortestPathAlgorithm reference = AlgorithmType.LINEAR_SCAN.create(graph)) {
+                reference.execute(source);
+                expected = reference.getShortestDistance(destination);
+            }
+            assertEquals(expected, new BidirectionalDijkstra(graph).distance(source, destination));
+            assertEquals(expected, PathSearch.TARGETED.distance(graph, AlgorithmType.PRIORITY_QUEUE, source,
+                    destination));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.collibra.challenge.algorithm.AlgorithmEquivalenceTest.node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShortestPathCacheTest {
+
+    @Test
+    public void testRepeatedQueryIsServedFromCache() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.setPathSearch(PathSearch.TREE);
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addEdge("a", "b", 3);
+
+        assertEquals(Integer.valueOf(3), graph.getShortestPath("a", "b"));
+        assertEquals(Integer.valueOf(3), graph.getShortestPath("a", "b"));
+        assertEquals(1, graph.getCacheMissCount());
+        assertEquals(1, graph.getCacheHitCount());
+    }
+
+    @Test
+    public void testUnrelatedMutationKeepsTree() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.setPathSearch(PathSearch.TREE);
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addNode("c");
+        graph.addEdge("a", "b", 4);
+        graph.getShortestPath("a", "b");
+
+        //edge from unreachable node and longer parallel edge cant change distances from a
+        graph.addEdge("c", "a", 1);
+        graph.addEdge("a", "b", 6);
+        graph.addNode("d");
+        assertEquals(Integer.valueOf(4), graph.getShortestPath("a", "b"));
+        assertEquals(1, graph.getCacheHitCount());
+        assertEquals(0, graph.getCacheInvalidationCount());
+
+        //shorter edge changes the tree
+        graph.addEdge("a", "c", 1);
+        graph.addEdge("c", "b", 1);
+        assertEquals(Integer.valueOf(2), graph.getShortestPath("a", "b"));
+        assertEquals(1, graph.getCacheInvalidationCount());
+    }
+
+    @Test
+    public void testTreeIsCachedWhenSourceIsQueriedAgain() {
+        DirectedGraph graph = new DirectedGraph();
+        graph.setPathSearch(PathSearch.BIDIRECTIONAL);
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.addNode("c");
+        graph.addEdge("a", "b", 3);
+        graph.addEdge("b", "c", 3);
+
+        //first query is answered by point-to-point search, second one computes and caches the tree
+        assertEquals(Integer.valueOf(3), graph.getShortestPath("a", "b"));
+        assertEquals(Integer.valueOf(6), graph.getShortestPath("a", "c"));
+        assertEquals(Integer.valueOf(3), graph.getShortestPath("a", "b"));
+        assertEquals(2, graph.getCacheMissCount());
+        assertEquals(1, graph.getCacheHitCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedTree() {
+        ShortestPathCache cache = new ShortestPathCache(2, 100);
+        cache.put(new ShortestPathTree(0, new int[1], new int[1]), 0);
+        cache.put(new ShortestPathTree(1, new int[1], new int[1]), 0);
+        cache.get(0, 0);
+        cache.put(new ShortestPathTree(2, new int[1], new int[1]), 0);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(null != cache.get(0, 0));
+        assertTrue(null == cache.get(1, 0));
+    }
+
+    @Test
+    public void testCachedResultsMatchFreshSearchUnderRandomMutations() {
+        Random random = new Random(11);
+        int nodeCount = 40;
+        DirectedGraph graph = AlgorithmEquivalenceTest.randomGraph(random, nodeCount, 2);
+        for (int step = 0; step < 400; step++) {
+            String source = node(random.nextInt(nodeCount));
+            String destination = node(random.nextInt(nodeCount));
+            switch (random.nextInt(4)) {
+                case 0:
+                    graph.addEdge(source, destination, random.nextInt(50));
+                    break;
+                case 1:
+                    graph.removeEdge(source, destination);
+                    break;
+                case 2:
+                    graph.removeNode(source);
+                    break;
+                default:
+                    graph.addNode(source);
+            }
+            for (int q = 0; q < 5; q++) {
+                String from = node(random.nextInt(4));
+                String to = node(random.nextInt(nodeCount));
+                assertEquals("step " + step + " " + from + " -> " + to, expected(graph, from, to), graph.getShortestPath(from, to));
+            }
+        }
+        assertTrue(graph.getCacheHitCount() > 0);
+    }
+
+    private static Integer expected(DirectedGraph graph, String from, String to) {
+        GraphSnapshot snapshot = graph.getSnapshot();
+        int source = snapshot.nodeId(from);
+        int destination = snapshot.nodeId(to);
+        if (source == GraphSnapshot.NO_NODE || destination == GraphSnapshot.NO_NODE) {
+            return 0;
+        }
+        ShortestPathAlgorithm algorithm = AlgorithmType.LINEAR_SCAN.create(snapshot);
+        algorithm.execute(source);
+        return algorithm.getShortestDistance(destination);
+    }
+}
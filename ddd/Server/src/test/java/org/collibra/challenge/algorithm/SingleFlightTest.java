@@ -0,0 +1,170 @@
+package org.collibra.challenge.algorithm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    @Test
+    public void testConcurrentCallersShareOneComputation() throws Exception {
+        SingleFlight<String, Object> flights = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Object>> answers = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                answers.add(callers.submit(() -> flights.execute("a", () -> {
+                    computations.incrementAndGet();
+                    await(release);
+                    return result;
+                })));
+            }
+            //computation is held until every other caller has attached to it
+            for (int i = 0; i < 500 && flights.getSharedCount() < CALLERS - 1; i++) {
+                Thread.sleep(10);
+            }
+            assertNull(flights.join("b"));
+            release.countDown();
+            for (Future<Object> answer : answers) {
+                assertSame(result, answer.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, computations.get());
+        assertEquals(CALLERS - 1, flights.getSharedCount());
+
+        //finished computation is not kept
+        assertEquals("again", flights.execute("a", () -> "again"));
+        assertNull(flights.join("a"));
+    }
+
+    @Test
+    public void testFailureIsRethrownToWaitingCallers() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> {
+            try {
+                flights.execute("a", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new IllegalStateException("failed");
+                });
+            } catch (IllegalStateException expected) {
+                //leader gets its own exception
+            }
+        });
+        leader.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        try {
+            flights.join("a");
+            fail("Exception of the computation expected");
+        } catch (IllegalStateException expected) {
+            assertEquals("failed", expected.getMessage());
+        }
+        leader.join();
+        releaser.join();
+    }
+
+    @Test
+    public void testLimitOfRunningCallerIsNotImposedOnWaitingCallers() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> {
+            try {
+                flights.execute("a", () -> {
+                    started.countDown();
+                    await(release);
+                    throw new QueryLimitExceededException("limit of leader");
+                }, new QueryBudget(1, 0));
+            } catch (QueryLimitExceededException expected) {
+                //leader gets its own exception
+            }
+        });
+        leader.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> waiting = callers.submit(() -> flights.execute("a", () -> "own", QueryBudget.UNLIMITED));
+            Future<String> joined = callers.submit(() -> flights.join("a", QueryBudget.UNLIMITED));
+            for (int i = 0; i < 500 && flights.getSharedCount() < 2; i++) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            //waiting caller computes again under its own budget, joining one falls back to its own search
+            assertEquals("own", waiting.get(10, TimeUnit.SECONDS));
+            assertNull(joined.get(10, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+        leader.join();
+    }
+
+    @Test
+    public void testWaitingCallerStopsAtItsOwnDeadline() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> flights.execute("a", () -> {
+            started.countDown();
+            await(release);
+            return "leader";
+        }));
+        leader.start();
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            try {
+                flights.join("a", new QueryBudget(0, 50));
+                fail("Query limit exception expected");
+            } catch (QueryLimitExceededException expected) {
+                //leader is still running
+            }
+            try {
+                flights.execute("a", () -> "own", new QueryBudget(0, 50));
+                fail("Query limit exception expected");
+            } catch (QueryLimitExceededException expected) {
+                //leader is still running
+            }
+        } finally {
+            release.countDown();
+            leader.join();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,15 +1,18 @@
 package org.collibra.challenge.client;
 
 import org.collibra.challenge.server.Server;
-import org.collibra.challenge.server.Session;
+import org.collibra.challenge.server.ServerOptions;
 import org.junit.Test;
 
 import java.io.BufferedReader;
-import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ClientTest {
 
@@ -18,22 +21,34 @@ public class ClientTest {
 
 
     @Test
-    public void testClientConnected() {
+    public void testClientConnected() throws Exception {
 
         // Pripremi testni env.
-        Server server = new Server();
-
-
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Server server = new Server(new ServerOptions().port(port));
+        Thread thread = new Thread(server::start);
+        thread.setDaemon(true);
+        thread.start();
+        assertTrue(server.awaitListening(10, TimeUnit.SECONDS));
+
+        try (Socket socket = new Socket("127.0.0.1", port)) {
             // Executaj clienta
-//        Client client = new Client(new Socket());
-
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out = new PrintWriter(socket.getOutputStream(), true);
 
-
-            // Assertaj da je server dobio poruku od klijenta
-//        assertEquals("", server.getLastMessage);
             // Assertaj da je client dobio poruku od servera
-//        assertEquals("", client.getLaseServerMessage());
-
+            assertTrue(in.readLine().startsWith("HI, I'M "));
+            out.println("HI, I'M CLIENT");
+            // Assertaj da je server dobio poruku od klijenta
+            assertEquals("HI, CLIENT", in.readLine());
+            out.println("BYE MATE!");
+            assertTrue(in.readLine().startsWith("BYE CLIENT, WE SPOKE FOR "));
+        } finally {
+            server.stop();
+        }
     }
 
 }
@@ -0,0 +1,103 @@
+package org.collibra.challenge.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        assertWithinError(50000000, histogram.getValueAtPercentile(50));
+        assertWithinError(99000000, histogram.getValueAtPercentile(99));
+        assertWithinError(99900000, histogram.getValueAtPercentile(99.9));
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+        assertEquals(50000500, histogram.getMean(), 1);
+    }
+
+    @Test
+    public void testSmallAndExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(10));
+        assertEquals(3, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBucketsCoverValues() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testConcurrentRecordingAndAdd() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    histogram.record(i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, histogram.getCount());
+
+        LatencyHistogram total = new LatencyHistogram();
+        total.record(1000000);
+        total.add(histogram);
+        assertEquals(400001, total.getCount());
+        assertEquals(1000000, total.getMax());
+        assertWithinError(50000, total.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testCoordinatedOmissionCorrection() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        //one stall of 100 intervals hides 99 requests which would have waited 99000, 98000 ... 1000 ns
+        histogram.record(100000);
+        LatencyHistogram corrected = histogram.copyCorrectedForCoordinatedOmission(1000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(199, corrected.getCount());
+        assertWithinError(1000, histogram.getValueAtPercentile(99));
+        assertWithinError(51000, corrected.getValueAtPercentile(75));
+        assertEquals(100000, corrected.getMax());
+        assertEquals(histogram.getValueAtPercentile(50), histogram.copyCorrectedForCoordinatedOmission(0)
+                .getValueAtPercentile(50));
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected * 0.035);
+    }
+}
@@ -0,0 +1,112 @@
+package org.collibra.challenge.server;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checking that {@link Command} recognizes exactly the same commands and arguments as the original regex and
+ * {@code String.split} based validation, which is kept here as reference
+ */
+public class CommandTest {
+
+    private static final String[] FRAGMENTS = {"ADD", "NODE", "REMOVE", "EDGE", "SHORTEST", "PATH", "CLOSER", "THAN",
+            "ADD NODE", "ADD EDGE", "CLOSER THAN", "SHORTEST PATH", "REMOVE EDGE", " ", " ", " ", "a", "b", "7", "-3",
+            "+5", "12x", "2147483648", "\t", "\r", "\n", " ", "\u0085", "[", "]", "٣"};
+
+    private final Command command = new Command();
+
+    @Test
+    public void testKnownLines() {
+        List<String> lines = Arrays.asList("ADD NODE a", "ADD NODE a ", "ADD NODE a  ", " ADD NODE a", "ADD  NODE a",
+                "ADD NODES a", "ADD NODE", "ADD NODE ", "ADD EDGE a b 5", "ADD EDGE a b -5", "ADD EDGE a b +5",
+                "ADD EDGE a b 5x", "ADD EDGE a  5", "ADD EDGE a b 2147483648", "REMOVE EDGE a b", "REMOVE NODE a",
+                "SHORTEST PATH a b", "CLOSER THAN 5 a", "CLOSER THAN a 5", "CLOSER THAN ٣ a", "X ADD NODE a",
+                "ADD NODE a\tb", "ADD NODE a\rb", "ADD NODE a ", "", " ", "   ", "HELLO", "ADD NODE a b");
+        for (String line : lines) {
+            assertEquals(line, reference(line), parsed(line));
+        }
+    }
+
+    @Test
+    public void testRandomLines() {
+        Random random = new Random(3);
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder line = new StringBuilder();
+            int fragments = random.nextInt(8);
+            for (int f = 0; f < fragments; f++) {
+                line.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertEquals(line.toString(), reference(line.toString()), parsed(line.toString()));
+        }
+    }
+
+    @Test
+    public void testClosingMessageAndUnknownResponses() {
+        assertEquals("", MessagesFromClient.processResponse("ADD NODE BYE MATE!"));
+        assertEquals("", MessagesFromClient.processResponse(null));
+        assertEquals("SORRY, I DIDN'T UNDERSTAND THAT", MessagesFromClient.processResponse("ADD NODE"));
+        assertEquals("SORRY, I DIDN'T UNDERSTAND THAT", MessagesFromClient.processResponse("ADD EDGE a b x"));
+    }
+
+    private String parsed(String line) {
+        try {
+            switch (command.parse(line)) {
+                case ADD_NODE:
+                case REMOVE_NODE:
+                    return command.type() + "|" + command.argument(2);
+                case ADD_EDGE:
+                    return command.type() + "|" + command.argument(2) + "|" + command.argument(3) + "|" + command.intArgument(4);
+                case REMOVE_EDGE:
+                case SHORTEST_PATH:
+                    return command.type() + "|" + command.argument(2) + "|" + command.argument(3);
+                case CLOSER_THAN:
+                    return command.type() + "|" + command.intArgument(2) + "|" + command.argument(3);
+                default:
+                    return "UNKNOWN";
+            }
+        } catch (NumberFormatException e) {
+            return "UNKNOWN";
+        }
+    }
+
+    /**
+     * Original validation of MessagesFromClient.processResponse
+     */
+    private static String reference(String inputMessage) {
+        try {
+            String inputValidation = ".*ADD NODE.*|.*REMOVE NODE.*|.*ADD EDGE.*|.*REMOVE EDGE.*|.*SHORTEST PATH.*|.*CLOSER THAN.*";
+            if (!Pattern.matches(inputValidation, inputMessage)) {
+                return "UNKNOWN";
+            }
+            String[] splitInputWord = inputMessage.split(" ");
+            int splitInputWordLength = splitInputWord.length;
+            if (inputMessage.startsWith("ADD NODE") && (splitInputWordLength == 3)) {
+                return "ADD_NODE|" + splitInputWord[2];
+            }
+            if (inputMessage.startsWith("REMOVE NODE") && (splitInputWordLength == 3)) {
+                return "REMOVE_NODE|" + splitInputWord[2];
+            }
+            if (inputMessage.startsWith("ADD EDGE") && (splitInputWordLength == 5)) {
+                return "ADD_EDGE|" + splitInputWord[2] + "|" + splitInputWord[3] + "|" + Integer.parseInt(splitInputWord[4]);
+            }
+            if (inputMessage.startsWith("REMOVE EDGE") && (splitInputWordLength == 4)) {
+                return "REMOVE_EDGE|" + splitInputWord[2] + "|" + splitInputWord[3];
+            }
+            if (inputMessage.startsWith("SHORTEST PATH") && (splitInputWordLength == 4)) {
+                return "SHORTEST_PATH|" + splitInputWord[2] + "|" + splitInputWord[3];
+            }
+            if (inputMessage.startsWith("CLOSER THAN") && (splitInputWordLength == 4)) {
+                return "CLOSER_THAN|" + Integer.parseInt(splitInputWord[2]) + "|" + splitInputWord[3];
+            }
+        } catch (Exception e) {
+            return "UNKNOWN";
+        }
+        return "UNKNOWN";
+    }
+}
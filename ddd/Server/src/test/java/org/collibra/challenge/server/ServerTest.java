@@ -0,0 +1,274 @@
+package org.collibra.challenge.server;
+
+import org.collibra.challenge.algorithm.DirectedGraph;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Running the same conversation against every server mode
+ */
+public class ServerTest {
+
+    private Server server;
+
+    @After
+    public void stopServer() {
+        if (null != server) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testThreadPerConnectionMode() throws Exception {
+        verifyConversation(ServerMode.THREAD_PER_CONNECTION, "tpc");
+    }
+
+    @Test
+    public void testVirtualThreadsMode() throws Exception {
+        if (!ServerMode.VIRTUAL_THREADS.isAvailable()) {
+            //refused instead of silently running on pooled threads
+            try {
+                new ServerOptions().mode(ServerMode.VIRTUAL_THREADS);
+                fail("Virtual threads mode should need Java 21");
+            } catch (IllegalArgumentException expected) {
+                return;
+            }
+        }
+        verifyConversation(ServerMode.VIRTUAL_THREADS, "vt");
+    }
+
+    @Test
+    public void testNioMode() throws Exception {
+        verifyConversation(ServerMode.NIO, "nio");
+    }
+
+    private void verifyConversation(ServerMode mode, String prefix) throws Exception {
+        ServerOptions options = new ServerOptions().mode(mode).ioThreads(2);
+        server = startServer(options);
+        try (Socket socket = connect(options.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+
+            assertTrue(in.readLine().startsWith("HI, I'M "));
+            out.println("HI, I'M TESTER");
+            assertEquals("HI, TESTER", in.readLine());
+
+            out.println("ADD NODE " + prefix + "-a");
+            assertEquals("NODE ADDED", in.readLine());
+            out.println("ADD NODE " + prefix + "-b");
+            assertEquals("NODE ADDED", in.readLine());
+            out.println("ADD EDGE " + prefix + "-a " + prefix + "-b 7");
+            assertEquals("EDGE ADDED", in.readLine());
+            out.println("ADD EDGE " + prefix + "-b " + prefix + "-a -7");
+            assertEquals("ERROR: NEGATIVE WEIGHT", in.readLine());
+            out.println("SHORTEST PATH " + prefix + "-a " + prefix + "-b");
+            assertEquals("7", in.readLine());
+            out.println("CLOSER THAN 8 " + prefix + "-a");
+            assertEquals(prefix + "-b", in.readLine());
+            out.println("CLOSER THAN 7 " + prefix + "-a");
+            assertEquals("", in.readLine());
+            out.println("DISTANCES FROM " + prefix + "-a," + prefix + "-b TO " + prefix + "-b," + prefix + "-a");
+            assertEquals("7,0;0,2147483647", in.readLine());
+            out.println("DISTANCES FROM " + prefix + "-a TO " + prefix + "-c");
+            assertEquals("ERROR: NODE NOT FOUND", in.readLine());
+            out.println("DISTANCES FROM " + prefix + "-a INTO " + prefix + "-b");
+            assertEquals("SORRY, I DIDN'T UNDERSTAND THAT", in.readLine());
+            out.println("IMPORT EDGES edges.csv");
+            assertEquals("ERROR: IMPORT DISABLED", in.readLine());
+            out.println("WHAT?");
+            assertEquals("SORRY, I DIDN'T UNDERSTAND THAT", in.readLine());
+
+            //several lines arriving in one packet, with mixed line terminators
+            out.print("ADD NODE " + prefix + "-a\r\nREMOVE NODE " + prefix + "-b\rREMOVE NODE " + prefix + "-b\n");
+            out.flush();
+            assertEquals("ERROR: NODE ALREADY EXISTS", in.readLine());
+            assertEquals("NODE REMOVED", in.readLine());
+            assertEquals("ERROR: NODE NOT FOUND", in.readLine());
+
+            //pipelined commands are all answered in order
+            StringBuilder pipeline = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                pipeline.append("ADD NODE ").append(prefix).append("-p").append(i).append('\n');
+            }
+            out.print(pipeline);
+            out.flush();
+            for (int i = 0; i < 200; i++) {
+                assertEquals("NODE ADDED", in.readLine());
+            }
+
+            out.print("BEGIN BATCH\nADD NODE " + prefix + "-c\nADD NODE " + prefix + "-d\nADD EDGE " + prefix + "-c "
+                    + prefix + "-d 2\nSHORTEST PATH " + prefix + "-c " + prefix + "-d\nEND BATCH\n");
+            out.flush();
+            assertEquals("BATCH STARTED", in.readLine());
+            assertEquals("NODE ADDED", in.readLine());
+            assertEquals("NODE ADDED", in.readLine());
+            assertEquals("EDGE ADDED", in.readLine());
+            assertEquals("ERROR: ONLY ADD AND REMOVE COMMANDS ALLOWED IN BATCH", in.readLine());
+            assertEquals("BATCH APPLIED", in.readLine());
+            out.println("SHORTEST PATH " + prefix + "-c " + prefix + "-d");
+            assertEquals("2", in.readLine());
+
+            //other graph doesnt see nodes of the default graph
+            out.println("USE GRAPH " + prefix + "-tenant");
+            assertEquals("GRAPH SELECTED", in.readLine());
+            out.println("SHORTEST PATH " + prefix + "-c " + prefix + "-d");
+            assertEquals("ERROR: NODE NOT FOUND", in.readLine());
+            out.println("USE GRAPH ../" + prefix);
+            assertEquals("ERROR: INVALID GRAPH NAME", in.readLine());
+            out.println("USE GRAPH default");
+            assertEquals("GRAPH SELECTED", in.readLine());
+
+            out.println("STATS");
+            String stats = in.readLine();
+            assertTrue(stats, stats.matches("STATS sessions=[1-9]\\d* lock_wait\\.count=\\d+ .* graphs=([2-9]|[1-9]\\d+) gc_pause\\.count=\\d+ gc_pause\\.ms=\\d+ heap_mb=\\d+ .*"));
+            assertTrue(stats, stats.matches(".* add_node\\.count=([1-9]\\d\\d+) add_node\\.p50_ns=\\d+ .* add_node\\.errors=[1-9]\\d* .*"));
+
+            out.println("BYE MATE!");
+            assertTrue(in.readLine().matches("BYE TESTER, WE SPOKE FOR \\d+ MS"));
+            assertNull(in.readLine());
+        }
+    }
+
+    @Test
+    public void testConnectionsOverSessionLimitAreRejected() throws Exception {
+        ServerOptions options = new ServerOptions().maxSessions(1).maxQueries(4);
+        server = startServer(options);
+        try (Socket first = connect(options.getPort());
+             BufferedReader firstIn = new BufferedReader(new InputStreamReader(first.getInputStream()))) {
+            assertTrue(firstIn.readLine().startsWith("HI, I'M "));
+            try (Socket second = connect(options.getPort());
+                 BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream()))) {
+                assertEquals("ERROR: TOO MANY SESSIONS", secondIn.readLine());
+                assertNull(secondIn.readLine());
+            }
+        }
+        //slot of the closed session is free again
+        for (int attempt = 0; ; attempt++) {
+            try (Socket third = connect(options.getPort());
+                 BufferedReader thirdIn = new BufferedReader(new InputStreamReader(third.getInputStream()))) {
+                String greeting = thirdIn.readLine();
+                if (greeting.startsWith("HI, I'M ")) {
+                    break;
+                }
+                assertTrue(greeting, attempt < 50);
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchOverLimitIsDiscarded() throws Exception {
+        ServerOptions options = new ServerOptions().maxBatch(2);
+        server = startServer(options);
+        try (Socket socket = connect(options.getPort());
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+            assertTrue(in.readLine().startsWith("HI, I'M "));
+            out.println("HI, I'M BATCHER");
+            assertEquals("HI, BATCHER", in.readLine());
+
+            out.print("BEGIN BATCH\nADD NODE lb-a\nADD NODE lb-b\nADD NODE lb-c\nEND BATCH\n");
+            out.flush();
+            assertEquals("BATCH STARTED", in.readLine());
+            assertEquals("ERROR: BATCH TOO LARGE", in.readLine());
+            //nothing of the discarded batch was applied
+            out.println("SHORTEST PATH lb-a lb-b");
+            assertEquals("ERROR: NODE NOT FOUND", in.readLine());
+
+            out.print("BEGIN BATCH\nADD NODE lb-a\nADD NODE lb-b\nEND BATCH\n");
+            out.flush();
+            assertEquals("BATCH STARTED", in.readLine());
+            assertEquals("NODE ADDED", in.readLine());
+            assertEquals("NODE ADDED", in.readLine());
+            assertEquals("BATCH APPLIED", in.readLine());
+        }
+    }
+
+    @Test
+    public void testNioCommandWaitingForGraphDoesntStallOtherConnections() throws Exception {
+        ServerOptions options = new ServerOptions().mode(ServerMode.NIO).ioThreads(1).workers(2);
+        server = startServer(options);
+        CountDownLatch batchStarted = new CountDownLatch(1);
+        CountDownLatch batchEnd = new CountDownLatch(1);
+        //writers of the graph wait until this batch ends
+        Thread batch = new Thread(() -> DirectedGraph.getInstance().batch(() -> {
+            batchStarted.countDown();
+            try {
+                batchEnd.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        batch.start();
+        assertTrue(batchStarted.await(10, TimeUnit.SECONDS));
+        try (Socket writer = connect(options.getPort());
+             BufferedReader writerIn = new BufferedReader(new InputStreamReader(writer.getInputStream()));
+             PrintWriter writerOut = new PrintWriter(writer.getOutputStream(), true);
+             Socket reader = connect(options.getPort());
+             BufferedReader readerIn = new BufferedReader(new InputStreamReader(reader.getInputStream()));
+             PrintWriter readerOut = new PrintWriter(reader.getOutputStream(), true)) {
+            writer.setSoTimeout(10000);
+            reader.setSoTimeout(10000);
+            assertTrue(writerIn.readLine().startsWith("HI, I'M "));
+            assertTrue(readerIn.readLine().startsWith("HI, I'M "));
+            writerOut.print("HI, I'M WRITER\nADD NODE nw-a\nADD NODE nw-b\n");
+            writerOut.flush();
+            assertEquals("HI, WRITER", writerIn.readLine());
+
+            //both connections share the only I/O thread, which keeps serving while the writer waits
+            readerOut.println("HI, I'M READER");
+            assertEquals("HI, READER", readerIn.readLine());
+            readerOut.println("SHORTEST PATH nw-a nw-b");
+            assertEquals("ERROR: NODE NOT FOUND", readerIn.readLine());
+
+            batchEnd.countDown();
+            assertEquals("NODE ADDED", writerIn.readLine());
+            assertEquals("NODE ADDED", writerIn.readLine());
+        } finally {
+            batchEnd.countDown();
+            batch.join();
+        }
+    }
+
+    /**
+     * Starting server on a free port in background, chosen port is set to the options
+     */
+    static Server startServer(ServerOptions options) throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            options.port(probe.getLocalPort());
+        }
+        Server server = new Server(options);
+        Thread thread = new Thread(server::start);
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    static Socket connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Socket("127.0.0.1", port);
+            } catch (ConnectException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.collibra.challenge.server;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Keeping many idle sessions open at once and reporting threads and heap needed by every server mode.
+ * Soak test is skipped unless started with {@code -Dsoak=true}, number of sessions is set by
+ * {@code -Dsoak.connections} (default 10000) and needs twice as many open file descriptors.
+ */
+public class SessionSoakTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("soak.connections", 10000);
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("soak"));
+        for (ServerMode mode : ServerMode.values()) {
+            if (mode.isAvailable()) {
+                soak(mode);
+            } else {
+                System.out.printf("%s: not available on Java %d%n", mode, Runtime.version().feature());
+            }
+        }
+    }
+
+    private void soak(ServerMode mode) throws Exception {
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        ServerOptions options = new ServerOptions().mode(mode);
+        Server server = ServerTest.startServer(options);
+        List<Socket> sockets = new ArrayList<>(CONNECTIONS);
+        try {
+            long started = System.nanoTime();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                Socket socket = ServerTest.connect(options.getPort());
+                sockets.add(socket);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                in.readLine();
+                out.println("HI, I'M SOAK" + i);
+                assertEquals("HI, SOAK" + i, in.readLine());
+            }
+            long elapsed = (System.nanoTime() - started) / 1_000_000;
+            System.out.printf("%s: %d sessions open in %d ms, threads +%d, heap +%d MB%n", mode, CONNECTIONS, elapsed,
+                    ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore,
+                    (usedHeap() - heapBefore) >> 20);
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.stop();
+        }
+        awaitThreadCount(threadsBefore);
+    }
+
+    /**
+     * Sessions notice closed sockets asynchronously, waiting for their threads so modes dont skew each other
+     */
+    private static void awaitThreadCount(int threads) throws InterruptedException {
+        for (int i = 0; i < 300 && ManagementFactory.getThreadMXBean().getThreadCount() > threads; i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,114 @@
+package org.collibra.challenge.testclient;
+
+import java.util.Random;
+
+/**
+ * Weighted mix of commands sent by {@link LoadGenerator}, given as comma separated {@code command=weight} pairs,
+ * e.g. {@code shortest-path=60,closer-than=10,add-edge=20,remove-edge=4,add-node=5,remove-node=1}. Commands use
+ * random nodes of the seeded graph, so some mutations and queries hit missing nodes and are answered with errors.
+ * {@code distances} asks for a matrix from {@value #MATRIX_SOURCES} to {@value #MATRIX_DESTINATIONS} nodes and is
+ * not part of the default mix.
+ */
+public final class CommandMix {
+
+    static final String DEFAULT = "shortest-path=60,closer-than=10,add-edge=20,remove-edge=4,add-node=5,remove-node=1";
+
+    private static final String[] COMMANDS = {"add-node", "remove-node", "add-edge", "remove-edge", "shortest-path",
+            "closer-than", "distances"};
+    private static final int MAX_WEIGHT = 100;
+    static final int MATRIX_SOURCES = 2;
+    static final int MATRIX_DESTINATIONS = 8;
+
+    private final int[] cumulativeWeights = new int[COMMANDS.length];
+
+    private CommandMix() { }
+
+    /**
+     * @param mix comma separated {@code command=weight} pairs, commands not listed are not sent
+     * @return parsed mix
+     * @throws IllegalArgumentException if a command is unknown or no command has positive weight
+     */
+    public static CommandMix parse(String mix) {
+        int[] weights = new int[COMMANDS.length];
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split("=");
+            int command = indexOf(pair[0]);
+            if (pair.length != 2 || command < 0) {
+                throw new IllegalArgumentException("Invalid command weight: " + entry);
+            }
+            weights[command] = Integer.parseInt(pair[1]);
+        }
+        CommandMix commandMix = new CommandMix();
+        int total = 0;
+        for (int i = 0; i < COMMANDS.length; i++) {
+            total += Math.max(0, weights[i]);
+            commandMix.cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("No command to send: " + mix);
+        }
+        return commandMix;
+    }
+
+    /**
+     * @param random random generator of the connection
+     * @param nodes  number of nodes commands choose from
+     * @return next command line
+     */
+    String next(Random random, int nodes) {
+        int pick = random.nextInt(cumulativeWeights[COMMANDS.length - 1]);
+        int command = 0;
+        while (pick >= cumulativeWeights[command]) {
+            command++;
+        }
+        switch (command) {
+            case 0:
+                return "ADD NODE " + node(random.nextInt(nodes));
+            case 1:
+                return "REMOVE NODE " + node(random.nextInt(nodes));
+            case 2:
+                return "ADD EDGE " + node(random.nextInt(nodes)) + " " + node(random.nextInt(nodes)) + " "
+                        + weight(random);
+            case 3:
+                return "REMOVE EDGE " + node(random.nextInt(nodes)) + " " + node(random.nextInt(nodes));
+            case 4:
+                return "SHORTEST PATH " + node(random.nextInt(nodes)) + " " + node(random.nextInt(nodes));
+            case 5:
+                return "CLOSER THAN " + (weight(random) * 2) + " " + node(random.nextInt(nodes));
+            default:
+                return "DISTANCES FROM " + nodeList(random, nodes, MATRIX_SOURCES) + " TO "
+                        + nodeList(random, nodes, MATRIX_DESTINATIONS);
+        }
+    }
+
+    private static String nodeList(Random random, int nodes, int count) {
+        StringBuilder list = new StringBuilder(node(random.nextInt(nodes)));
+        for (int i = 1; i < count; i++) {
+            list.append(',').append(node(random.nextInt(nodes)));
+        }
+        return list.toString();
+    }
+
+    /**
+     * @return name of the node with given index
+     */
+    static String node(int index) {
+        return "load-" + index;
+    }
+
+    /**
+     * @return random edge weight
+     */
+    static int weight(Random random) {
+        return 1 + random.nextInt(MAX_WEIGHT);
+    }
+
+    private static int indexOf(String command) {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equals(command.trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,241 @@
+package org.collibra.challenge.testclient;
+
+import org.collibra.challenge.metrics.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless load generator: seeds the graph of a running Server, opens the configured number of connections,
+ * says HI on each of them and then every connection sends commands of the {@link CommandMix} from own thread,
+ * either in a closed loop or on a fixed schedule (see {@link LoadMode}). Commands sent during warmup are not
+ * measured. Run e.g. with {@code --connections=64 --mode=open --rate=20000 --duration=60}, see {@link LoadOptions}.
+ */
+public final class LoadGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class.getName());
+    private static final int SEED_EDGES_PER_NODE = 4;
+
+    private final LoadOptions options;
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @param args options, see {@link LoadOptions}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.out.println(new LoadGenerator(LoadOptions.parse(args)).run());
+    }
+
+    /**
+     * Running the load for warmup and measured duration
+     *
+     * @return throughput and latencies measured
+     */
+    public LoadReport run() throws IOException, InterruptedException {
+        seedGraph();
+        List<Connection> connections = new ArrayList<>(options.getConnections());
+        try {
+            for (int i = 0; i < options.getConnections(); i++) {
+                connections.add(new Connection(i));
+            }
+            long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getWarmup());
+            long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(options.getDuration());
+            List<Thread> threads = new ArrayList<>(connections.size());
+            for (Connection connection : connections) {
+                Thread thread = new Thread(() -> connection.sendCommands(measureStart, measureEnd),
+                        "load-" + connection.index);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return report(connections, measureEnd - measureStart);
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Adding all nodes and some random edges in one batch, nodes left by a previous run are reported as errors
+     * and kept
+     */
+    private void seedGraph() throws IOException {
+        Random random = new Random(options.getSeed());
+        try (Connection connection = new Connection(-1)) {
+            int nodes = options.getNodes();
+            connection.out.println("BEGIN BATCH");
+            for (int node = 0; node < nodes; node++) {
+                connection.out.println("ADD NODE " + CommandMix.node(node));
+            }
+            for (int edge = 0; edge < nodes * SEED_EDGES_PER_NODE; edge++) {
+                connection.out.println("ADD EDGE " + CommandMix.node(random.nextInt(nodes)) + " "
+                        + CommandMix.node(random.nextInt(nodes)) + " " + CommandMix.weight(random));
+            }
+            connection.out.println("END BATCH");
+            connection.out.flush();
+            //BATCH STARTED, one response per command and BATCH APPLIED
+            for (int line = 0; line < nodes * (SEED_EDGES_PER_NODE + 1) + 2; line++) {
+                connection.readResponse();
+            }
+        }
+    }
+
+    private LoadReport report(List<Connection> connections, long measuredNanos) {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        long errors = 0;
+        for (Connection connection : connections) {
+            latency.add(connection.latency);
+            serviceTime.add(connection.serviceTime);
+            errors += connection.errors.sum();
+        }
+        boolean corrected = options.getMode() == LoadMode.OPEN || options.getRate() > 0;
+        if (options.getMode() == LoadMode.CLOSED && corrected) {
+            latency = latency.copyCorrectedForCoordinatedOmission(interval());
+        }
+        return new LoadReport(options.getMode(), connections.size(), measuredNanos / 1e9, errors, latency,
+                serviceTime, corrected);
+    }
+
+    /**
+     * @return nanoseconds between two commands of one connection at the configured rate, 0 without a rate
+     */
+    private long interval() {
+        return options.getRate() == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * options.getConnections() / options.getRate();
+    }
+
+    /**
+     * One Client connection with its own random commands and measurements
+     */
+    private final class Connection implements Closeable {
+
+        private final int index;
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+        private final Random random;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private Connection(int index) throws IOException {
+            this.index = index;
+            this.socket = new Socket(options.getHost(), options.getPort());
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())));
+            this.random = new Random(options.getSeed() + index);
+            //Server greets with session key, Client introduces itself
+            readResponse();
+            out.println("HI, I'M LOAD-" + index);
+            out.flush();
+            readResponse();
+        }
+
+        private void sendCommands(long measureStart, long measureEnd) {
+            try {
+                if (options.getMode() == LoadMode.OPEN) {
+                    sendOnSchedule(measureStart, measureEnd);
+                } else {
+                    sendInLoop(measureStart, measureEnd);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Connection " + index + " failed", e);
+            }
+        }
+
+        /**
+         * Next command is sent once the response to the previous one came and, with a rate, not before the
+         * interval since the previous send elapsed
+         */
+        private void sendInLoop(long measureStart, long measureEnd) throws IOException {
+            long interval = interval();
+            long next = System.nanoTime();
+            while (true) {
+                long now;
+                while ((now = System.nanoTime()) < next) {
+                    LockSupport.parkNanos(next - now);
+                }
+                if (now >= measureEnd) {
+                    return;
+                }
+                send(now, now, measureStart);
+                next = now + interval;
+            }
+        }
+
+        /**
+         * Every connection sends its share of the rate at fixed intervals, connections are shifted against each
+         * other so that commands are spread evenly. A command is sent late if the previous response came late,
+         * but its latency is still measured from the time it was due.
+         */
+        private void sendOnSchedule(long measureStart, long measureEnd) throws IOException {
+            double interval = (double) TimeUnit.SECONDS.toNanos(1) * options.getConnections() / options.getRate();
+            long start = System.nanoTime() + (long) (interval * index / options.getConnections());
+            for (long command = 0; ; command++) {
+                long due = start + (long) (command * interval);
+                if (due >= measureEnd) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+                send(due, now, measureStart);
+            }
+        }
+
+        private void send(long due, long sent, long measureStart) throws IOException {
+            out.println(options.getMix().next(random, options.getNodes()));
+            out.flush();
+            String response = readResponse();
+            long received = System.nanoTime();
+            if (due >= measureStart) {
+                latency.record(received - due);
+                serviceTime.record(received - sent);
+                if (response.startsWith("ERROR") || response.startsWith("SORRY")) {
+                    errors.increment();
+                }
+            }
+        }
+
+        private String readResponse() throws IOException {
+            String response = in.readLine();
+            if (null == response) {
+                throw new EOFException("Server closed connection");
+            }
+            return response;
+        }
+
+        @Override
+        public void close() {
+            out.println("BYE MATE!");
+            out.flush();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error closing connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.collibra.challenge.testclient;
+
+/**
+ * How {@link LoadGenerator} connections send their commands
+ */
+public enum LoadMode {
+
+    /**
+     * Every connection sends next command as soon as it got the response to the previous one, load follows
+     * the speed of the Server. With a rate every connection waits its share of the rate between two sends, so
+     * latency can be corrected for commands a slow response held back; without one latency is uncorrected.
+     */
+    CLOSED,
+    /**
+     * Connections send commands on a fixed schedule regardless of the response times, latency is measured from
+     * the time a command was due, so a stalled Server shows in the latency of every command queued behind it
+     */
+    OPEN
+}
@@ -0,0 +1,189 @@
+package org.collibra.challenge.testclient;
+
+/**
+ * Options of the {@link LoadGenerator} given on command line as {@code --name=value}, e.g.
+ * {@code --port=50000 --connections=64 --duration=60 --mode=open --rate=20000 --mix=shortest-path=80,add-edge=20}
+ */
+public final class LoadOptions {
+
+    private String host = "127.0.0.1";
+    private int port = 50000;
+    private int connections = 16;
+    private int warmup = 5;
+    private int duration = 30;
+    private LoadMode mode = LoadMode.CLOSED;
+    private int rate;
+    private int nodes = 1000;
+    private CommandMix mix = CommandMix.parse(CommandMix.DEFAULT);
+    private long seed = 42;
+
+    /**
+     * @param args command line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException if option is unknown or its value is invalid
+     */
+    public static LoadOptions parse(String... args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "host":
+                    options.host(value);
+                    break;
+                case "port":
+                    options.port(Integer.parseInt(value));
+                    break;
+                case "connections":
+                    options.connections(Integer.parseInt(value));
+                    break;
+                case "warmup":
+                    options.warmup(Integer.parseInt(value));
+                    break;
+                case "duration":
+                    options.duration(Integer.parseInt(value));
+                    break;
+                case "mode":
+                    options.mode(LoadMode.valueOf(value.toUpperCase()));
+                    break;
+                case "rate":
+                    options.rate(Integer.parseInt(value));
+                    break;
+                case "nodes":
+                    options.nodes(Integer.parseInt(value));
+                    break;
+                case "mix":
+                    options.mix(CommandMix.parse(value));
+                    break;
+                case "seed":
+                    options.seed(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.mode == LoadMode.OPEN && options.rate == 0) {
+            throw new IllegalArgumentException("Open loop mode needs --rate");
+        }
+        return options;
+    }
+
+    public LoadOptions host(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public LoadOptions port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public LoadOptions connections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("At least one connection is needed");
+        }
+        this.connections = connections;
+        return this;
+    }
+
+    /**
+     * @param warmup seconds the load runs before measuring starts
+     */
+    public LoadOptions warmup(int warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * @param duration seconds the load is measured
+     */
+    public LoadOptions duration(int duration) {
+        if (duration < 1) {
+            throw new IllegalArgumentException("Duration must be at least one second");
+        }
+        this.duration = duration;
+        return this;
+    }
+
+    public LoadOptions mode(LoadMode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @param rate commands per second sent by all connections together in {@link LoadMode#OPEN} mode, in
+     *             {@link LoadMode#CLOSED} mode the most commands per second, 0 for no think time between commands
+     */
+    public LoadOptions rate(int rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Rate cannot be negative");
+        }
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * @param nodes number of nodes the graph is seeded with, commands pick their nodes among them
+     */
+    public LoadOptions nodes(int nodes) {
+        if (nodes < 2) {
+            throw new IllegalArgumentException("At least two nodes are needed");
+        }
+        this.nodes = nodes;
+        return this;
+    }
+
+    public LoadOptions mix(CommandMix mix) {
+        this.mix = mix;
+        return this;
+    }
+
+    public LoadOptions seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    int getConnections() {
+        return connections;
+    }
+
+    int getWarmup() {
+        return warmup;
+    }
+
+    int getDuration() {
+        return duration;
+    }
+
+    LoadMode getMode() {
+        return mode;
+    }
+
+    int getRate() {
+        return rate;
+    }
+
+    int getNodes() {
+        return nodes;
+    }
+
+    CommandMix getMix() {
+        return mix;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+}
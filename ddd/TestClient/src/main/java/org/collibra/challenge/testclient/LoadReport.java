@@ -0,0 +1,98 @@
+package org.collibra.challenge.testclient;
+
+import org.collibra.challenge.metrics.LatencyHistogram;
+
+/**
+ * Result of one {@link LoadGenerator} run. Latency is corrected for coordinated omission: in open loop mode it is
+ * measured from the time a command was due, in closed loop mode with a rate recorded values are corrected with
+ * the interval between sends of one connection. Closed loop latency without a rate has no expected interval to
+ * correct with and is reported uncorrected. Service time is the plain time between sending a command and its
+ * response.
+ */
+public final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadMode mode;
+    private final int connections;
+    private final double seconds;
+    private final long errors;
+    private final LatencyHistogram latency;
+    private final LatencyHistogram serviceTime;
+    private final boolean corrected;
+
+    LoadReport(LoadMode mode, int connections, double seconds, long errors, LatencyHistogram latency,
+               LatencyHistogram serviceTime, boolean corrected) {
+        this.mode = mode;
+        this.connections = connections;
+        this.seconds = seconds;
+        this.errors = errors;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+        this.corrected = corrected;
+    }
+
+    /**
+     * @return number of commands answered during measurement
+     */
+    public long getCommands() {
+        return serviceTime.getCount();
+    }
+
+    /**
+     * @return number of commands answered with an error
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return commands answered per second
+     */
+    public double getThroughput() {
+        return getCommands() / seconds;
+    }
+
+    /**
+     * @return latency in nanoseconds, corrected for coordinated omission if {@link #isCorrected()}
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return false for closed loop runs without a rate, their latency is the plain closed loop latency
+     */
+    public boolean isCorrected() {
+        return corrected;
+    }
+
+    /**
+     * @return time between sending a command and receiving its response in nanoseconds
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder()
+                .append("mode: ").append(mode).append(", connections: ").append(connections)
+                .append(", measured: ").append(String.format("%.1f s", seconds)).append(System.lineSeparator())
+                .append("commands: ").append(getCommands()).append(", errors: ").append(errors)
+                .append(", throughput: ").append(String.format("%.1f commands/s", getThroughput()))
+                .append(System.lineSeparator());
+        appendPercentiles(report, corrected ? "latency (us)     " : "latency (us, uncorrected closed loop)", latency);
+        appendPercentiles(report, "service time (us)", serviceTime);
+        return report.toString();
+    }
+
+    private static void appendPercentiles(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(name);
+        for (double percentile : PERCENTILES) {
+            report.append(String.format("  p%s: %.1f", percentile == (long) percentile ? String.valueOf((long) percentile)
+                    : String.valueOf(percentile), histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        report.append(String.format("  max: %.1f", histogram.getMax() / 1000.0)).append(System.lineSeparator());
+    }
+}
@@ -1,11 +1,70 @@
+import org.collibra.challenge.server.Server;
+import org.collibra.challenge.server.ServerOptions;
+import org.collibra.challenge.testclient.LoadGenerator;
+import org.collibra.challenge.testclient.LoadMode;
+import org.collibra.challenge.testclient.LoadOptions;
+import org.collibra.challenge.testclient.LoadReport;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class ServerClientTest {
 
+    private static final int CONNECTIONS = 4;
+    private static final int RATE = 200;
+    private static final int DURATION = 3;
+
+    private Server server;
+    private int port;
+
+    @Before
+    public void startServer() throws Exception {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new Server(new ServerOptions().port(port));
+        Thread thread = new Thread(server::start);
+        thread.setDaemon(true);
+        thread.start();
+        assertTrue(server.awaitListening(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
     @Test
-    private void serverTest() {
+    public void serverTest() throws Exception {
+        LoadReport closed = new LoadGenerator(options().mode(LoadMode.CLOSED)).run();
+        assertTrue(closed.getCommands() > 0);
+        assertTrue(closed.getLatency().getCount() >= closed.getCommands());
+        assertTrue(closed.getErrors() < closed.getCommands());
+        //no expected interval to correct closed loop latency with
+        assertFalse(closed.isCorrected());
+        assertEquals(closed.getServiceTime().getCount(), closed.getLatency().getCount());
 
+        LoadReport paced = new LoadGenerator(options().mode(LoadMode.CLOSED).rate(RATE)).run();
+        assertTrue(paced.isCorrected());
+        //every connection waits its interval between sends, so a slow machine can only send fewer
+        assertTrue(paced.toString(), paced.getCommands() <= (long) RATE * DURATION + CONNECTIONS);
+        assertTrue(paced.getLatency().getCount() >= paced.getCommands());
 
+        LoadReport open = new LoadGenerator(options().mode(LoadMode.OPEN).rate(RATE)).run();
+        //every command due is sent however late, only a late start of the connection threads loses some
+        assertTrue(open.toString(), open.getCommands() <= (long) RATE * DURATION + CONNECTIONS);
+        assertTrue(open.toString(), open.getCommands() >= RATE * DURATION / 2);
+        assertTrue(open.getLatency().getValueAtPercentile(50) >= open.getServiceTime().getValueAtPercentile(50));
+    }
 
+    private LoadOptions options() {
+        return new LoadOptions().port(port).connections(CONNECTIONS).nodes(50).warmup(0).duration(DURATION);
     }
 }